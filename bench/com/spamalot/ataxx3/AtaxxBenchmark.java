@@ -0,0 +1,174 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.AlphaBetaSearch;
+import com.spamalot.search.SearchableGame;
+import com.spamalot.search.TranspositionTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * JMH benchmarks of the Ataxx hot paths on both representations.
+ * 
+ * @author gej
+ *
+ */
+@State(Scope.Thread)
+public class AtaxxBenchmark {
+  /** The start position. */
+  static final String OPENING = "B.....W/.#...#./......./......./......./.#...#./W.....B B";
+
+  /** A midgame position with 28 empty squares. */
+  static final String MIDGAME = "B....../B#B..#./BBB.BW./...BB../.W...../W#...#B/WW...BB B";
+
+  /** An endgame position with 11 empty squares. */
+  static final String ENDGAME = "..WWW.B/B#W.W#B/..BWW.B/..BBWWW/BBBWWWW/B#B.W#W/BWWWW.B B";
+
+  /** Depth of the search benchmark. */
+  private static final int SEARCH_DEPTH = 3;
+
+  /** Which position to run on. */
+  @Param({ "opening", "midgame", "endgame" })
+  private String position;
+
+  /** Which representation to run on. */
+  @Param({ "objects", "bitboard" })
+  private String representation;
+
+  /** The game. */
+  private SearchableGame<AtaxxMove> game;
+
+  /** The bitboard game, for the int move benchmarks. */
+  private AtaxxBitboardGame bitboardGame;
+
+  /** Moves of the position. */
+  private List<AtaxxMove> moves;
+
+  /** Int move generator. */
+  private AtaxxMoveGenerator generator;
+
+  /**
+   * Set up the position.
+   * 
+   * @throws GameException
+   *           if the position can't be read.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws GameException {
+    String text = OPENING;
+    if ("midgame".equals(this.position)) {
+      text = MIDGAME;
+    } else if ("endgame".equals(this.position)) {
+      text = ENDGAME;
+    }
+    AtaxxGame ataxxGame = AtaxxGame.parsePosition(text);
+    this.bitboardGame = new AtaxxBitboardGame(ataxxGame);
+    if ("bitboard".equals(this.representation)) {
+      this.game = this.bitboardGame;
+    } else {
+      this.game = ataxxGame;
+    }
+    this.moves = this.game.getAvailableMoves();
+    this.generator = new AtaxxMoveGenerator();
+  }
+
+  /**
+   * Table of the search benchmark. It has its own state so that clearing it
+   * before every invocation only costs the search benchmark, and doesn't
+   * disturb the timing of the short benchmarks.
+   * 
+   * @author gej
+   *
+   */
+  @State(Scope.Thread)
+  public static class SearchTable {
+    /** The table. */
+    private TranspositionTable table;
+
+    /**
+     * Allocate the table.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.table = new TranspositionTable(16);
+    }
+
+    /**
+     * Empty the table so each search starts cold.
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+      this.table.clear();
+    }
+  }
+
+  /**
+   * Make and undo every move of the position.
+   * 
+   * @return the key, so the work is not optimized away
+   */
+  @Benchmark
+  public long makeUndo() {
+    long key = 0;
+    for (AtaxxMove move : this.moves) {
+      this.game.makeMove(move);
+      key ^= this.game.getZobristKey();
+      this.game.undoLastMove();
+    }
+    return key;
+  }
+
+  /**
+   * Generate the moves as a List.
+   * 
+   * @return the moves
+   */
+  @Benchmark
+  public List<AtaxxMove> getAvailableMoves() {
+    return this.game.getAvailableMoves();
+  }
+
+  /**
+   * Generate the moves as ints into a reused buffer.
+   * 
+   * @param blackhole
+   *          sink for the buffer
+   * @return the number of moves
+   */
+  @Benchmark
+  public int generateCodes(final Blackhole blackhole) {
+    int n = this.generator.generate(this.bitboardGame, 0);
+    blackhole.consume(this.generator.getMoves(0));
+    return n;
+  }
+
+  /**
+   * Evaluate the position.
+   * 
+   * @return the evaluation
+   */
+  @Benchmark
+  public int evaluate() {
+    return this.game.evaluate(false);
+  }
+
+  /**
+   * Search to a fixed depth from a cold table.
+   * 
+   * @param searchTable
+   *          the table, emptied before each search
+   * @return the best move
+   */
+  @Benchmark
+  public AtaxxMove search(final SearchTable searchTable) {
+    return new AlphaBetaSearch<>(this.game, searchTable.table).search(SEARCH_DEPTH);
+  }
+}
@@ -0,0 +1,45 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.TimeToDepth;
+
+/**
+ * Report the time-to-depth speedup of the parallel search on an Ataxx
+ * midgame position.
+ *
+ * <p>Arguments are the depth and optionally the most threads to try, which
+ * defaults to the number of processors.
+ *
+ * @author gej
+ *
+ */
+public final class AtaxxSmpBenchmark {
+
+  /**
+   * No construction.
+   */
+  private AtaxxSmpBenchmark() {
+  }
+
+  /**
+   * Main method.
+   * 
+   * @param args
+   *          arguments to the program.
+   * @throws GameException
+   *           when the position can't be read.
+   * @throws InterruptedException
+   *           if interrupted while waiting for the search threads.
+   */
+  public static void main(final String[] args) throws GameException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: AtaxxSmpBenchmark depth [threads]");
+      return;
+    }
+    int depth = Integer.parseInt(args[0]);
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    AtaxxBitboardGame game = new AtaxxBitboardGame(AtaxxGame.parsePosition(AtaxxBenchmark.MIDGAME));
+    TimeToDepth.measure(game, depth, threads, System.out);
+  }
+}
@@ -0,0 +1,141 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.AlphaBetaSearch;
+import com.spamalot.search.TranspositionTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * JMH benchmarks of the Reversi hot paths.
+ * 
+ * @author gej
+ *
+ */
+@State(Scope.Thread)
+public class ReversiBenchmark {
+  /** The start position. */
+  static final String OPENING = "......../......../......../...BW.../...WB.../......../......../........ B";
+
+  /** A midgame position with 40 empty squares. */
+  static final String MIDGAME = "......W./.....W../..BBWWW./..WWBW../BBWBB.W./..WWBB../..W.B.../.W...... B";
+
+  /** An endgame position with 16 empty squares. */
+  static final String ENDGAME = "BBBBW.W./BBBWBWW./BBWWWBWW/BWWWWBW./.WBBBBW./BWB.BBWW/.WB..BB./.WWW.... B";
+
+  /** Depth of the search benchmark. */
+  private static final int SEARCH_DEPTH = 4;
+
+  /** Which position to run on. */
+  @Param({ "opening", "midgame", "endgame" })
+  private String position;
+
+  /** The game. */
+  private ReversiGame game;
+
+  /** Moves of the position. */
+  private List<ReversiMove> moves;
+
+  /**
+   * Set up the position.
+   * 
+   * @throws GameException
+   *           if the position can't be read.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws GameException {
+    String text = OPENING;
+    if ("midgame".equals(this.position)) {
+      text = MIDGAME;
+    } else if ("endgame".equals(this.position)) {
+      text = ENDGAME;
+    }
+    this.game = ReversiGame.parsePosition(text);
+    this.moves = this.game.getAvailableMoves();
+  }
+
+  /**
+   * Table of the search benchmark. It has its own state so that clearing it
+   * before every invocation only costs the search benchmark, and doesn't
+   * disturb the timing of the short benchmarks.
+   * 
+   * @author gej
+   *
+   */
+  @State(Scope.Thread)
+  public static class SearchTable {
+    /** The table. */
+    private TranspositionTable table;
+
+    /**
+     * Allocate the table.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.table = new TranspositionTable(16);
+    }
+
+    /**
+     * Empty the table so each search starts cold.
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+      this.table.clear();
+    }
+  }
+
+  /**
+   * Make and undo every move of the position.
+   * 
+   * @return the key, so the work is not optimized away
+   */
+  @Benchmark
+  public long makeUndo() {
+    long key = 0;
+    for (ReversiMove move : this.moves) {
+      this.game.makeMove(move);
+      key ^= this.game.getZobristKey();
+      this.game.undoLastMove();
+    }
+    return key;
+  }
+
+  /**
+   * Generate the moves.
+   * 
+   * @return the moves
+   */
+  @Benchmark
+  public List<ReversiMove> getAvailableMoves() {
+    return this.game.getAvailableMoves();
+  }
+
+  /**
+   * Evaluate the position.
+   * 
+   * @return the evaluation
+   */
+  @Benchmark
+  public int evaluate() {
+    return this.game.evaluate(false);
+  }
+
+  /**
+   * Search to a fixed depth from a cold table.
+   * 
+   * @param searchTable
+   *          the table, emptied before each search
+   * @return the best move
+   */
+  @Benchmark
+  public ReversiMove search(final SearchTable searchTable) {
+    return new AlphaBetaSearch<>(this.game, searchTable.table).search(SEARCH_DEPTH);
+  }
+}
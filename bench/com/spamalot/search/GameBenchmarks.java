@@ -0,0 +1,46 @@
+package com.spamalot.search;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Run the game benchmarks with the GC profiler, so allocation rates are
+ * reported next to throughput.
+ * 
+ * @author gej
+ *
+ */
+public final class GameBenchmarks {
+
+  /**
+   * No construction.
+   */
+  private GameBenchmarks() {
+  }
+
+  /**
+   * Run the benchmarks.
+   * 
+   * @param args
+   *          optional regular expression of benchmarks to run
+   * @throws RunnerException
+   *           if JMH fails.
+   */
+  public static void main(final String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : "com\\.spamalot\\..*Benchmark";
+    Options options = new OptionsBuilder()
+        .include(include)
+        .addProfiler(GCProfiler.class)
+        .forks(1)
+        .warmupIterations(3)
+        .warmupTime(TimeValue.seconds(1))
+        .measurementIterations(5)
+        .measurementTime(TimeValue.seconds(1))
+        .build();
+    new Runner(options).run();
+  }
+}
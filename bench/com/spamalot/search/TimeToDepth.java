@@ -0,0 +1,81 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+
+import java.io.PrintStream;
+
+/**
+ * Measure how long a {@link LazySmpSearch} takes to finish a depth as threads
+ * are added. Each run starts from an empty table, and the fastest of a few
+ * runs is kept for each thread count.
+ * 
+ * @author gej
+ *
+ */
+public final class TimeToDepth {
+  /** Runs for each thread count. */
+  private static final int RUNS = 3;
+
+  /** Nanoseconds in a second. */
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /** Size of the shared table. */
+  private static final int TABLE_MEGABYTES = 64;
+
+  /**
+   * No construction.
+   */
+  private TimeToDepth() {
+  }
+
+  /**
+   * Search a position to a depth with 1, 2, 4 ... threads and print the
+   * speedup over one thread.
+   * 
+   * @param game
+   *          the position
+   * @param depth
+   *          depth to reach
+   * @param maxThreads
+   *          most threads to try
+   * @param out
+   *          where to print
+   * @param <M>
+   *          the type of Move
+   * @throws GameException
+   *           if the position can't be copied.
+   * @throws InterruptedException
+   *           if interrupted while waiting for the helpers.
+   */
+  public static <M extends Move> void measure(final SearchableGame<M> game, final int depth, final int maxThreads, final PrintStream out)
+      throws GameException, InterruptedException {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(depth);
+    TranspositionTable table = new TranspositionTable(TABLE_MEGABYTES);
+
+    long single = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      long best = Long.MAX_VALUE;
+      long nodes = 0;
+      try (LazySmpSearch<M> search = new LazySmpSearch<>(game, table, SearchAlgorithm.PVS, threads)) {
+        for (int run = 0; run < RUNS; run++) {
+          table.clear();
+          long start = System.nanoTime();
+          search.search(limits);
+          long nanos = System.nanoTime() - start;
+          if (nanos < best) {
+            best = nanos;
+            nodes = search.getNodes();
+          }
+        }
+      }
+      if (threads == 1) {
+        single = best;
+      }
+      double seconds = best / NANOS_PER_SECOND;
+      out.println(String.format("threads %2d: depth %d in %.3f s, %d nodes, %d nodes/sec, speedup %.2f", threads, depth, seconds, nodes,
+          (long) (nodes / seconds), (double) single / best));
+    }
+  }
+}
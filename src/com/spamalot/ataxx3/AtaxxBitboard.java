@@ -0,0 +1,208 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.Coordinate;
+import com.spamalot.boardgame.GameException;
+
+/**
+ * Precomputed bitboard geometry for an Ataxx board.
+ *
+ * <p>Squares are numbered <code>rank * 8 + file</code>, so a board of up to
+ * 7x7 fits in a single <code>long</code> with one spare column on the right.
+ * That spare column is never part of the board, which lets neighbouring
+ * squares be found by shifting without any wrap-around masks.
+ *
+ * @author gej
+ *
+ */
+final class AtaxxBitboard {
+  /** Largest board that fits in a long. */
+  static final int MAXIMUM_BOARD_SIZE = 7;
+
+  /** Distance in bits between two ranks. */
+  static final int STRIDE = 8;
+
+  /** Number of square indexes. */
+  static final int NUM_SQUARES = 64;
+
+  /** Length of each side of the board. */
+  private final int size;
+
+  /** All squares that a piece can stand on. */
+  private final long playableMask;
+
+  /** Squares blocked from play. */
+  private final long blockedMask;
+
+  /** Squares one away from each square, blocked squares excluded. */
+  private final long[] oneAway = new long[NUM_SQUARES];
+
+  /** Squares two away from each square, blocked squares excluded. */
+  private final long[] twoAway = new long[NUM_SQUARES];
+
+  /** Coordinate of each square, shared so moves can be built cheaply. */
+  private final Coordinate[] coordinates = new Coordinate[NUM_SQUARES];
+
+  /**
+   * Build the geometry for a square board using the same blocked squares as
+   * {@link AtaxxBoard}.
+   *
+   * @param size
+   *          Size of each side of the board
+   * @throws GameException
+   *           if the board does not fit in a long.
+   */
+  AtaxxBitboard(final int size) throws GameException {
+    if (size > MAXIMUM_BOARD_SIZE) {
+      throw new GameException("Bitboard must have maximum size of " + MAXIMUM_BOARD_SIZE + ".");
+    }
+    this.size = size;
+
+    long blocked = bit(1, 1) | bit(size - 2, size - 2) | bit(1, size - 2) | bit(size - 2, 1);
+
+    long board = 0;
+    for (int rank = 0; rank < size; rank++) {
+      for (int file = 0; file < size; file++) {
+        board |= bit(file, rank);
+        this.coordinates[squareIndex(file, rank)] = new Coordinate(file, rank);
+      }
+    }
+    this.blockedMask = blocked;
+    this.playableMask = board & ~blocked;
+
+    for (int rank = 0; rank < size; rank++) {
+      for (int file = 0; file < size; file++) {
+        int sq = squareIndex(file, rank);
+        this.oneAway[sq] = ring(file, rank, 1);
+        this.twoAway[sq] = ring(file, rank, 2);
+      }
+    }
+  }
+
+  /**
+   * Collect the playable squares exactly <code>distance</code> away from a
+   * square.
+   *
+   * @param file
+   *          file of the centre square
+   * @param rank
+   *          rank of the centre square
+   * @param distance
+   *          how far away
+   * @return the mask of squares
+   */
+  private long ring(final int file, final int rank, final int distance) {
+    long ret = 0;
+    for (int dr = -distance; dr <= distance; dr++) {
+      for (int df = -distance; df <= distance; df++) {
+        if (Math.max(Math.abs(df), Math.abs(dr)) != distance) {
+          continue;
+        }
+        int f = file + df;
+        int r = rank + dr;
+        if (f >= 0 && f < this.size && r >= 0 && r < this.size) {
+          ret |= bit(f, r);
+        }
+      }
+    }
+    return ret & this.playableMask;
+  }
+
+  /**
+   * Convert a file and rank to a square index.
+   *
+   * @param file
+   *          the file
+   * @param rank
+   *          the rank
+   * @return the square index
+   */
+  static int squareIndex(final int file, final int rank) {
+    return rank * STRIDE + file;
+  }
+
+  /**
+   * Convert a Coordinate to a square index.
+   *
+   * @param c
+   *          the Coordinate
+   * @return the square index
+   */
+  static int squareIndex(final Coordinate c) {
+    return squareIndex(c.getX(), c.getY());
+  }
+
+  /**
+   * Get the single bit for a file and rank.
+   *
+   * @param file
+   *          the file
+   * @param rank
+   *          the rank
+   * @return the bit
+   */
+  static long bit(final int file, final int rank) {
+    return 1L << squareIndex(file, rank);
+  }
+
+  /**
+   * Get the squares one away from any of the given squares. Because of the
+   * spare column the shifts never wrap onto the board.
+   *
+   * @param bits
+   *          squares to grow from
+   * @return the playable squares adjacent to them
+   */
+  long oneAwayOf(final long bits) {
+    long b = bits | (bits << 1) | (bits >>> 1);
+    b |= (b << STRIDE) | (b >>> STRIDE);
+    return b & ~bits & this.playableMask;
+  }
+
+  /**
+   * @return the size of a side
+   */
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * @return the playable squares
+   */
+  long getPlayableMask() {
+    return this.playableMask;
+  }
+
+  /**
+   * @return the blocked squares
+   */
+  long getBlockedMask() {
+    return this.blockedMask;
+  }
+
+  /**
+   * @param sq
+   *          square index
+   * @return the squares one away
+   */
+  long getOneAway(final int sq) {
+    return this.oneAway[sq];
+  }
+
+  /**
+   * @param sq
+   *          square index
+   * @return the squares two away
+   */
+  long getTwoAway(final int sq) {
+    return this.twoAway[sq];
+  }
+
+  /**
+   * @param sq
+   *          square index
+   * @return the Coordinate of the square
+   */
+  Coordinate getCoordinate(final int sq) {
+    return this.coordinates[sq];
+  }
+}
@@ -0,0 +1,521 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Piece;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.boardgame.ai.NegaMax;
+import com.spamalot.search.EndgameSolvable;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.MoveScorer;
+import com.spamalot.search.NodeCounter;
+import com.spamalot.search.Ponderer;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchableGame;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.Symmetry;
+import com.spamalot.search.SymmetricGame;
+import com.spamalot.search.TranspositionTable;
+import com.spamalot.search.Zobrist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An Ataxx position held in bitboards instead of Squares and Pieces.
+ *
+ * <p>One long per color holds the pieces. Neighbouring squares come from the
+ * masks in {@link AtaxxBitboard}, so the hot paths work on a few longs
+ * rather than walking the object graph of an {@link AtaxxGame}.
+ *
+ * @author gej
+ *
+ */
+class AtaxxBitboardGame implements SearchableGame<AtaxxMove>, MoveScorer<AtaxxMove>, EndgameSolvable, SymmetricGame {
+  /** Initial depth of the undo history. */
+  private static final int INITIAL_HISTORY = 128;
+
+  /** Board geometry, shared between copies. */
+  private final AtaxxBitboard geometry;
+
+  /** White pieces. */
+  private long white;
+
+  /** Black pieces. */
+  private long black;
+
+  /** Color to move. */
+  private PieceColor colorToMove;
+
+  /** Zobrist key of the position. */
+  private long zobristKey;
+
+  /** Searcher used by {@link #getSearch(TranspositionTable)}. */
+  private SearchAlgorithm searchAlgorithm = SearchAlgorithm.PVS;
+
+  /** White pieces before each move made. */
+  private long[] undoWhite = new long[INITIAL_HISTORY];
+
+  /** Black pieces before each move made. */
+  private long[] undoBlack = new long[INITIAL_HISTORY];
+
+  /** Zobrist key before each move made. */
+  private long[] undoKey = new long[INITIAL_HISTORY];
+
+  /** Whether each move made was a pass. */
+  private boolean[] undoPass = new boolean[INITIAL_HISTORY];
+
+  /** Number of moves made. */
+  private int ply;
+
+  /** Solve exactly at this many empty squares or fewer, 0 for never. */
+  private int endgameEmpties = AtaxxEndgameSolver.DEFAULT_EMPTIES;
+
+  /** Endgame solver, created when first needed. */
+  private AtaxxEndgameSolver solver;
+
+  /** Buffer for generating the moves returned as a List. */
+  private final int[] scratchMoves = new int[AtaxxMoveGenerator.MAX_MOVES];
+
+  /**
+   * Construct a bitboard game in the standard starting position.
+   *
+   * @throws GameException
+   *           when there is some Ataxx related problem.
+   */
+  AtaxxBitboardGame() throws GameException {
+    this(new AtaxxGame());
+  }
+
+  /**
+   * Construct a bitboard game holding the same position as an AtaxxGame.
+   *
+   * @param game
+   *          the game to copy
+   * @throws GameException
+   *           if the board is too large for a bitboard.
+   */
+  AtaxxBitboardGame(final AtaxxGame game) throws GameException {
+    this.geometry = new AtaxxBitboard(game.getNumFiles());
+    for (int rank = 0; rank < game.getNumRanks(); rank++) {
+      for (int file = 0; file < game.getNumFiles(); file++) {
+        Piece p = game.getSquareAt(file, rank).getPiece();
+        if (p != null) {
+          if (p.getColor() == PieceColor.WHITE) {
+            this.white |= AtaxxBitboard.bit(file, rank);
+          } else {
+            this.black |= AtaxxBitboard.bit(file, rank);
+          }
+        }
+      }
+    }
+    this.colorToMove = game.getColorToMove();
+    this.zobristKey = Zobrist.hash(this.white, this.black, this.colorToMove);
+  }
+
+  /**
+   * Construct a copy of another bitboard game, history included, so the copy
+   * still knows whether the last move was a pass.
+   *
+   * @param other
+   *          the game to copy
+   */
+  private AtaxxBitboardGame(final AtaxxBitboardGame other) {
+    this.geometry = other.geometry;
+    this.white = other.white;
+    this.black = other.black;
+    this.colorToMove = other.colorToMove;
+    this.zobristKey = other.zobristKey;
+    this.undoWhite = other.undoWhite.clone();
+    this.undoBlack = other.undoBlack.clone();
+    this.undoKey = other.undoKey.clone();
+    this.undoPass = other.undoPass.clone();
+    this.ply = other.ply;
+    this.searchAlgorithm = other.searchAlgorithm;
+    this.endgameEmpties = other.endgameEmpties;
+  }
+
+  /**
+   * Make a copy of the position that can be used on another thread.
+   *
+   * @return the copy
+   */
+  @Override
+  public AtaxxBitboardGame copyGame() {
+    return new AtaxxBitboardGame(this);
+  }
+
+  @Override
+  public PieceColor getColorToMove() {
+    return this.colorToMove;
+  }
+
+  @Override
+  public long getZobristKey() {
+    return this.zobristKey;
+  }
+
+  @Override
+  public int encodeMove(final AtaxxMove move) {
+    return AtaxxMoveCode.encode(move);
+  }
+
+  @Override
+  public int getCanonicalSymmetry() {
+    return Symmetry.canonical(this.white, this.black, this.geometry.getSize());
+  }
+
+  @Override
+  public long getSymmetricKey(final int symmetry) {
+    int size = this.geometry.getSize();
+    return Zobrist.hash(Symmetry.transform(this.white, symmetry, size), Symmetry.transform(this.black, symmetry, size), this.colorToMove);
+  }
+
+  @Override
+  public int transformMoveCode(final int code, final int symmetry) {
+    int size = this.geometry.getSize();
+    switch (AtaxxMoveCode.type(code)) {
+      case AtaxxMoveCode.DROP:
+        return AtaxxMoveCode.drop(Symmetry.transformSquare(AtaxxMoveCode.to(code), symmetry, size));
+      case AtaxxMoveCode.JUMP:
+        return AtaxxMoveCode.jump(Symmetry.transformSquare(AtaxxMoveCode.from(code), symmetry, size),
+            Symmetry.transformSquare(AtaxxMoveCode.to(code), symmetry, size));
+      default:
+        return code;
+    }
+  }
+
+  /**
+   * @return the white pieces
+   */
+  long getWhite() {
+    return this.white;
+  }
+
+  /**
+   * @return the black pieces
+   */
+  long getBlack() {
+    return this.black;
+  }
+
+  /**
+   * @return the empty playable squares
+   */
+  long getEmpty() {
+    return this.geometry.getPlayableMask() & ~(this.white | this.black);
+  }
+
+  /**
+   * @return the board geometry
+   */
+  AtaxxBitboard getGeometry() {
+    return this.geometry;
+  }
+
+  /**
+   * @return the pieces of the color to move
+   */
+  long getOwn() {
+    return this.colorToMove == PieceColor.WHITE ? this.white : this.black;
+  }
+
+  /**
+   * @return the pieces of the side not to move
+   */
+  long getOpponent() {
+    return this.colorToMove == PieceColor.WHITE ? this.black : this.white;
+  }
+
+  @Override
+  public List<AtaxxMove> getAvailableMoves() {
+    long own = getOwn();
+    int count = AtaxxMoveGenerator.generate(own, getEmpty(), this.geometry, this.scratchMoves);
+
+    List<AtaxxMove> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(AtaxxMoveCode.decode(this.scratchMoves[i], this.colorToMove, own, this.geometry));
+    }
+
+    return result;
+  }
+
+  /**
+   * Make a move. For performance reasons it is assumed move has been checked
+   * for legality before calling this method.
+   *
+   * @param move
+   *          The move to make
+   */
+  @Override
+  public void makeMove(final AtaxxMove move) {
+    makeMove(AtaxxMoveCode.encode(move));
+  }
+
+  /**
+   * Make a move given as an {@link AtaxxMoveCode}. Nothing is allocated unless
+   * the undo history has to grow.
+   *
+   * @param code
+   *          The move to make
+   */
+  void makeMove(final int code) {
+    ensureHistory();
+    this.undoWhite[this.ply] = this.white;
+    this.undoBlack[this.ply] = this.black;
+    this.undoKey[this.ply] = this.zobristKey;
+    this.undoPass[this.ply] = code == AtaxxMoveCode.PASS;
+    this.ply++;
+
+    this.zobristKey ^= Zobrist.WHITE_TO_MOVE;
+    if (code != AtaxxMoveCode.PASS) {
+      int to = AtaxxMoveCode.to(code);
+      long own = getOwn();
+      long opp = this.colorToMove == PieceColor.WHITE ? this.black : this.white;
+
+      if (AtaxxMoveCode.type(code) == AtaxxMoveCode.JUMP) {
+        int from = AtaxxMoveCode.from(code);
+        own &= ~(1L << from);
+        this.zobristKey ^= Zobrist.piece(this.colorToMove, from);
+      }
+      long flipped = this.geometry.getOneAway(to) & opp;
+      own |= (1L << to) | flipped;
+      opp ^= flipped;
+      this.zobristKey ^= Zobrist.piece(this.colorToMove, to) ^ Zobrist.flips(flipped);
+
+      if (this.colorToMove == PieceColor.WHITE) {
+        this.white = own;
+        this.black = opp;
+      } else {
+        this.black = own;
+        this.white = opp;
+      }
+    }
+
+    this.colorToMove = this.colorToMove.getOpposite();
+  }
+
+  /**
+   * Undo the effects of the last move made.
+   */
+  @Override
+  public void undoLastMove() {
+    this.ply--;
+    this.white = this.undoWhite[this.ply];
+    this.black = this.undoBlack[this.ply];
+    this.zobristKey = this.undoKey[this.ply];
+    this.colorToMove = this.colorToMove.getOpposite();
+  }
+
+  /**
+   * Grow the undo history when it is full.
+   */
+  private void ensureHistory() {
+    if (this.ply == this.undoWhite.length) {
+      int len = this.ply * 2;
+      this.undoWhite = Arrays.copyOf(this.undoWhite, len);
+      this.undoBlack = Arrays.copyOf(this.undoBlack, len);
+      this.undoKey = Arrays.copyOf(this.undoKey, len);
+      this.undoPass = Arrays.copyOf(this.undoPass, len);
+    }
+  }
+
+  /**
+   * Count the opposing pieces next to the to square, which the move flips.
+   */
+  @Override
+  public int scoreMove(final AtaxxMove move) {
+    int code = AtaxxMoveCode.encode(move);
+    if (code == AtaxxMoveCode.PASS) {
+      return 0;
+    }
+    return AtaxxMoveCode.orderScore(code, Long.bitCount(this.geometry.getOneAway(AtaxxMoveCode.to(code)) & getOpponent()));
+  }
+
+  /**
+   * Same evaluation as {@link AtaxxGame#evaluate(boolean)}: material times 100
+   * plus the difference in the number of empty squares within reach of each
+   * piece, or {@link SolvedScore} of the final margin once the game is over.
+   */
+  @Override
+  public int evaluate(final boolean gameOver) {
+    int whiteCount = Long.bitCount(this.white);
+    int blackCount = Long.bitCount(this.black);
+    if (gameOver) {
+      return SolvedScore.score(whiteCount - blackCount);
+    }
+
+    long empty = getEmpty();
+    int position = mobility(this.white, empty) - mobility(this.black, empty);
+
+    int material = 0;
+    if (whiteCount == 0) {
+      material = -1000;
+    } else if (blackCount == 0) {
+      material = 1000;
+    } else {
+      material = whiteCount - blackCount;
+    }
+
+    return material * 100 + position;
+  }
+
+  /**
+   * Sum over the pieces of the empty squares each one could reach.
+   *
+   * @param pieces
+   *          pieces of one color
+   * @param empty
+   *          the empty squares
+   * @return the mobility
+   */
+  private int mobility(final long pieces, final long empty) {
+    int ret = 0;
+    long p = pieces;
+    while (p != 0) {
+      int sq = Long.numberOfTrailingZeros(p);
+      p &= p - 1;
+      ret += Long.bitCount((this.geometry.getOneAway(sq) | this.geometry.getTwoAway(sq)) & empty);
+    }
+    return ret;
+  }
+
+  /**
+   * The game is over when both sides have just passed, when the board is full
+   * or when one side has no pieces left.
+   */
+  @Override
+  public boolean isOver() {
+    if (this.ply >= 2 && this.undoPass[this.ply - 1] && this.undoPass[this.ply - 2]) {
+      return true;
+    }
+    return getEmpty() == 0 || this.white == 0 || this.black == 0;
+  }
+
+  /**
+   * Set how few empty squares there must be before positions are solved
+   * exactly instead of evaluated.
+   *
+   * @param empties
+   *          number of empty squares, 0 to never solve
+   */
+  void setEndgameEmpties(final int empties) {
+    this.endgameEmpties = empties;
+  }
+
+  @Override
+  public boolean isSolvable() {
+    return Long.bitCount(getEmpty()) <= this.endgameEmpties;
+  }
+
+  /**
+   * Solve to the end of the game with {@link AtaxxEndgameSolver}. Lines the
+   * solver cuts at its horizon come back as estimates on the evaluation
+   * scale, not as solved scores.
+   */
+  @Override
+  public int solve(final int alpha, final int beta, final NodeCounter counter) {
+    return getSolver().solve(getOwn(), getOpponent(), lastMoveWasPass(), alpha, beta, counter);
+  }
+
+  /**
+   * Solve to the end of the game.
+   *
+   * @return the best move
+   */
+  AtaxxMove solveBestMove() {
+    AtaxxEndgameSolver s = getSolver();
+    int infinity = SolvedScore.score(AtaxxBitboard.NUM_SQUARES) + 1;
+    s.solve(getOwn(), getOpponent(), lastMoveWasPass(), -infinity, infinity);
+    return AtaxxMoveCode.decode(s.getBestMove(), this.colorToMove, getOwn(), this.geometry);
+  }
+
+  /**
+   * @return the endgame solver of this game
+   */
+  AtaxxEndgameSolver getSolver() {
+    if (this.solver == null) {
+      this.solver = new AtaxxEndgameSolver(this.geometry);
+    }
+    return this.solver;
+  }
+
+  /**
+   * @return whether the last move made was a pass
+   */
+  private boolean lastMoveWasPass() {
+    return this.ply >= 1 && this.undoPass[this.ply - 1];
+  }
+
+  /**
+   * Choose the searcher used by {@link #getSearch(TranspositionTable)}.
+   *
+   * @param algorithm
+   *          the searcher
+   */
+  void setSearchAlgorithm(final SearchAlgorithm algorithm) {
+    this.searchAlgorithm = algorithm;
+  }
+
+  /**
+   * Get an iterative deepening search of this game using the chosen searcher.
+   *
+   * @param table
+   *          the transposition table to use
+   * @return the search
+   */
+  IterativeDeepening<AtaxxMove> getSearch(final TranspositionTable table) {
+    return new IterativeDeepening<>(this, table, this.searchAlgorithm);
+  }
+
+  /**
+   * Get a ponderer for this game using the chosen searcher.
+   * 
+   * @param table
+   *          the transposition table to share with the engine's search
+   * @return the ponderer
+   */
+  Ponderer<AtaxxMove> getPonderer(final TranspositionTable table) {
+    return new Ponderer<>(this, table, this.searchAlgorithm);
+  }
+
+  /**
+   * Get a NegaMax searcher set up the same way as for an AtaxxGame.
+   *
+   * @return the searcher
+   */
+  NegaMax<AtaxxBitboardGame, AtaxxMove> getThinker() {
+    NegaMax<AtaxxBitboardGame, AtaxxMove> ret = new NegaMax<>(this);
+
+    ret.setDiffModifier(2);
+    ret.setInitialDiff(1);
+
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    int size = this.geometry.getSize();
+    StringBuilder builder = new StringBuilder();
+    builder.append("AtaxxBitboardGame [board=\n");
+    for (int rank = size - 1; rank >= 0; rank--) {
+      for (int file = 0; file < size; file++) {
+        long b = AtaxxBitboard.bit(file, rank);
+        if ((this.white & b) != 0) {
+          builder.append('W');
+        } else if ((this.black & b) != 0) {
+          builder.append('B');
+        } else if ((this.geometry.getBlockedMask() & b) != 0) {
+          builder.append('#');
+        } else {
+          builder.append('.');
+        }
+      }
+      builder.append('\n');
+    }
+    builder.append("toMove=");
+    builder.append(this.colorToMove);
+    builder.append("\n]");
+    return builder.toString();
+  }
+}
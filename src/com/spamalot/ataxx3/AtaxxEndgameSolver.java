@@ -0,0 +1,323 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.search.NodeCounter;
+import com.spamalot.search.SolvedScore;
+
+/**
+ * Solve Ataxx positions with few empty squares to the end of the game.
+ *
+ * <p>The solver works on the pieces of the side to move and of its opponent
+ * and has its own move loop and hash table, so nothing is shared with the
+ * searcher that calls it. The game ends when the board is full, when a side
+ * has no pieces or after two passes in a row, as in
+ * {@link AtaxxBitboardGame#isOver()}, and is scored by {@link SolvedScore}
+ * from the final margin in pieces. Scores are on the search's scale, so the
+ * result can be returned to the search as it is.
+ *
+ * <p>A jump does not fill a square, so with no move limit a game need not end.
+ * Lines are cut {@link #EXTRA_PLIES} plies after the empty squares could
+ * have been filled. A cut line has not been solved, so it is scored like an
+ * evaluation, {@link SolvedScore#PIECE_SCORE} for each piece of margin, and
+ * never as a solved game. Table entries are only used with the same number
+ * of plies left, so the result depends on nothing but the position.
+ *
+ * <p>A solve run inside a search reports its positions to the search every
+ * few thousand positions, and unwinds at once when the search is aborted.
+ *
+ * @author gej
+ *
+ */
+final class AtaxxEndgameSolver {
+  /** Default number of empty squares at which to start solving. */
+  static final int DEFAULT_EMPTIES = 6;
+
+  /** Plies allowed beyond the number of empty squares. */
+  static final int EXTRA_PLIES = 2;
+
+  /** Above any score. */
+  private static final int INFINITY = SolvedScore.score(AtaxxBitboard.NUM_SQUARES) + 1;
+
+  /** Positions between reports to the node counter. */
+  private static final int CHECK_INTERVAL = 4096;
+
+  /** Deepest ply of a solve. */
+  private static final int MAX_PLY = AtaxxBitboard.NUM_SQUARES + EXTRA_PLIES + 1;
+
+  /** Bits of the hash table index. */
+  private static final int HASH_BITS = 16;
+
+  /** Score is exact. */
+  private static final int EXACT = 0;
+
+  /** Score is a lower bound. */
+  private static final int LOWER = 1;
+
+  /** Score is an upper bound. */
+  private static final int UPPER = 2;
+
+  /** Board geometry. */
+  private final AtaxxBitboard geometry;
+
+  /** Hash of each stored position, 0 for an empty slot. */
+  private final long[] hashKeys = new long[1 << HASH_BITS];
+
+  /** Score, bound, best move and plies left of each stored position. */
+  private final long[] hashData = new long[1 << HASH_BITS];
+
+  /** Move buffer for each ply. */
+  private final int[][] moves = new int[MAX_PLY][AtaxxMoveGenerator.MAX_MOVES];
+
+  /** Ordering score of each move, for each ply. */
+  private final int[][] moveScores = new int[MAX_PLY][AtaxxMoveGenerator.MAX_MOVES];
+
+  /** Best move at the root of the last solve. */
+  private int bestMove;
+
+  /** Positions visited by the last solve. */
+  private long nodes;
+
+  /** Counts the positions of the current solve, or null. */
+  private NodeCounter counter;
+
+  /** Positions already reported to the counter. */
+  private long reported;
+
+  /** Whether the current solve was given up. */
+  private boolean aborted;
+
+  /**
+   * Construct a solver.
+   *
+   * @param boardGeometry
+   *          the board geometry
+   */
+  AtaxxEndgameSolver(final AtaxxBitboard boardGeometry) {
+    this.geometry = boardGeometry;
+  }
+
+  /**
+   * Solve a position.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @param passed
+   *          whether the last move was a pass
+   * @param alpha
+   *          lower bound on the score
+   * @param beta
+   *          upper bound on the score
+   * @return the score for the side to move, or a bound outside the window
+   */
+  int solve(final long own, final long opp, final boolean passed, final int alpha, final int beta) {
+    return solve(own, opp, passed, alpha, beta, null);
+  }
+
+  /**
+   * Solve a position, giving up when the counter says so.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @param passed
+   *          whether the last move was a pass
+   * @param alpha
+   *          lower bound on the score
+   * @param beta
+   *          upper bound on the score
+   * @param nodeCounter
+   *          counts the positions against the limits of a search, or null
+   *          for no limits
+   * @return the score for the side to move, or a bound outside the window, or
+   *         anything if the solve was given up
+   */
+  int solve(final long own, final long opp, final boolean passed, final int alpha, final int beta, final NodeCounter nodeCounter) {
+    this.nodes = 0;
+    this.bestMove = 0;
+    this.counter = nodeCounter;
+    this.reported = 0;
+    this.aborted = false;
+    int empties = Long.bitCount(this.geometry.getPlayableMask() & ~(own | opp));
+    int ret = search(own, opp, passed, empties + EXTRA_PLIES, alpha, beta, 0);
+    if (nodeCounter != null && !this.aborted) {
+      nodeCounter.countNodes(this.nodes - this.reported);
+    }
+    this.counter = null;
+    return ret;
+  }
+
+  /**
+   * Report the positions visited since the last report.
+   *
+   * @return whether to give up the solve
+   */
+  private boolean checkCounter() {
+    this.aborted = this.counter.countNodes(this.nodes - this.reported);
+    this.reported = this.nodes;
+    return this.aborted;
+  }
+
+  /**
+   * Search to the end of the game or the horizon.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @param passed
+   *          whether the last move was a pass
+   * @param depth
+   *          plies left before the horizon
+   * @param alphaIn
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param ply
+   *          distance from the root
+   * @return the score for the side to move
+   */
+  private int search(final long own, final long opp, final boolean passed, final int depth, final int alphaIn, final int beta, final int ply) {
+    this.nodes++;
+    if (this.counter != null && this.nodes - this.reported >= CHECK_INTERVAL && checkCounter()) {
+      return 0;
+    }
+    long empty = this.geometry.getPlayableMask() & ~(own | opp);
+    int margin = Long.bitCount(own) - Long.bitCount(opp);
+    if (empty == 0 || own == 0 || opp == 0) {
+      return SolvedScore.score(margin);
+    }
+    if (depth == 0) {
+      return margin * SolvedScore.PIECE_SCORE;
+    }
+
+    int alpha = alphaIn;
+    long key = hash(own, opp, passed);
+    int slot = (int) key & ((1 << HASH_BITS) - 1);
+    int hashMove = 0;
+    if (this.hashKeys[slot] == key) {
+      long data = this.hashData[slot];
+      hashMove = (int) (data >>> 34) & 0xFFFF;
+      if ((int) (data >>> 50) == depth) {
+        int s = (int) data;
+        int bound = (int) (data >>> 32) & 0x3;
+        if (bound == EXACT || bound == LOWER && s >= beta || bound == UPPER && s <= alpha) {
+          if (ply == 0) {
+            this.bestMove = hashMove;
+          }
+          return s;
+        }
+      }
+    }
+
+    int[] buffer = this.moves[ply];
+    int n = AtaxxMoveGenerator.generate(own, empty, this.geometry, buffer);
+    if (buffer[0] == AtaxxMoveCode.PASS) {
+      if (ply == 0) {
+        this.bestMove = AtaxxMoveCode.PASS;
+      }
+      if (passed) {
+        return SolvedScore.score(margin);
+      }
+      return -search(opp, own, true, depth - 1, -beta, -alpha, ply + 1);
+    }
+
+    int[] scores = this.moveScores[ply];
+    for (int i = 0; i < n; i++) {
+      int code = buffer[i];
+      scores[i] = code == hashMove ? Integer.MAX_VALUE
+          : AtaxxMoveCode.orderScore(code, Long.bitCount(this.geometry.getOneAway(AtaxxMoveCode.to(code)) & opp));
+    }
+
+    int best = -INFINITY;
+    int bestCode = 0;
+    for (int i = 0; i < n; i++) {
+      int pick = i;
+      for (int j = i + 1; j < n; j++) {
+        if (scores[j] > scores[pick]) {
+          pick = j;
+        }
+      }
+      int code = buffer[pick];
+      buffer[pick] = buffer[i];
+      scores[pick] = scores[i];
+
+      int to = AtaxxMoveCode.to(code);
+      long flips = this.geometry.getOneAway(to) & opp;
+      long newOwn = own | (1L << to) | flips;
+      if (AtaxxMoveCode.type(code) == AtaxxMoveCode.JUMP) {
+        newOwn &= ~(1L << AtaxxMoveCode.from(code));
+      }
+
+      int s;
+      if (i == 0) {
+        s = -search(opp & ~flips, newOwn, false, depth - 1, -beta, -alpha, ply + 1);
+      } else {
+        s = -search(opp & ~flips, newOwn, false, depth - 1, -alpha - 1, -alpha, ply + 1);
+        if (s > alpha && s < beta && !this.aborted) {
+          s = -search(opp & ~flips, newOwn, false, depth - 1, -beta, -alpha, ply + 1);
+        }
+      }
+      if (this.aborted) {
+        return 0;
+      }
+      if (s > best) {
+        best = s;
+        bestCode = code;
+        if (s > alpha) {
+          alpha = s;
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+
+    int bound = EXACT;
+    if (best <= alphaIn) {
+      bound = UPPER;
+    } else if (best >= beta) {
+      bound = LOWER;
+    }
+    this.hashKeys[slot] = key;
+    this.hashData[slot] = (best & 0xFFFFFFFFL) | ((long) bound << 32) | ((long) bestCode << 34) | ((long) depth << 50);
+    if (ply == 0) {
+      this.bestMove = bestCode;
+    }
+    return best;
+  }
+
+  /**
+   * Hash a position for the solver's table.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @param passed
+   *          whether the last move was a pass
+   * @return the hash, never 0
+   */
+  private static long hash(final long own, final long opp, final boolean passed) {
+    long h = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opp * 0xC2B2AE3D27D4EB4FL, 31) ^ (passed ? 0x165667B19E3779F9L : 0);
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+
+  /**
+   * @return the best move code at the root of the last solve
+   */
+  int getBestMove() {
+    return this.bestMove;
+  }
+
+  /**
+   * @return the positions visited by the last solve
+   */
+  long getNodes() {
+    return this.nodes;
+  }
+}
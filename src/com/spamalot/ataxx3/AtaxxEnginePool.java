@@ -0,0 +1,93 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.GameException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run Ataxx engine work on several threads at once.
+ *
+ * <p>Every task gets its own copy of the position it was submitted with, so no
+ * AtaxxGame is ever touched by two threads. The copy is taken on the
+ * submitting thread because the position passed in is not safe to read while
+ * its owner is changing it.
+ *
+ * @author gej
+ *
+ */
+final class AtaxxEnginePool implements AutoCloseable {
+
+  /**
+   * Work to do with a private AtaxxGame.
+   *
+   * @param <T>
+   *          the type of result
+   */
+  interface Task<T> {
+    /**
+     * Do the work.
+     *
+     * @param game
+     *          a game owned by this task alone
+     * @return the result
+     * @throws GameException
+     *           when there is some Ataxx related problem.
+     */
+    T run(AtaxxGame game) throws GameException;
+  }
+
+  /** Threads that run the tasks. */
+  private final ExecutorService executor;
+
+  /**
+   * Construct a pool.
+   *
+   * @param threads
+   *          number of worker threads
+   */
+  AtaxxEnginePool(final int threads) {
+    this.executor = Executors.newFixedThreadPool(threads);
+  }
+
+  /**
+   * Submit a task to run on a copy of a position.
+   *
+   * @param position
+   *          the position to copy
+   * @param task
+   *          the work to do
+   * @param <T>
+   *          the type of result
+   * @return the pending result
+   * @throws GameException
+   *           if the position can't be copied.
+   */
+  <T> Future<T> submit(final AtaxxGame position, final Task<T> task) throws GameException {
+    final AtaxxGame game = position.copyGame();
+    return this.executor.submit(new Callable<T>() {
+      @Override
+      public T call() throws GameException {
+        return task.run(game);
+      }
+    });
+  }
+
+  /**
+   * Finish the submitted tasks and stop the threads. If interrupted while
+   * waiting, the threads are stopped at once and the interrupt is kept.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      this.executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -8,14 +8,19 @@ import com.spamalot.boardgame.Move;
 import com.spamalot.boardgame.Piece;
 import com.spamalot.boardgame.PieceColor;
 import com.spamalot.boardgame.Square;
-import com.spamalot.boardgame.ai.MinMaxSearchable;
 import com.spamalot.boardgame.ai.NegaMax;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.MoveScorer;
+import com.spamalot.search.Ponderer;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchableGame;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.TranspositionTable;
+import com.spamalot.search.UndoStack;
+import com.spamalot.search.Zobrist;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.Stack;
 
 /**
  * Handle a game of Ataxx.
@@ -23,12 +28,30 @@ import java.util.Stack;
  * @author gej
  *
  */
-class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControllable<AtaxxGame, AtaxxMove> {
+class AtaxxGame extends Game implements SearchableGame<AtaxxMove>, MoveScorer<AtaxxMove>, GameControllable<AtaxxGame, AtaxxMove> {
   /** Default Board Size for an Ataxx game. */
   private static final int DEFAULT_ATAXX_BOARD_SIZE = 7;
 
   /** Stack for undo move list. */
-  private Stack<AtaxxUndoMove> undoMoveStack = new Stack<>();
+  private UndoStack undoMoveStack = new UndoStack();
+
+  /** Zobrist key of the current position. */
+  private long zobristKey;
+
+  /** Searcher used by {@link #getSearch(TranspositionTable)}. */
+  private SearchAlgorithm searchAlgorithm = SearchAlgorithm.PVS;
+
+  /** Number of white pieces. */
+  private int whiteCount;
+
+  /** Number of black pieces. */
+  private int blackCount;
+
+  /** Empty squares within reach, summed over the white pieces. */
+  private int whiteMobility;
+
+  /** Empty squares within reach, summed over the black pieces. */
+  private int blackMobility;
 
   /**
    * Construct the Ataxx game with default size of side.
@@ -51,6 +74,74 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
   private AtaxxGame(final int size) throws GameException {
     setBoard(new AtaxxBoard(size));
     initGame();
+    this.zobristKey = computeZobristKey();
+    initEvaluationTerms();
+  }
+
+  /**
+   * Construct a game from a position string: the ranks from the top down
+   * separated by '/', using W, B and . for white, black and empty squares and
+   * # for the blocked squares, then a space and the color to move, W or B.
+   * Only the default board size can be read.
+   * 
+   * @param text
+   *          the position
+   * @return the game
+   * @throws GameException
+   *           if the position can't be parsed.
+   */
+  static AtaxxGame parsePosition(final String text) throws GameException {
+    String[] parts = text.trim().split("\\s+");
+    if (parts.length != 2) {
+      throw new GameException("Position must be a board and a color to move.");
+    }
+    String[] rows = parts[0].split("/");
+    if (rows.length != DEFAULT_ATAXX_BOARD_SIZE) {
+      throw new GameException("Board must be " + DEFAULT_ATAXX_BOARD_SIZE + "x" + DEFAULT_ATAXX_BOARD_SIZE + ".");
+    }
+    AtaxxGame game = new AtaxxGame(rows.length);
+    long blockedMask = new AtaxxBitboard(rows.length).getBlockedMask();
+
+    for (int i = 0; i < rows.length; i++) {
+      if (rows[i].length() != rows.length) {
+        throw new GameException("Board must be square.");
+      }
+      int rank = rows.length - 1 - i;
+      for (int file = 0; file < rows.length; file++) {
+        Square sq = game.getSquareAt(file, rank);
+        sq.pickupPiece();
+        char c = rows[i].charAt(file);
+        boolean blocked = (blockedMask & AtaxxBitboard.bit(file, rank)) != 0;
+        if (blocked != (c == '#')) {
+          throw new GameException("Square " + file + "," + rank + (blocked ? " is blocked." : " is not blocked."));
+        }
+        switch (c) {
+          case 'W':
+            sq.setPiece(new Piece(PieceColor.WHITE));
+            break;
+          case 'B':
+            sq.setPiece(new Piece(PieceColor.BLACK));
+            break;
+          case '.':
+          case '#':
+            break;
+          default:
+            throw new GameException("Unknown square in position: " + c);
+        }
+      }
+    }
+
+    if ("W".equals(parts[1])) {
+      game.setColorToMove(PieceColor.WHITE);
+    } else if ("B".equals(parts[1])) {
+      game.setColorToMove(PieceColor.BLACK);
+    } else {
+      throw new GameException("Color to move must be W or B.");
+    }
+
+    game.zobristKey = game.computeZobristKey();
+    game.initEvaluationTerms();
+    return game;
   }
 
   /**
@@ -79,31 +170,38 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
    */
   @Override
   public void makeMove(final AtaxxMove move) {
+    PieceColor color = this.getColorToMove();
+    long key = this.zobristKey ^ Zobrist.WHITE_TO_MOVE;
     Piece piece = null;
     switch (move.getType()) {
       case DROP:
-        piece = new Piece(this.getColorToMove());
+        piece = new Piece(color);
         break;
       case JUMP:
         Coordinate c = move.getFromCoordinate();
         Square sq = this.getBoard().getSquareAt(c);
         piece = sq.pickupPiece();
+        pieceRemoved(sq, color);
+        key ^= Zobrist.piece(color, AtaxxBitboard.squareIndex(c));
         break;
       case PASS:
         break;
       default:
         break;
     }
-    List<Piece> flipped = null;
+    long flipped = 0;
     if (piece != null) {
       Coordinate c = move.getToCoordinate();
       Square sq = this.getBoard().getSquareAt(c);
       sq.setPiece(piece);
-      flipped = AtaxxGame.getPiecesToFlip(sq, this.getColorToMove());
-      flipPieces(flipped);
+      pieceAdded(sq, color);
+      key ^= Zobrist.piece(color, AtaxxBitboard.squareIndex(c));
+      flipped = flipPiecesAround(sq, color);
+      key ^= Zobrist.flips(flipped);
     }
 
-    this.undoMoveStack.push(new AtaxxUndoMove(move, flipped));
+    this.undoMoveStack.push(AtaxxMoveCode.encode(move), flipped, this.zobristKey);
+    this.zobristKey = key;
 
     switchColorToMove();
   }
@@ -113,28 +211,170 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
    */
   @Override
   public void undoLastMove() {
-    AtaxxUndoMove move = this.undoMoveStack.pop();
-    if (move.getMove().getType() != Move.Type.PASS) {
-      this.undoPieceMove(move.getMove());
-      flipPieces(move.getFlipped());
+    int code = this.undoMoveStack.peekMove(0);
+    if (code != AtaxxMoveCode.PASS) {
+      long flipped = this.undoMoveStack.peekFlipped();
+      while (flipped != 0) {
+        flipPiece(getSquareAt(Long.numberOfTrailingZeros(flipped)));
+        flipped &= flipped - 1;
+      }
+      this.undoPieceMove(code);
     }
+    this.zobristKey = this.undoMoveStack.peekKey();
+    this.undoMoveStack.pop();
     switchColorToMove();
   }
 
   /**
    * Undo the piece move effects of a move.
    * 
-   * @param move
-   *          the move
+   * @param code
+   *          the move as an AtaxxMoveCode
    */
-  private void undoPieceMove(final AtaxxMove move) {
-    Coordinate toCoord = move.getToCoordinate();
-    Square sq = this.getBoard().getSquareAt(toCoord);
+  private void undoPieceMove(final int code) {
+    Square sq = getSquareAt(AtaxxMoveCode.to(code));
     Piece p = sq.pickupPiece();
-    if (move.getType() == Move.Type.JUMP) {
-      Coordinate fromCoord = move.getFromCoordinate();
-      Square sqFrom = this.getBoard().getSquareAt(fromCoord);
+    pieceRemoved(sq, p.getColor());
+    if (AtaxxMoveCode.type(code) == AtaxxMoveCode.JUMP) {
+      Square sqFrom = getSquareAt(AtaxxMoveCode.from(code));
       sqFrom.setPiece(p);
+      pieceAdded(sqFrom, p.getColor());
+    }
+  }
+
+  /**
+   * Get the Square at a bitboard square index.
+   * 
+   * @param sq
+   *          the square index
+   * @return the Square
+   */
+  private Square getSquareAt(final int sq) {
+    return getSquareAt(sq % AtaxxBitboard.STRIDE, sq / AtaxxBitboard.STRIDE);
+  }
+
+  /**
+   * Flip the piece on a square and update the evaluation terms.
+   * 
+   * @param sq
+   *          the square
+   */
+  private void flipPiece(final Square sq) {
+    Piece p = sq.getPiece();
+    int empty = countEmptyInReach(sq);
+    adjustEvaluationTerms(p.getColor(), -1, -empty);
+    p.flip();
+    adjustEvaluationTerms(p.getColor(), 1, empty);
+  }
+
+  /**
+   * Update the evaluation terms after a piece has been put on an empty
+   * square. The square is no longer empty for the pieces around it.
+   * 
+   * @param sq
+   *          the square
+   * @param color
+   *          color of the piece
+   */
+  private void pieceAdded(final Square sq, final PieceColor color) {
+    adjustMobilityInReach(sq, -1);
+    adjustEvaluationTerms(color, 1, countEmptyInReach(sq));
+  }
+
+  /**
+   * Update the evaluation terms after a piece has been taken off a square.
+   * The square is now empty for the pieces around it.
+   * 
+   * @param sq
+   *          the square
+   * @param color
+   *          color of the piece
+   */
+  private void pieceRemoved(final Square sq, final PieceColor color) {
+    adjustEvaluationTerms(color, -1, -countEmptyInReach(sq));
+    adjustMobilityInReach(sq, 1);
+  }
+
+  /**
+   * Change the mobility of every piece within reach of a square.
+   * 
+   * @param sq
+   *          the square
+   * @param delta
+   *          change for each piece
+   */
+  private void adjustMobilityInReach(final Square sq, final int delta) {
+    for (Square s : sq.getOneAwaySquares()) {
+      Piece p = s.getPiece();
+      if (p != null) {
+        adjustEvaluationTerms(p.getColor(), 0, delta);
+      }
+    }
+    for (Square s : sq.getTwoAwaySquares()) {
+      Piece p = s.getPiece();
+      if (p != null) {
+        adjustEvaluationTerms(p.getColor(), 0, delta);
+      }
+    }
+  }
+
+  /**
+   * Change the evaluation terms of one color.
+   * 
+   * @param color
+   *          the color
+   * @param count
+   *          change in number of pieces
+   * @param mobility
+   *          change in mobility
+   */
+  private void adjustEvaluationTerms(final PieceColor color, final int count, final int mobility) {
+    if (color == PieceColor.WHITE) {
+      this.whiteCount += count;
+      this.whiteMobility += mobility;
+    } else {
+      this.blackCount += count;
+      this.blackMobility += mobility;
+    }
+  }
+
+  /**
+   * Count the empty squares one or two away from a square.
+   * 
+   * @param sq
+   *          the square
+   * @return the count
+   */
+  private static int countEmptyInReach(final Square sq) {
+    int ret = 0;
+    for (Square s : sq.getOneAwaySquares()) {
+      if (s.isEmpty()) {
+        ret++;
+      }
+    }
+    for (Square s : sq.getTwoAwaySquares()) {
+      if (s.isEmpty()) {
+        ret++;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Compute the evaluation terms from scratch.
+   */
+  private void initEvaluationTerms() {
+    this.whiteCount = 0;
+    this.blackCount = 0;
+    this.whiteMobility = 0;
+    this.blackMobility = 0;
+    for (int rank = 0; rank < this.getNumRanks(); rank++) {
+      for (int file = 0; file < this.getNumFiles(); file++) {
+        Square sq = this.getSquareAt(file, rank);
+        if (sq.getPiece() != null) {
+          adjustEvaluationTerms(sq.getPiece().getColor(), 1, countEmptyInReach(sq));
+        }
+      }
     }
   }
 
@@ -149,7 +389,8 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
   }
 
   /**
-   * Generate moves.
+   * Generate moves. All working state is local so separate instances can
+   * generate moves on different threads at the same time.
    * 
    * @param toMove
    *          Color to move.
@@ -157,12 +398,12 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
    */
   private List<AtaxxMove> getAvailableMoves(final PieceColor toMove) {
     List<AtaxxMove> result = new ArrayList<>();
-    AtaxxGame.seen.clear();
+    long seenDrops = 0;
     for (int rank = 0; rank < this.getNumRanks(); rank++) {
       for (int file = 0; file < this.getNumFiles(); file++) {
         Square sq = this.getSquareAt(file, rank);
         if (sq.getPiece() != null && sq.getPiece().getColor().equals(toMove)) {
-          result.addAll(generateMovesForSquare(sq));
+          seenDrops = generateMovesForSquare(sq, seenDrops, result);
         }
       }
     }
@@ -174,25 +415,26 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
     return result;
   }
 
-  /** Avoid coordinates of expand moves that have already been seen. */
-  private static Set<Square> seen = new HashSet<>();
-
   /**
-   * Generate a list of moves for a square.
+   * Generate the moves for a square and add them to a list.
    * 
    * @param fromSquare
    *          Square to generate moves for
-   * @return A list of moves.
+   * @param seenDrops
+   *          Bitboard squares of drops already generated from other squares
+   * @param result
+   *          List to add the moves to
+   * @return seenDrops with the drops generated here added.
    */
-  private static Set<AtaxxMove> generateMovesForSquare(final Square fromSquare) {
-
-    Set<AtaxxMove> result = new HashSet<>();
+  private static long generateMovesForSquare(final Square fromSquare, final long seenDrops, final List<AtaxxMove> result) {
+    long seen = seenDrops;
 
     for (Square sq : fromSquare.getOneAwaySquares()) {
       if (sq.isEmpty()) {
-        if (!seen.contains(sq)) {
+        long bit = 1L << AtaxxBitboard.squareIndex(sq.getCoordinate());
+        if ((seen & bit) == 0) {
           result.add(new AtaxxMove(Move.Type.DROP, fromSquare.getPiece().getColor(), fromSquare.getCoordinate(), sq.getCoordinate()));
-          seen.add(sq);
+          seen |= bit;
         }
       }
     }
@@ -203,7 +445,7 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
       }
     }
 
-    return result;
+    return seen;
   }
 
   /*
@@ -263,77 +505,84 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
     return new AtaxxMove(moveType, getColorToMove(), from, to);
   }
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see com.spamalot.ataxx3.MinMaxSearchable#evaluate(boolean)
+  /**
+   * Count the opposing pieces next to the to square, which the move flips.
    */
   @Override
-  public int evaluate(final boolean gameOver) {
-    Square[][] b = getBoard().getSquares();
-
-    int numRanks = this.getNumRanks();
-    int numFiles = this.getNumFiles();
-
-    int white = 0;
-    int black = 0;
-    int whiteMobility = 0;
-    int blackMobility = 0;
-    for (int f = 0; f < numFiles; f++) {
-      for (int r = 0; r < numRanks; r++) {
-        Piece p = b[f][r].getPiece();
-        if (p != null) {
-          if (p.getColor() == PieceColor.WHITE) {
-            white++;
-            Square[] sq = b[f][r].getOneAwaySquares();
-            for (Square s : sq) {
-              if (s.isEmpty()) {
-                whiteMobility++;
-              }
-            }
-            sq = b[f][r].getTwoAwaySquares();
-            for (Square s : sq) {
-              if (s.isEmpty()) {
-                whiteMobility++;
-              }
-            }
-          } else {
-            black++;
-            Square[] sq = b[f][r].getOneAwaySquares();
-            for (Square s : sq) {
-              if (s.isEmpty()) {
-                blackMobility++;
-              }
-            }
-            sq = b[f][r].getTwoAwaySquares();
-            for (Square s : sq) {
-              if (s.isEmpty()) {
-                blackMobility++;
-              }
-            }
-          }
-        }
+  public int scoreMove(final AtaxxMove move) {
+    int code = AtaxxMoveCode.encode(move);
+    if (code == AtaxxMoveCode.PASS) {
+      return 0;
+    }
+    PieceColor opposite = move.getColor().getOpposite();
+    int flips = 0;
+    for (Square sq : getSquareAt(AtaxxMoveCode.to(code)).getOneAwaySquares()) {
+      Piece p = sq.getPiece();
+      if (p != null && p.getColor() == opposite) {
+        flips++;
       }
     }
-    // AtaxxScore s = getScore();
-    int position = whiteMobility - blackMobility;
+    return AtaxxMoveCode.orderScore(code, flips);
+  }
 
-    // if (gameOver) {
-    // return (white - black) * 100;
-    // }
+  /**
+   * Evaluate from white's point of view: material times 100 plus the
+   * difference in the number of empty squares within reach of each piece.
+   * Both terms are kept up to date as moves are made, so this does not look at
+   * the board. A finished game is scored by {@link SolvedScore} of the final
+   * margin, like a solved one.
+   */
+  @Override
+  public int evaluate(final boolean gameOver) {
+    if (gameOver) {
+      return SolvedScore.score(this.whiteCount - this.blackCount);
+    }
+    int position = this.whiteMobility - this.blackMobility;
 
     int material = 0;
-    if (white == 0) {
+    if (this.whiteCount == 0) {
       material = -1000;
-    } else if (black == 0) {
+    } else if (this.blackCount == 0) {
       material = 1000;
     } else {
-      material = white - black;
+      material = this.whiteCount - this.blackCount;
     }
 
     return material * 100 + position;
   }
 
+  /**
+   * Choose the searcher used by {@link #getSearch(TranspositionTable)}.
+   * 
+   * @param algorithm
+   *          the searcher
+   */
+  public void setSearchAlgorithm(final SearchAlgorithm algorithm) {
+    this.searchAlgorithm = algorithm;
+  }
+
+  /**
+   * Get an iterative deepening search of this game using the chosen searcher.
+   * 
+   * @param table
+   *          the transposition table to use
+   * @return the search
+   */
+  public IterativeDeepening<AtaxxMove> getSearch(final TranspositionTable table) {
+    return new IterativeDeepening<>(this, table, this.searchAlgorithm);
+  }
+
+  /**
+   * Get a ponderer for this game using the chosen searcher.
+   * 
+   * @param table
+   *          the transposition table to share with the engine's search
+   * @return the ponderer
+   */
+  public Ponderer<AtaxxMove> getPonderer(final TranspositionTable table) {
+    return new Ponderer<>(this, table, this.searchAlgorithm);
+  }
+
   @Override
   public NegaMax<AtaxxGame, AtaxxMove> getThinker() throws GameException {
     NegaMax<AtaxxGame, AtaxxMove> ret = new NegaMax<>(this);
@@ -345,51 +594,77 @@ class AtaxxGame extends Game implements MinMaxSearchable<AtaxxMove>, GameControl
   }
 
   @Override
-  public Game copyGame() throws GameException {
+  public AtaxxGame copyGame() throws GameException {
     AtaxxGame ret = new AtaxxGame();
     ret.getBoard().makeCopyOfPiecesInSquaresFromBoard(this.getBoard());
     ret.setColorToMove(this.getColorToMove());
+    ret.zobristKey = ret.computeZobristKey();
+    ret.initEvaluationTerms();
+    ret.undoMoveStack = this.undoMoveStack.copy();
+    ret.searchAlgorithm = this.searchAlgorithm;
 
     return ret;
   }
 
   /**
-   * Get list of pieces around the square that don't match the passed in color.
+   * Flip the pieces around the square that don't match the passed in color.
    * 
    * @param ataxxSquare
    *          AtaxxSquare around which to flip
    * @param color
    *          Color to flip to
-   * @return a List of AtaxxSquares that had flipped pieces.
+   * @return the mask of bitboard squares that had flipped pieces.
    * 
    */
-  private static List<Piece> getPiecesToFlip(final Square ataxxSquare, final PieceColor color) {
+  private long flipPiecesAround(final Square ataxxSquare, final PieceColor color) {
     PieceColor oppositeColor = color.getOpposite();
 
-    List<Piece> retPieces = new ArrayList<>();
-
+    long flipped = 0;
     Square[] squares = ataxxSquare.getOneAwaySquares();
     for (Square sq : squares) {
       Piece piece = sq.getPiece();
       if (piece != null && piece.getColor() == oppositeColor) {
-        retPieces.add(piece);
+        flipPiece(sq);
+        flipped |= 1L << AtaxxBitboard.squareIndex(sq.getCoordinate());
       }
     }
 
-    return retPieces;
+    return flipped;
   }
 
   @Override
-  public boolean isOver() {
-    int len = this.undoMoveStack.size();
-    if (len >= 2) {
-      AtaxxUndoMove move1 = this.undoMoveStack.elementAt(len - 1);
-      AtaxxUndoMove move2 = this.undoMoveStack.elementAt(len - 2);
+  public long getZobristKey() {
+    return this.zobristKey;
+  }
+
+  @Override
+  public int encodeMove(final AtaxxMove move) {
+    return AtaxxMoveCode.encode(move);
+  }
 
-      if (move1.getMove().getType() == Move.Type.PASS && move2.getMove().getType() == Move.Type.PASS) {
-        return true;
+  /**
+   * Compute the Zobrist key of the position from scratch.
+   * 
+   * @return the key
+   */
+  long computeZobristKey() {
+    long key = getColorToMove() == PieceColor.WHITE ? Zobrist.WHITE_TO_MOVE : 0;
+    for (int rank = 0; rank < this.getNumRanks(); rank++) {
+      for (int file = 0; file < this.getNumFiles(); file++) {
+        Piece p = this.getSquareAt(file, rank).getPiece();
+        if (p != null) {
+          key ^= Zobrist.piece(p.getColor(), AtaxxBitboard.squareIndex(file, rank));
+        }
       }
     }
+    return key;
+  }
+
+  @Override
+  public boolean isOver() {
+    if (this.undoMoveStack.size() >= 2 && this.undoMoveStack.peekMove(0) == AtaxxMoveCode.PASS && this.undoMoveStack.peekMove(1) == AtaxxMoveCode.PASS) {
+      return true;
+    }
 
     return super.isOver();
   }
@@ -0,0 +1,149 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+
+/**
+ * Pack an Ataxx move into an int.
+ *
+ * <p>Bits 0-5 hold the to square, bits 6-11 the from square and bits 12-13 the
+ * type of move. Squares are bitboard indexes from {@link AtaxxBitboard}. Zero
+ * is never a legal code, so it can stand for "no move".
+ *
+ * @author gej
+ *
+ */
+final class AtaxxMoveCode {
+  /** No move. */
+  static final int NONE = 0;
+
+  /** Type bits of a drop. */
+  static final int DROP = 1 << 12;
+
+  /** Type bits of a jump. */
+  static final int JUMP = 2 << 12;
+
+  /** The pass move. */
+  static final int PASS = 3 << 12;
+
+  /** Mask of the type bits. */
+  static final int TYPE_MASK = 3 << 12;
+
+  /** Mask of a square index. */
+  private static final int SQUARE_MASK = 0x3f;
+
+  /** Shift of the from square. */
+  private static final int FROM_SHIFT = 6;
+
+  /**
+   * No construction.
+   */
+  private AtaxxMoveCode() {
+  }
+
+  /**
+   * @param to
+   *          square to drop on
+   * @return the code of a drop
+   */
+  static int drop(final int to) {
+    return DROP | to;
+  }
+
+  /**
+   * @param from
+   *          square to jump from
+   * @param to
+   *          square to jump to
+   * @return the code of a jump
+   */
+  static int jump(final int from, final int to) {
+    return JUMP | (from << FROM_SHIFT) | to;
+  }
+
+  /**
+   * @param code
+   *          the move code
+   * @return the type bits
+   */
+  static int type(final int code) {
+    return code & TYPE_MASK;
+  }
+
+  /**
+   * @param code
+   *          the move code
+   * @return the from square of a jump
+   */
+  static int from(final int code) {
+    return (code >>> FROM_SHIFT) & SQUARE_MASK;
+  }
+
+  /**
+   * @param code
+   *          the move code
+   * @return the to square
+   */
+  static int to(final int code) {
+    return code & SQUARE_MASK;
+  }
+
+  /**
+   * Score a move for ordering: two points for each piece it flips and one
+   * more for a drop, which adds a piece where a jump only moves one.
+   *
+   * @param code
+   *          the move code
+   * @param flips
+   *          number of pieces the move flips
+   * @return the score
+   */
+  static int orderScore(final int code, final int flips) {
+    return 2 * flips + (type(code) == DROP ? 1 : 0);
+  }
+
+  /**
+   * Encode an AtaxxMove.
+   *
+   * @param move
+   *          the move
+   * @return the code
+   */
+  static int encode(final AtaxxMove move) {
+    switch (move.getType()) {
+      case DROP:
+        return drop(AtaxxBitboard.squareIndex(move.getToCoordinate()));
+      case JUMP:
+        return jump(AtaxxBitboard.squareIndex(move.getFromCoordinate()), AtaxxBitboard.squareIndex(move.getToCoordinate()));
+      default:
+        return PASS;
+    }
+  }
+
+  /**
+   * Decode a move code into an AtaxxMove. A drop gets one of the adjacent
+   * pieces of the mover as its from square.
+   *
+   * @param code
+   *          the code
+   * @param color
+   *          color of the mover
+   * @param own
+   *          pieces of the mover
+   * @param geometry
+   *          the board geometry
+   * @return the move
+   */
+  static AtaxxMove decode(final int code, final PieceColor color, final long own, final AtaxxBitboard geometry) {
+    int to = to(code);
+    switch (type(code)) {
+      case DROP:
+        int from = Long.numberOfTrailingZeros(geometry.getOneAway(to) & own);
+        return new AtaxxMove(Move.Type.DROP, color, geometry.getCoordinate(from), geometry.getCoordinate(to));
+      case JUMP:
+        return new AtaxxMove(Move.Type.JUMP, color, geometry.getCoordinate(from(code)), geometry.getCoordinate(to));
+      default:
+        return new AtaxxMove();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.spamalot.ataxx3;
+
+/**
+ * Generate Ataxx moves as int codes into buffers that are reused from node to
+ * node, so a search produces no garbage.
+ *
+ * <p>There is one buffer per ply of search. Drops are generated from the mask
+ * of empty squares adjacent to any piece of the mover, so each destination
+ * appears once however many pieces touch it.
+ *
+ * @author gej
+ *
+ */
+final class AtaxxMoveGenerator {
+  /**
+   * More moves than any position can have. Each empty square can be reached
+   * by at most one drop and sixteen jumps, and jumps are limited by the number
+   * of pieces as well, which keeps a full 7x7 board well under this.
+   */
+  static final int MAX_MOVES = 512;
+
+  /** Default number of plies to keep buffers for. */
+  static final int DEFAULT_MAX_PLY = 128;
+
+  /** One move buffer per ply. */
+  private final int[][] moves;
+
+  /**
+   * Construct a generator for the default search depth.
+   */
+  AtaxxMoveGenerator() {
+    this(DEFAULT_MAX_PLY);
+  }
+
+  /**
+   * Construct a generator.
+   *
+   * @param maxPly
+   *          number of plies to keep buffers for
+   */
+  AtaxxMoveGenerator(final int maxPly) {
+    this.moves = new int[maxPly][MAX_MOVES];
+  }
+
+  /**
+   * Generate the moves of the color to move into the buffer for a ply.
+   *
+   * @param game
+   *          the position
+   * @param ply
+   *          ply of the search
+   * @return the number of moves written to {@link #getMoves(int)}
+   */
+  int generate(final AtaxxBitboardGame game, final int ply) {
+    return generate(game.getOwn(), game.getEmpty(), game.getGeometry(), this.moves[ply]);
+  }
+
+  /**
+   * Get the buffer for a ply.
+   *
+   * @param ply
+   *          ply of the search
+   * @return the buffer
+   */
+  int[] getMoves(final int ply) {
+    return this.moves[ply];
+  }
+
+  /**
+   * Generate moves into a buffer. A pass is generated when there is no other
+   * move.
+   *
+   * @param own
+   *          pieces of the mover
+   * @param empty
+   *          empty playable squares
+   * @param geometry
+   *          the board geometry
+   * @param buffer
+   *          where to write the moves
+   * @return the number of moves written
+   */
+  static int generate(final long own, final long empty, final AtaxxBitboard geometry, final int[] buffer) {
+    int count = 0;
+
+    long drops = geometry.oneAwayOf(own) & empty;
+    while (drops != 0) {
+      buffer[count++] = AtaxxMoveCode.drop(Long.numberOfTrailingZeros(drops));
+      drops &= drops - 1;
+    }
+
+    long pieces = own;
+    while (pieces != 0) {
+      int from = Long.numberOfTrailingZeros(pieces);
+      pieces &= pieces - 1;
+      long jumps = geometry.getTwoAway(from) & empty;
+      while (jumps != 0) {
+        buffer[count++] = AtaxxMoveCode.jump(from, Long.numberOfTrailingZeros(jumps));
+        jumps &= jumps - 1;
+      }
+    }
+
+    if (count == 0) {
+      buffer[count++] = AtaxxMoveCode.PASS;
+    }
+
+    return count;
+  }
+}
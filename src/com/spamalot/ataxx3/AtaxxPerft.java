@@ -0,0 +1,145 @@
+package com.spamalot.ataxx3;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.Perft;
+
+/**
+ * Count Ataxx move paths to a fixed depth and time it.
+ *
+ * <p>Arguments are the depth, then optionally <code>divide</code> to print the
+ * count under each root move, <code>objects</code> to count with AtaxxGame
+ * instead of the bitboards, and a position as read by
+ * {@link AtaxxGame#parsePosition(String)}.
+ *
+ * @author gej
+ *
+ */
+public final class AtaxxPerft {
+
+  /**
+   * No construction.
+   */
+  private AtaxxPerft() {
+  }
+
+  /**
+   * Main method.
+   * 
+   * @param args
+   *          arguments to the program.
+   * @throws GameException
+   *           when the position can't be read.
+   */
+  public static void main(final String[] args) throws GameException {
+    if (args.length < 1) {
+      System.out.println("Usage: AtaxxPerft depth [divide] [objects] [board color]");
+      return;
+    }
+
+    int depth = Integer.parseInt(args[0]);
+    if (depth < 0) {
+      System.out.println("Depth must not be negative.");
+      return;
+    }
+    boolean divide = false;
+    boolean objects = false;
+    StringBuilder position = new StringBuilder();
+    for (int i = 1; i < args.length; i++) {
+      if ("divide".equals(args[i])) {
+        divide = true;
+      } else if ("objects".equals(args[i])) {
+        objects = true;
+      } else {
+        position.append(args[i]).append(' ');
+      }
+    }
+
+    AtaxxGame game = position.length() == 0 ? new AtaxxGame() : AtaxxGame.parsePosition(position.toString());
+
+    long start = System.nanoTime();
+    long nodes = 0;
+    if (objects) {
+      Perft<AtaxxMove> perft = new Perft<>(game);
+      nodes = divide ? perft.divide(depth, System.out) : perft.count(depth);
+    } else {
+      AtaxxBitboardGame bitboardGame = new AtaxxBitboardGame(game);
+      AtaxxMoveGenerator generator = new AtaxxMoveGenerator(depth + 1);
+      nodes = divide ? divide(bitboardGame, generator, depth) : count(bitboardGame, generator, depth, 0);
+    }
+    Perft.report(depth, nodes, System.nanoTime() - start, System.out);
+  }
+
+  /**
+   * Count leaf nodes on the bitboards with int moves, counting the moves at
+   * the last ply without making them.
+   * 
+   * @param game
+   *          the position
+   * @param generator
+   *          move generator with a buffer for every ply
+   * @param depth
+   *          depth left, 0 for just the position
+   * @param ply
+   *          ply from the root
+   * @return the count
+   * @throws IllegalArgumentException
+   *           if depth is negative.
+   */
+  static long count(final AtaxxBitboardGame game, final AtaxxMoveGenerator generator, final int depth, final int ply) {
+    if (depth < 1) {
+      Perft.checkDepth(depth);
+      return 1;
+    }
+    if (game.isOver()) {
+      return 0;
+    }
+    int n = generator.generate(game, ply);
+    if (depth == 1) {
+      return n;
+    }
+    int[] moves = generator.getMoves(ply);
+    long nodes = 0;
+    for (int i = 0; i < n; i++) {
+      game.makeMove(moves[i]);
+      nodes += count(game, generator, depth - 1, ply + 1);
+      game.undoLastMove();
+    }
+    return nodes;
+  }
+
+  /**
+   * Count leaf nodes on the bitboards and print the count under each root
+   * move.
+   * 
+   * @param game
+   *          the position
+   * @param generator
+   *          move generator with a buffer for every ply
+   * @param depth
+   *          depth, at least 1 for there to be root moves
+   * @return the total count
+   */
+  private static long divide(final AtaxxBitboardGame game, final AtaxxMoveGenerator generator, final int depth) {
+    if (depth < 1) {
+      return count(game, generator, depth, 0);
+    }
+    if (game.isOver()) {
+      return 0;
+    }
+    int n = generator.generate(game, 0);
+    int[] moves = generator.getMoves(0);
+    long nodes = 0;
+    for (int i = 0; i < n; i++) {
+      AtaxxMove move = AtaxxMoveCode.decode(moves[i], game.getColorToMove(), game.getOwn(), game.getGeometry());
+      long count = 1;
+      if (depth > 1) {
+        game.makeMove(moves[i]);
+        count = count(game, generator, depth - 1, 1);
+        game.undoLastMove();
+      }
+      System.out.println(move + ": " + count);
+      nodes += count;
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,186 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.Coordinate;
+
+/**
+ * Reversi move generation and flipping on bitboards.
+ *
+ * <p>Squares are numbered <code>y * 8 + x</code> as in
+ * {@link ReversiGame#squareIndex(com.spamalot.boardgame.Coordinate)}. Each
+ * direction is a shift and a mask that stops pieces wrapping from one edge of
+ * the board to the other.
+ *
+ * @author gej
+ *
+ */
+final class ReversiBitboard {
+  /** All squares but the a file, x = 0. */
+  static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+
+  /** All squares but the h file, x = 7. */
+  static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+
+  /** Number of directions. */
+  static final int NUM_DIRECTIONS = 8;
+
+  /** Shift of each direction, positive to the left. */
+  private static final int[] SHIFTS = { 1, -1, 8, -8, 9, 7, -7, -9 };
+
+  /** Squares that can be reached after a shift in each direction. */
+  private static final long[] MASKS = { NOT_A_FILE, NOT_H_FILE, -1L, -1L, NOT_A_FILE, NOT_H_FILE, NOT_A_FILE, NOT_H_FILE };
+
+  /** Coordinate of each square, shared so moves can be built cheaply. */
+  static final Coordinate[] COORDINATES = new Coordinate[64];
+
+  static {
+    for (int sq = 0; sq < COORDINATES.length; sq++) {
+      COORDINATES[sq] = new Coordinate(sq % 8, sq / 8);
+    }
+  }
+
+  /**
+   * No construction.
+   */
+  private ReversiBitboard() {
+  }
+
+  /**
+   * Move every square one step in a direction.
+   *
+   * @param bits
+   *          the squares
+   * @param dir
+   *          the direction, 0 to {@link #NUM_DIRECTIONS} - 1
+   * @return the squares one step away
+   */
+  static long shift(final long bits, final int dir) {
+    int s = SHIFTS[dir];
+    return (s > 0 ? bits << s : bits >>> -s) & MASKS[dir];
+  }
+
+  /**
+   * Find the legal moves in all eight directions at once.
+   *
+   * <p>Each direction is a Kogge-Stone fill: the side to move's pieces are
+   * spread over runs of opposing pieces in three doubling steps, 1, 2 and 4
+   * squares, which covers the longest run of 6. One more step onto an empty
+   * square gives the moves. There are no loops over squares.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @return the mask of squares that can be played
+   */
+  static long moves(final long own, final long opp) {
+    long empty = ~(own | opp);
+    long notA = opp & NOT_A_FILE;
+    long notH = opp & NOT_H_FILE;
+    return movesLeft(own, notA, empty & NOT_A_FILE, 1)
+        | movesRight(own, notH, empty & NOT_H_FILE, 1)
+        | movesLeft(own, opp, empty, 8)
+        | movesRight(own, opp, empty, 8)
+        | movesLeft(own, notA, empty & NOT_A_FILE, 9)
+        | movesLeft(own, notH, empty & NOT_H_FILE, 7)
+        | movesRight(own, notA, empty & NOT_A_FILE, 7)
+        | movesRight(own, notH, empty & NOT_H_FILE, 9);
+  }
+
+  /**
+   * Find the moves in a direction that shifts left.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param pro
+   *          opposing pieces that can be stepped onto without wrapping
+   * @param targets
+   *          empty squares that can be stepped onto without wrapping
+   * @param s
+   *          the shift
+   * @return the moves
+   */
+  private static long movesLeft(final long own, final long pro, final long targets, final int s) {
+    long flood = own | (pro & (own << s));
+    long p = pro & (pro << s);
+    flood |= p & (flood << (s << 1));
+    p &= p << (s << 1);
+    flood |= p & (flood << (s << 2));
+    return ((flood & pro) << s) & targets;
+  }
+
+  /**
+   * Find the moves in a direction that shifts right.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param pro
+   *          opposing pieces that can be stepped onto without wrapping
+   * @param targets
+   *          empty squares that can be stepped onto without wrapping
+   * @param s
+   *          the shift
+   * @return the moves
+   */
+  private static long movesRight(final long own, final long pro, final long targets, final int s) {
+    long flood = own | (pro & (own >>> s));
+    long p = pro & (pro >>> s);
+    flood |= p & (flood >>> (s << 1));
+    p &= p >>> (s << 1);
+    flood |= p & (flood >>> (s << 2));
+    return ((flood & pro) >>> s) & targets;
+  }
+
+  /**
+   * Find the pieces flipped by a move.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @param sq
+   *          square played
+   * @return the mask of opposing pieces that are flipped
+   */
+  static long flips(final long own, final long opp, final int sq) {
+    long ret = 0;
+    long from = 1L << sq;
+    for (int dir = 0; dir < NUM_DIRECTIONS; dir++) {
+      long line = 0;
+      long x = shift(from, dir);
+      while ((x & opp) != 0) {
+        line |= x;
+        x = shift(x, dir);
+      }
+      if ((x & own) != 0) {
+        ret |= line;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Check whether a side has any legal move. The directions are tried one at
+   * a time, vertical and horizontal first, and the check stops at the first
+   * one with a move, so a side that can move usually costs one or two of the
+   * eight fills in {@link #moves(long, long)}.
+   *
+   * @param own
+   *          pieces of the side to move
+   * @param opp
+   *          pieces of the opponent
+   * @return whether there is a move
+   */
+  static boolean hasMove(final long own, final long opp) {
+    long empty = ~(own | opp);
+    long notA = opp & NOT_A_FILE;
+    long notH = opp & NOT_H_FILE;
+    return movesLeft(own, opp, empty, 8) != 0
+        || movesRight(own, opp, empty, 8) != 0
+        || movesLeft(own, notA, empty & NOT_A_FILE, 1) != 0
+        || movesRight(own, notH, empty & NOT_H_FILE, 1) != 0
+        || movesLeft(own, notA, empty & NOT_A_FILE, 9) != 0
+        || movesLeft(own, notH, empty & NOT_H_FILE, 7) != 0
+        || movesRight(own, notA, empty & NOT_A_FILE, 7) != 0
+        || movesRight(own, notH, empty & NOT_H_FILE, 9) != 0;
+  }
+}
@@ -0,0 +1,416 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.EndgameSolvable;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.NodeCounter;
+import com.spamalot.search.Ponderer;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchableGame;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.Symmetry;
+import com.spamalot.search.SymmetricGame;
+import com.spamalot.search.TranspositionTable;
+import com.spamalot.search.Zobrist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Reversi position held in bitboards instead of Squares and Pieces.
+ *
+ * <p>One long per color holds the discs. The legal moves come from
+ * {@link ReversiBitboard#moves(long, long)} as a single mask, and making a
+ * move is a few XORs, so the hot paths never walk the object graph of a
+ * {@link ReversiGame}. The board is always 8x8.
+ *
+ * <p>The game is over when neither side can move, which covers a full board
+ * and a side with no discs left.
+ *
+ * @author gej
+ *
+ */
+class ReversiBitboardGame implements SearchableGame<ReversiMove>, EndgameSolvable, SymmetricGame {
+  /** Length of each side of the board. */
+  static final int SIZE = 8;
+
+  /** Number of squares. */
+  static final int NUM_SQUARES = 64;
+
+  /** Initial depth of the undo history. */
+  private static final int INITIAL_HISTORY = 128;
+
+  /** White discs. */
+  private long white;
+
+  /** Black discs. */
+  private long black;
+
+  /** Color to move. */
+  private PieceColor colorToMove;
+
+  /** Zobrist key of the position. */
+  private long zobristKey;
+
+  /** Evaluation patterns, updated with every move. */
+  private final ReversiPatterns patterns;
+
+  /** Searcher used by {@link #getSearch(TranspositionTable)}. */
+  private SearchAlgorithm searchAlgorithm = SearchAlgorithm.PVS;
+
+  /** Discs flipped by each move made, 0 for a pass. */
+  private long[] undoFlipped = new long[INITIAL_HISTORY];
+
+  /** Square of each move made, -1 for a pass. */
+  private int[] undoSquare = new int[INITIAL_HISTORY];
+
+  /** Number of moves made. */
+  private int ply;
+
+  /** Solve exactly at this many empty squares or fewer, 0 for never. */
+  private int endgameEmpties = ReversiEndgameSolver.DEFAULT_EMPTIES;
+
+  /** Endgame solver, created when first needed. */
+  private ReversiEndgameSolver solver;
+
+  /**
+   * Construct a bitboard game in the standard starting position.
+   *
+   * @throws GameException
+   *           if something goes wrong.
+   */
+  ReversiBitboardGame() throws GameException {
+    this(new ReversiGame());
+  }
+
+  /**
+   * Construct a bitboard game holding the same position as a ReversiGame.
+   *
+   * @param game
+   *          the game to copy
+   * @throws GameException
+   *           if the board is not 8x8.
+   */
+  ReversiBitboardGame(final ReversiGame game) throws GameException {
+    if (game.getNumFiles() != SIZE || game.getNumRanks() != SIZE) {
+      throw new GameException("Bitboard must have size " + SIZE + ".");
+    }
+    this.white = game.getDiscs(PieceColor.WHITE);
+    this.black = game.getDiscs(PieceColor.BLACK);
+    this.colorToMove = game.getColorToMove();
+    this.zobristKey = Zobrist.hash(this.white, this.black, this.colorToMove);
+    this.patterns = new ReversiPatterns(this.white, this.black);
+  }
+
+  /**
+   * Construct a copy of another bitboard game, history included.
+   *
+   * @param other
+   *          the game to copy
+   */
+  private ReversiBitboardGame(final ReversiBitboardGame other) {
+    this.white = other.white;
+    this.black = other.black;
+    this.colorToMove = other.colorToMove;
+    this.zobristKey = other.zobristKey;
+    this.patterns = new ReversiPatterns(other.patterns);
+    this.undoFlipped = other.undoFlipped.clone();
+    this.undoSquare = other.undoSquare.clone();
+    this.ply = other.ply;
+    this.searchAlgorithm = other.searchAlgorithm;
+    this.endgameEmpties = other.endgameEmpties;
+  }
+
+  /**
+   * Make a copy of the position that can be used on another thread.
+   *
+   * @return the copy
+   */
+  @Override
+  public ReversiBitboardGame copyGame() {
+    return new ReversiBitboardGame(this);
+  }
+
+  @Override
+  public PieceColor getColorToMove() {
+    return this.colorToMove;
+  }
+
+  @Override
+  public long getZobristKey() {
+    return this.zobristKey;
+  }
+
+  /**
+   * Moves are coded as in {@link ReversiGame#encodeMove(ReversiMove)}.
+   */
+  @Override
+  public int encodeMove(final ReversiMove move) {
+    if (move.getType() == Move.Type.PASS) {
+      return ReversiGame.PASS_CODE;
+    }
+    return ReversiGame.squareIndex(move.getToCoordinate()) + 1;
+  }
+
+  /**
+   * @return the white discs
+   */
+  long getWhite() {
+    return this.white;
+  }
+
+  /**
+   * @return the black discs
+   */
+  long getBlack() {
+    return this.black;
+  }
+
+  /**
+   * @return the discs of the color to move
+   */
+  long getOwn() {
+    return this.colorToMove == PieceColor.WHITE ? this.white : this.black;
+  }
+
+  /**
+   * @return the discs of the side not to move
+   */
+  long getOpponent() {
+    return this.colorToMove == PieceColor.WHITE ? this.black : this.white;
+  }
+
+  /**
+   * @return the mask of squares the side to move can play, 0 if it must pass
+   */
+  long getMoves() {
+    return ReversiBitboard.moves(getOwn(), getOpponent());
+  }
+
+  @Override
+  public List<ReversiMove> getAvailableMoves() {
+    long moves = getMoves();
+    List<ReversiMove> ret = new ArrayList<>(Math.max(1, Long.bitCount(moves)));
+    if (moves == 0) {
+      ret.add(new ReversiMove());
+      return ret;
+    }
+    while (moves != 0) {
+      ret.add(new ReversiMove(this.colorToMove, ReversiBitboard.COORDINATES[Long.numberOfTrailingZeros(moves)]));
+      moves &= moves - 1;
+    }
+    return ret;
+  }
+
+  /**
+   * Make a move. For performance reasons it is assumed move has been checked
+   * for legality before calling this method.
+   *
+   * @param move
+   *          The move to make
+   */
+  @Override
+  public void makeMove(final ReversiMove move) {
+    makeMove(move.getType() == Move.Type.PASS ? -1 : ReversiGame.squareIndex(move.getToCoordinate()));
+  }
+
+  /**
+   * Make a move given as a square index. Nothing is allocated unless the undo
+   * history has to grow.
+   *
+   * @param sq
+   *          the square played, or -1 to pass
+   */
+  void makeMove(final int sq) {
+    ensureHistory();
+    long flipped = 0;
+    this.zobristKey ^= Zobrist.WHITE_TO_MOVE;
+    if (sq >= 0) {
+      flipped = ReversiBitboard.flips(getOwn(), getOpponent(), sq);
+      long placed = 1L << sq;
+      this.white ^= flipped;
+      this.black ^= flipped;
+      if (this.colorToMove == PieceColor.WHITE) {
+        this.white |= placed;
+      } else {
+        this.black |= placed;
+      }
+      this.zobristKey ^= Zobrist.piece(this.colorToMove, sq) ^ Zobrist.flips(flipped);
+      this.patterns.place(sq, this.colorToMove);
+      this.patterns.flip(flipped, this.colorToMove);
+    }
+    this.undoFlipped[this.ply] = flipped;
+    this.undoSquare[this.ply] = sq;
+    this.ply++;
+    this.colorToMove = this.colorToMove.getOpposite();
+  }
+
+  /**
+   * Undo the effects of the last move made.
+   */
+  @Override
+  public void undoLastMove() {
+    this.ply--;
+    this.colorToMove = this.colorToMove.getOpposite();
+    this.zobristKey ^= Zobrist.WHITE_TO_MOVE;
+    int sq = this.undoSquare[this.ply];
+    if (sq >= 0) {
+      long flipped = this.undoFlipped[this.ply];
+      long placed = 1L << sq;
+      this.white ^= flipped;
+      this.black ^= flipped;
+      if (this.colorToMove == PieceColor.WHITE) {
+        this.white ^= placed;
+      } else {
+        this.black ^= placed;
+      }
+      this.zobristKey ^= Zobrist.piece(this.colorToMove, sq) ^ Zobrist.flips(flipped);
+      this.patterns.flip(flipped, this.colorToMove.getOpposite());
+      this.patterns.remove(sq, this.colorToMove);
+    }
+  }
+
+  /**
+   * Grow the undo history when it is full.
+   */
+  private void ensureHistory() {
+    if (this.ply == this.undoSquare.length) {
+      int len = this.ply * 2;
+      this.undoFlipped = Arrays.copyOf(this.undoFlipped, len);
+      this.undoSquare = Arrays.copyOf(this.undoSquare, len);
+    }
+  }
+
+  /**
+   * Same evaluation as {@link ReversiGame#evaluate(boolean)}: the
+   * {@link ReversiPatterns} score, or {@link SolvedScore} of the final margin
+   * once the game is over.
+   */
+  @Override
+  public int evaluate(final boolean gameOver) {
+    if (gameOver) {
+      return SolvedScore.score(ReversiEndgameSolver.finalMargin(this.white, this.black));
+    }
+    return this.patterns.evaluate(Long.bitCount(this.white | this.black));
+  }
+
+  @Override
+  public boolean isOver() {
+    long own = getOwn();
+    long opp = getOpponent();
+    return !ReversiBitboard.hasMove(own, opp) && !ReversiBitboard.hasMove(opp, own);
+  }
+
+  @Override
+  public int getCanonicalSymmetry() {
+    return Symmetry.canonical(this.white, this.black, SIZE);
+  }
+
+  @Override
+  public long getSymmetricKey(final int symmetry) {
+    return Zobrist.hash(Symmetry.transform(this.white, symmetry, SIZE), Symmetry.transform(this.black, symmetry, SIZE), this.colorToMove);
+  }
+
+  @Override
+  public int transformMoveCode(final int code, final int symmetry) {
+    if (code == 0 || code == ReversiGame.PASS_CODE) {
+      return code;
+    }
+    return Symmetry.transformSquare(code - 1, symmetry, SIZE) + 1;
+  }
+
+  /**
+   * Set how few empty squares there must be before positions are solved
+   * exactly instead of evaluated.
+   *
+   * @param empties
+   *          number of empty squares, 0 to never solve
+   */
+  void setEndgameEmpties(final int empties) {
+    this.endgameEmpties = empties;
+  }
+
+  @Override
+  public boolean isSolvable() {
+    return NUM_SQUARES - Long.bitCount(this.white | this.black) <= this.endgameEmpties;
+  }
+
+  /**
+   * Solve to the end of the game with {@link ReversiEndgameSolver}, whose
+   * margins are scored by {@link SolvedScore#score(int)}.
+   */
+  @Override
+  public int solve(final int alpha, final int beta, final NodeCounter counter) {
+    int low = SolvedScore.marginAtMost(alpha);
+    int high = SolvedScore.marginAtMost(beta - 1) + 1;
+    return SolvedScore.score(getSolver().solve(getOwn(), getOpponent(), low, high, counter));
+  }
+
+  /**
+   * @return the endgame solver of this game
+   */
+  ReversiEndgameSolver getSolver() {
+    if (this.solver == null) {
+      this.solver = new ReversiEndgameSolver();
+    }
+    return this.solver;
+  }
+
+  /**
+   * Choose the searcher used by {@link #getSearch(TranspositionTable)}.
+   *
+   * @param algorithm
+   *          the searcher
+   */
+  void setSearchAlgorithm(final SearchAlgorithm algorithm) {
+    this.searchAlgorithm = algorithm;
+  }
+
+  /**
+   * Get an iterative deepening search of this game using the chosen searcher.
+   *
+   * @param table
+   *          the transposition table to use
+   * @return the search
+   */
+  IterativeDeepening<ReversiMove> getSearch(final TranspositionTable table) {
+    return new IterativeDeepening<>(this, table, this.searchAlgorithm);
+  }
+
+  /**
+   * Get a ponderer for this game using the chosen searcher.
+   *
+   * @param table
+   *          the transposition table to share with the engine's search
+   * @return the ponderer
+   */
+  Ponderer<ReversiMove> getPonderer(final TranspositionTable table) {
+    return new Ponderer<>(this, table, this.searchAlgorithm);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("ReversiBitboardGame [board=\n");
+    for (int rank = SIZE - 1; rank >= 0; rank--) {
+      for (int file = 0; file < SIZE; file++) {
+        long b = 1L << (rank * SIZE + file);
+        if ((this.white & b) != 0) {
+          builder.append('W');
+        } else if ((this.black & b) != 0) {
+          builder.append('B');
+        } else {
+          builder.append('.');
+        }
+      }
+      builder.append('\n');
+    }
+    builder.append("toMove=");
+    builder.append(this.colorToMove);
+    builder.append("\n]");
+    return builder.toString();
+  }
+}
@@ -0,0 +1,61 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.OpeningBookBuilder;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchLimits;
+import com.spamalot.search.TranspositionTable;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Build a Reversi opening book from the start position.
+ *
+ * <p>Arguments are the book file, the plies to cover, the depth to search each
+ * move to, and optionally how far below the best score a move may be and
+ * still go in the book.
+ *
+ * @author gej
+ *
+ */
+public final class ReversiBook {
+  /** Default margin below the best score. */
+  private static final int DEFAULT_MARGIN = 20;
+
+  /** Size of the search table in megabytes. */
+  private static final int TABLE_MEGABYTES = 64;
+
+  /**
+   * No construction.
+   */
+  private ReversiBook() {
+  }
+
+  /**
+   * Main method.
+   * 
+   * @param args
+   *          arguments to the program.
+   * @throws GameException
+   *           when the game can't be set up.
+   * @throws IOException
+   *           when the book can't be written.
+   */
+  public static void main(final String[] args) throws GameException, IOException {
+    if (args.length < 3) {
+      System.out.println("Usage: ReversiBook file plies depth [margin]");
+      return;
+    }
+
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(Integer.parseInt(args[2]));
+    int margin = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MARGIN;
+
+    long start = System.nanoTime();
+    OpeningBookBuilder<ReversiMove> builder = new OpeningBookBuilder<>(new ReversiGame(), new TranspositionTable(TABLE_MEGABYTES), SearchAlgorithm.PVS);
+    builder.build(Integer.parseInt(args[1]), limits, margin);
+    builder.write(Paths.get(args[0]));
+    System.out.println(builder.size() + " moves in " + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}
@@ -0,0 +1,580 @@
+package com.spamalot.reversi;
+
+import com.spamalot.search.NodeCounter;
+
+/**
+ * Solve Reversi positions to the end of the game.
+ *
+ * <p>Games are scored by the final disc margin, with any empty squares going
+ * to the winner. Moves are ordered fastest first, fewest replies for the
+ * opponent, while many squares are empty and by region parity near the end:
+ * moves into quadrants with an odd number of empty squares come first. A
+ * node is cut off when the opponent's stable discs alone keep the score at or
+ * below alpha, and the last two empty squares are solved without the general
+ * move loop.
+ *
+ * <p>A solve run inside a search reports its positions to the search every
+ * few thousand positions, and unwinds at once when the search is aborted.
+ *
+ * @author gej
+ *
+ */
+final class ReversiEndgameSolver {
+  /** Default number of empty squares at which to start solving. */
+  static final int DEFAULT_EMPTIES = 14;
+
+  /** Squares on the board. */
+  private static final int NUM_SQUARES = 64;
+
+  /** Sort moves fastest first above this many empty squares. */
+  private static final int FASTEST_FIRST_EMPTIES = 7;
+
+  /** Use the hash table at this many empty squares or more. */
+  private static final int HASH_EMPTIES = 7;
+
+  /** Try stability cutoffs at this many empty squares or more. */
+  private static final int STABILITY_EMPTIES = 5;
+
+  /** Positions between reports to the node counter. */
+  private static final int CHECK_INTERVAL = 4096;
+
+  /** Bits of the hash table index. */
+  private static final int HASH_BITS = 16;
+
+  /** Deepest ply of a solve, every square and a pass for each. */
+  private static final int MAX_PLY = 2 * NUM_SQUARES;
+
+  /** Score is exact. */
+  private static final int EXACT = 0;
+
+  /** Score is a lower bound. */
+  private static final int LOWER = 1;
+
+  /** Score is an upper bound. */
+  private static final int UPPER = 2;
+
+  /** The four quadrants, for parity. */
+  private static final long[] QUADRANTS = { 0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L };
+
+  /** Bottom and top ranks. */
+  private static final long TOP_AND_BOTTOM = 0xFF000000000000FFL;
+
+  /** The edge of the board. */
+  private static final long BORDER = 0xFF818181818181FFL;
+
+  /** Squares of each diagonal running up and to the right. */
+  private static final long[] DIAGONALS = lines(1);
+
+  /** Squares of each diagonal running up and to the left. */
+  private static final long[] ANTI_DIAGONALS = lines(-1);
+
+  /** Hash of each stored position, 0 for an empty slot. */
+  private final long[] hashKeys = new long[1 << HASH_BITS];
+
+  /** Margin, bound and best move of each stored position. */
+  private final int[] hashData = new int[1 << HASH_BITS];
+
+  /** Moves for each ply. */
+  private final int[][] moves = new int[MAX_PLY][NUM_SQUARES];
+
+  /** Flips of each move, for each ply. */
+  private final long[][] moveFlips = new long[MAX_PLY][NUM_SQUARES];
+
+  /** Ordering key of each move, for each ply. */
+  private final int[][] moveKeys = new int[MAX_PLY][NUM_SQUARES];
+
+  /** Best square at the root of the last solve, or -1 for a pass. */
+  private int bestMove;
+
+  /** Positions visited by the last solve. */
+  private long nodes;
+
+  /** Counts the positions of the current solve, or null. */
+  private NodeCounter counter;
+
+  /** Positions already reported to the counter. */
+  private long reported;
+
+  /** Whether the current solve was given up. */
+  private boolean aborted;
+
+  /**
+   * Solve a position.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param alpha
+   *          lower bound on the margin
+   * @param beta
+   *          upper bound on the margin
+   * @return the final margin for the side to move, or a bound outside the
+   *         window
+   */
+  int solve(final long own, final long opp, final int alpha, final int beta) {
+    return solve(own, opp, alpha, beta, null);
+  }
+
+  /**
+   * Solve a position, giving up when the counter says so.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param alpha
+   *          lower bound on the margin
+   * @param beta
+   *          upper bound on the margin
+   * @param nodeCounter
+   *          counts the positions against the limits of a search, or null
+   *          for no limits
+   * @return the final margin for the side to move, or a bound outside the
+   *         window, or anything if the solve was given up
+   */
+  int solve(final long own, final long opp, final int alpha, final int beta, final NodeCounter nodeCounter) {
+    this.nodes = 0;
+    this.bestMove = -1;
+    this.counter = nodeCounter;
+    this.reported = 0;
+    this.aborted = false;
+    int ret = search(own, opp, alpha, beta, false, 0);
+    if (nodeCounter != null && !this.aborted) {
+      nodeCounter.countNodes(this.nodes - this.reported);
+    }
+    this.counter = null;
+    return ret;
+  }
+
+  /**
+   * Report the positions visited since the last report.
+   *
+   * @return whether to give up the solve
+   */
+  private boolean checkCounter() {
+    this.aborted = this.counter.countNodes(this.nodes - this.reported);
+    this.reported = this.nodes;
+    return this.aborted;
+  }
+
+
+  /**
+   * Search to the end of the game.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param alphaIn
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param passed
+   *          whether the last move was a pass
+   * @param ply
+   *          distance from the root
+   * @return the margin for the side to move
+   */
+  private int search(final long own, final long opp, final int alphaIn, final int beta, final boolean passed, final int ply) {
+    long empty = ~(own | opp);
+    int empties = Long.bitCount(empty);
+    if (ply > 0) {
+      if (empties == 1) {
+        this.nodes++;
+        return lastOne(own, opp, Long.numberOfTrailingZeros(empty));
+      }
+      if (empties == 2) {
+        return lastTwo(own, opp, alphaIn, beta, empty, passed);
+      }
+    }
+    this.nodes++;
+    if (this.counter != null && this.nodes - this.reported >= CHECK_INTERVAL && checkCounter()) {
+      return 0;
+    }
+
+    int alpha = alphaIn;
+    if (empties >= STABILITY_EMPTIES && ply > 0) {
+      int bound = NUM_SQUARES - 2 * Long.bitCount(stable(opp, own | opp));
+      if (bound <= alpha) {
+        return bound;
+      }
+    }
+
+    long key = 0;
+    int slot = 0;
+    int hashMove = -1;
+    if (empties >= HASH_EMPTIES) {
+      key = hash(own, opp);
+      slot = (int) key & ((1 << HASH_BITS) - 1);
+      if (this.hashKeys[slot] == key) {
+        int data = this.hashData[slot];
+        int s = (byte) data;
+        int bound = (data >>> 8) & 0x3;
+        hashMove = ((data >>> 16) & 0xFF) - 1;
+        if (ply > 0 && (bound == EXACT || bound == LOWER && s >= beta || bound == UPPER && s <= alpha)) {
+          return s;
+        }
+      }
+    }
+
+    long legal = ReversiBitboard.moves(own, opp);
+    if (legal == 0) {
+      if (passed || !ReversiBitboard.hasMove(opp, own)) {
+        return finalMargin(own, opp);
+      }
+      return -search(opp, own, -beta, -alpha, true, ply + 1);
+    }
+
+    int n = orderMoves(own, opp, legal, empty, empties, hashMove, ply);
+    int[] squares = this.moves[ply];
+    long[] flips = this.moveFlips[ply];
+
+    int best = -NUM_SQUARES - 1;
+    int bestSquare = squares[0];
+    for (int i = 0; i < n; i++) {
+      int sq = squares[i];
+      long f = flips[i];
+      long newOwn = own | f | (1L << sq);
+      long newOpp = opp & ~f;
+
+      int s;
+      if (i == 0) {
+        s = -search(newOpp, newOwn, -beta, -alpha, false, ply + 1);
+      } else {
+        s = -search(newOpp, newOwn, -alpha - 1, -alpha, false, ply + 1);
+        if (s > alpha && s < beta && !this.aborted) {
+          s = -search(newOpp, newOwn, -beta, -alpha, false, ply + 1);
+        }
+      }
+      if (this.aborted) {
+        return 0;
+      }
+      if (s > best) {
+        best = s;
+        bestSquare = sq;
+        if (s > alpha) {
+          alpha = s;
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+
+    if (empties >= HASH_EMPTIES) {
+      int bound = EXACT;
+      if (best <= alphaIn) {
+        bound = UPPER;
+      } else if (best >= beta) {
+        bound = LOWER;
+      }
+      this.hashKeys[slot] = key;
+      this.hashData[slot] = (best & 0xFF) | (bound << 8) | ((bestSquare + 1) << 16);
+    }
+    if (ply == 0) {
+      this.bestMove = bestSquare;
+    }
+    return best;
+  }
+
+  /**
+   * Fill the move buffers of a ply in the order to search them.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param legal
+   *          the legal moves
+   * @param empty
+   *          the empty squares
+   * @param empties
+   *          number of empty squares
+   * @param hashMove
+   *          square to try first, or -1
+   * @param ply
+   *          distance from the root
+   * @return the number of moves
+   */
+  private int orderMoves(final long own, final long opp, final long legal, final long empty, final int empties, final int hashMove,
+      final int ply) {
+    int[] squares = this.moves[ply];
+    long[] flips = this.moveFlips[ply];
+    int[] keys = this.moveKeys[ply];
+
+    long odd = 0;
+    for (long q : QUADRANTS) {
+      if ((Long.bitCount(empty & q) & 1) != 0) {
+        odd |= q;
+      }
+    }
+
+    int n = 0;
+    if (empties > FASTEST_FIRST_EMPTIES) {
+      long m = legal;
+      while (m != 0) {
+        int sq = Long.numberOfTrailingZeros(m);
+        m &= m - 1;
+        long f = ReversiBitboard.flips(own, opp, sq);
+        int key;
+        if (sq == hashMove) {
+          key = Integer.MIN_VALUE;
+        } else {
+          long reply = ReversiBitboard.moves(opp & ~f, own | f | (1L << sq));
+          key = 2 * Long.bitCount(reply) - (int) ((odd >>> sq) & 1L);
+        }
+        int j = n++;
+        while (j > 0 && keys[j - 1] > key) {
+          squares[j] = squares[j - 1];
+          flips[j] = flips[j - 1];
+          keys[j] = keys[j - 1];
+          j--;
+        }
+        squares[j] = sq;
+        flips[j] = f;
+        keys[j] = key;
+      }
+    } else {
+      if (hashMove >= 0 && (legal & (1L << hashMove)) != 0) {
+        squares[n] = hashMove;
+        flips[n++] = ReversiBitboard.flips(own, opp, hashMove);
+      }
+      long rest = legal & ~(hashMove >= 0 ? 1L << hashMove : 0);
+      n = addMoves(own, opp, rest & odd, n, ply);
+      n = addMoves(own, opp, rest & ~odd, n, ply);
+    }
+    return n;
+  }
+
+  /**
+   * Add moves to the buffers of a ply in square order.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param mask
+   *          the moves to add
+   * @param count
+   *          moves already in the buffers
+   * @param ply
+   *          distance from the root
+   * @return the new number of moves
+   */
+  private int addMoves(final long own, final long opp, final long mask, final int count, final int ply) {
+    int n = count;
+    long m = mask;
+    while (m != 0) {
+      int sq = Long.numberOfTrailingZeros(m);
+      m &= m - 1;
+      this.moves[ply][n] = sq;
+      this.moveFlips[ply][n++] = ReversiBitboard.flips(own, opp, sq);
+    }
+    return n;
+  }
+
+  /**
+   * Solve a position with two empty squares.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param alpha
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param empty
+   *          the two empty squares
+   * @param passed
+   *          whether the last move was a pass
+   * @return the margin for the side to move
+   */
+  private int lastTwo(final long own, final long opp, final int alpha, final int beta, final long empty, final boolean passed) {
+    this.nodes++;
+    int sq1 = Long.numberOfTrailingZeros(empty);
+    int sq2 = 63 - Long.numberOfLeadingZeros(empty);
+
+    int best = -NUM_SQUARES - 1;
+    long f = ReversiBitboard.flips(own, opp, sq1);
+    if (f != 0) {
+      this.nodes++;
+      best = -lastOne(opp & ~f, own | f | (1L << sq1), sq2);
+    }
+    if (best < beta) {
+      f = ReversiBitboard.flips(own, opp, sq2);
+      if (f != 0) {
+        this.nodes++;
+        best = Math.max(best, -lastOne(opp & ~f, own | f | (1L << sq2), sq1));
+      }
+    }
+    if (best > -NUM_SQUARES - 1) {
+      return best;
+    }
+    if (passed) {
+      return finalMargin(own, opp);
+    }
+    return -lastTwo(opp, own, -beta, -alpha, empty, true);
+  }
+
+  /**
+   * Solve a position with one empty square.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param sq
+   *          the empty square
+   * @return the margin for the side to move
+   */
+  private static int lastOne(final long own, final long opp, final int sq) {
+    long f = ReversiBitboard.flips(own, opp, sq);
+    if (f != 0) {
+      return NUM_SQUARES - 2 * Long.bitCount(opp & ~f);
+    }
+    f = ReversiBitboard.flips(opp, own, sq);
+    if (f != 0) {
+      return 2 * Long.bitCount(own & ~f) - NUM_SQUARES;
+    }
+    return finalMargin(own, opp);
+  }
+
+  /**
+   * Score a finished game, giving the empty squares to the winner.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @return the margin for the side to move
+   */
+  static int finalMargin(final long own, final long opp) {
+    int o = Long.bitCount(own);
+    int p = Long.bitCount(opp);
+    int e = NUM_SQUARES - o - p;
+    if (o > p) {
+      return o - p + e;
+    }
+    if (o < p) {
+      return o - p - e;
+    }
+    return 0;
+  }
+
+  /**
+   * Find discs that can never be flipped: those that in each of the four
+   * line directions either sit on a full line or touch the edge or a stable
+   * disc of their own color.
+   *
+   * @param discs
+   *          discs of one color
+   * @param occupied
+   *          all discs
+   * @return the stable discs, possibly not all of them
+   */
+  static long stable(final long discs, final long occupied) {
+    long fullRows = 0;
+    for (int y = 0; y < 8; y++) {
+      long row = 0xFFL << (8 * y);
+      if ((occupied & row) == row) {
+        fullRows |= row;
+      }
+    }
+    long cols = occupied;
+    cols &= cols >>> 32;
+    cols &= cols >>> 16;
+    cols &= cols >>> 8;
+    long fullCols = (cols & 0xFFL) * 0x0101010101010101L;
+    long fullDiagonals = fullLines(occupied, DIAGONALS);
+    long fullAntiDiagonals = fullLines(occupied, ANTI_DIAGONALS);
+
+    long horizontal = fullRows | ~ReversiBitboard.NOT_A_FILE | ~ReversiBitboard.NOT_H_FILE;
+    long vertical = fullCols | TOP_AND_BOTTOM;
+    long diagonal = fullDiagonals | BORDER;
+    long antiDiagonal = fullAntiDiagonals | BORDER;
+
+    long ret = 0;
+    while (true) {
+      long next = discs
+          & (horizontal | ((ret << 1) & ReversiBitboard.NOT_A_FILE) | ((ret >>> 1) & ReversiBitboard.NOT_H_FILE))
+          & (vertical | (ret << 8) | (ret >>> 8))
+          & (diagonal | ((ret << 9) & ReversiBitboard.NOT_A_FILE) | ((ret >>> 9) & ReversiBitboard.NOT_H_FILE))
+          & (antiDiagonal | ((ret << 7) & ReversiBitboard.NOT_H_FILE) | ((ret >>> 7) & ReversiBitboard.NOT_A_FILE));
+      if (next == ret) {
+        return ret;
+      }
+      ret = next;
+    }
+  }
+
+  /**
+   * Collect the lines that are completely occupied.
+   *
+   * @param occupied
+   *          all discs
+   * @param lines
+   *          the lines to check
+   * @return the squares of the full lines
+   */
+  private static long fullLines(final long occupied, final long[] lines) {
+    long ret = 0;
+    for (long line : lines) {
+      if ((occupied & line) == line) {
+        ret |= line;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Build the masks of the diagonals in one direction.
+   *
+   * @param dx
+   *          1 for diagonals running up and to the right, -1 for up and to
+   *          the left
+   * @return one mask for each diagonal
+   */
+  private static long[] lines(final int dx) {
+    long[] ret = new long[15];
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        int i = dx > 0 ? x - y + 7 : x + y;
+        ret[i] |= 1L << (y * 8 + x);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Hash a position for the solver's table.
+   *
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @return the hash, never 0
+   */
+  private static long hash(final long own, final long opp) {
+    long h = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opp * 0xC2B2AE3D27D4EB4FL, 31);
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return h == 0 ? 1 : h;
+  }
+
+  /**
+   * @return the best square at the root of the last solve, or -1 for a pass
+   */
+  int getBestMove() {
+    return this.bestMove;
+  }
+
+  /**
+   * @return the positions visited by the last solve
+   */
+  long getNodes() {
+    return this.nodes;
+  }
+}
@@ -1,7 +1,6 @@
 package com.spamalot.reversi;
 
 import com.spamalot.boardgame.Coordinate;
-import com.spamalot.boardgame.Direction;
 import com.spamalot.boardgame.Game;
 import com.spamalot.boardgame.GameControllable;
 import com.spamalot.boardgame.GameException;
@@ -10,14 +9,22 @@ import com.spamalot.boardgame.Piece;
 import com.spamalot.boardgame.PieceColor;
 import com.spamalot.boardgame.PieceCount;
 import com.spamalot.boardgame.Square;
-import com.spamalot.boardgame.ai.MinMaxSearchable;
 import com.spamalot.boardgame.ai.NegaMax;
+import com.spamalot.search.EndgameSolvable;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.NodeCounter;
+import com.spamalot.search.Ponderer;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchableGame;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.Symmetry;
+import com.spamalot.search.SymmetricGame;
+import com.spamalot.search.TranspositionTable;
+import com.spamalot.search.UndoStack;
+import com.spamalot.search.Zobrist;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.Stack;
 
 /**
  * Handle the Reversi Game.
@@ -25,13 +32,40 @@ import java.util.Stack;
  * @author gej
  *
  */
-public final class ReversiGame extends Game implements MinMaxSearchable<ReversiMove>, GameControllable<ReversiGame, ReversiMove> {
+public final class ReversiGame extends Game implements SearchableGame<ReversiMove>, EndgameSolvable, SymmetricGame, GameControllable<ReversiGame, ReversiMove> {
 
   /** Default Board Size Constant. */
   private static final int DEFAULT_REVERSI_BOARD_SIZE = 8;
 
+  /** Code of the pass move, one past the codes of the squares. */
+  static final int PASS_CODE = 65;
+
   /** Stack for undo move list. */
-  private Stack<ReversiUndoMove> undoMoveStack = new Stack<>();
+  private UndoStack undoMoveStack = new UndoStack();
+
+  /** Zobrist key of the current position. */
+  private long zobristKey;
+
+  /** White discs as a mask of square indexes, kept in step with the board. */
+  private long white;
+
+  /** Black discs as a mask of square indexes, kept in step with the board. */
+  private long black;
+
+  /** One Piece for each square, reused by every move there. */
+  private final Piece[] pieces = new Piece[64];
+
+  /** Evaluation patterns, updated with every move. */
+  private final ReversiPatterns patterns = new ReversiPatterns(0, 0);
+
+  /** Searcher used by {@link #getSearch(TranspositionTable)}. */
+  private SearchAlgorithm searchAlgorithm = SearchAlgorithm.PVS;
+
+  /** Solve exactly at this many empty squares or fewer, 0 for never. */
+  private int endgameEmpties = ReversiEndgameSolver.DEFAULT_EMPTIES;
+
+  /** Endgame solver, created when first needed. */
+  private ReversiEndgameSolver solver;
 
   /**
    * Create a Reversi board of the default size.
@@ -54,6 +88,67 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
   private ReversiGame(final int size) throws GameException {
     setBoard(new ReversiBoard(size));
     initGame();
+    for (int sq = 0; sq < this.pieces.length; sq++) {
+      this.pieces[sq] = new Piece(PieceColor.WHITE);
+    }
+    syncDiscs();
+  }
+
+  /**
+   * Construct a game from a position string: the ranks from the top down
+   * separated by '/', using W, B and . for white, black and empty squares,
+   * then a space and the color to move, W or B.
+   * 
+   * @param text
+   *          the position
+   * @return the game
+   * @throws GameException
+   *           if the position can't be parsed.
+   */
+  static ReversiGame parsePosition(final String text) throws GameException {
+    String[] parts = text.trim().split("\\s+");
+    if (parts.length != 2) {
+      throw new GameException("Position must be a board and a color to move.");
+    }
+    String[] rows = parts[0].split("/");
+    if (rows.length != DEFAULT_REVERSI_BOARD_SIZE) {
+      throw new GameException("Board must be " + DEFAULT_REVERSI_BOARD_SIZE + "x" + DEFAULT_REVERSI_BOARD_SIZE + ".");
+    }
+    ReversiGame game = new ReversiGame(rows.length);
+
+    for (int i = 0; i < rows.length; i++) {
+      if (rows[i].length() != rows.length) {
+        throw new GameException("Board must be square.");
+      }
+      int rank = rows.length - 1 - i;
+      for (int file = 0; file < rows.length; file++) {
+        Square sq = game.getBoard().getSquareAt(file, rank);
+        sq.pickupPiece();
+        switch (rows[i].charAt(file)) {
+          case 'W':
+            sq.setPiece(new Piece(PieceColor.WHITE));
+            break;
+          case 'B':
+            sq.setPiece(new Piece(PieceColor.BLACK));
+            break;
+          case '.':
+            break;
+          default:
+            throw new GameException("Unknown square in position: " + rows[i].charAt(file));
+        }
+      }
+    }
+
+    if ("W".equals(parts[1])) {
+      game.setColorToMove(PieceColor.WHITE);
+    } else if ("B".equals(parts[1])) {
+      game.setColorToMove(PieceColor.BLACK);
+    } else {
+      throw new GameException("Color to move must be W or B.");
+    }
+
+    game.syncDiscs();
+    return game;
   }
 
   /**
@@ -67,11 +162,17 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
     getBoard().getSquareAt(getNumFiles() / 2, (getNumRanks() / 2) - 1).setPiece(new Piece(PieceColor.BLACK));
   }
 
+  /**
+   * Evaluate with {@link ReversiPatterns}, whose indexes follow every move, or
+   * once the game is over by {@link SolvedScore} of the final margin, so that
+   * finished and solved games score alike.
+   */
   @Override
   public int evaluate(final boolean gameOver) {
-    PieceCount p = getPieceCount();
-
-    return (p.getWhiteCount() - p.getBlackCount()) * 100;
+    if (gameOver) {
+      return SolvedScore.score(ReversiEndgameSolver.finalMargin(this.white, this.black));
+    }
+    return this.patterns.evaluate(Long.bitCount(this.white | this.black));
   }
 
   /**
@@ -79,65 +180,178 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
    */
   @Override
   public void undoLastMove() {
-    ReversiUndoMove undoMove = this.undoMoveStack.pop();
+    int code = this.undoMoveStack.peekMove(0);
+    PieceColor color = getColorToMove().getOpposite();
+
+    if (code != PASS_CODE) {
+      getSquareAt(code - 1).pickupPiece();
 
-    if (undoMove.getMove().getType() != Move.Type.PASS) {
-      Coordinate c = undoMove.getMove().getToCoordinate();
-      Square sq = this.getBoard().getSquareAt(c);
-      sq.pickupPiece();
+      long flipped = this.undoMoveStack.peekFlipped();
+      long placed = 1L << (code - 1);
+      this.white = (this.white ^ flipped) & ~placed;
+      this.black = (this.black ^ flipped) & ~placed;
+      flipPieces(flipped);
 
-      flipPieces(undoMove.getFlippedPieceList());
+      this.patterns.flip(flipped, color.getOpposite());
+      this.patterns.remove(code - 1, color);
     }
+    this.zobristKey = this.undoMoveStack.peekKey();
+    this.undoMoveStack.pop();
     switchColorToMove();
   }
 
+  /**
+   * Make a move. The discs to flip are found as a mask in one pass over the
+   * directions, applied to the bitboards with XOR and kept for undo. The Piece
+   * placed is the one kept for the square, so nothing is allocated.
+   */
   @Override
   public void makeMove(final ReversiMove move) {
 
-    List<Piece> piecesToFlip = null;
+    long flipped = 0;
+    long key = this.zobristKey ^ Zobrist.WHITE_TO_MOVE;
 
     if (move.getType() != Move.Type.PASS) {
-      Piece piece = new Piece(move.getColor());
-
-      Coordinate c = move.getToCoordinate();
-      Square toSquare = this.getBoard().getSquareAt(c);
-
-      toSquare.setPiece(piece);
+      PieceColor color = move.getColor();
+      int sq = squareIndex(move.getToCoordinate());
+      long placed = 1L << sq;
+      if (color == PieceColor.WHITE) {
+        flipped = ReversiBitboard.flips(this.white, this.black, sq);
+        this.white |= placed;
+      } else {
+        flipped = ReversiBitboard.flips(this.black, this.white, sq);
+        this.black |= placed;
+      }
+      this.white ^= flipped;
+      this.black ^= flipped;
 
-      piecesToFlip = getListOfPiecesToFlip(toSquare);
-      flipPieces(piecesToFlip);
+      Piece piece = this.pieces[sq];
+      if (piece.getColor() != color) {
+        piece.flip();
+      }
+      getSquareAt(sq).setPiece(piece);
+      flipPieces(flipped);
+      this.patterns.place(sq, color);
+      this.patterns.flip(flipped, color);
+      key ^= Zobrist.piece(color, sq) ^ Zobrist.flips(flipped);
     }
 
-    ReversiUndoMove undoMove = new ReversiUndoMove(move, piecesToFlip);
-    this.undoMoveStack.add(undoMove);
+    this.undoMoveStack.push(encodeMove(move), flipped, this.zobristKey);
+    this.zobristKey = key;
 
     switchColorToMove();
   }
 
   /**
-   * Generate the List of Pieces that will need to be flipped. This method does
-   * not do any flipping. No flipping! No flipping!
-   * 
-   * @param toSquare
-   *          Square where move is made
+   * Flip the Pieces on the board.
    * 
-   * @return the List of Pieces.
+   * @param squares
+   *          mask of the square indexes to flip
    */
-  private List<Piece> getListOfPiecesToFlip(final Square toSquare) {
-    List<Piece> piecesToFlip = new ArrayList<>();
+  private void flipPieces(final long squares) {
+    long f = squares;
+    while (f != 0) {
+      getSquareAt(Long.numberOfTrailingZeros(f)).getPiece().flip();
+      f &= f - 1;
+    }
+  }
 
-    for (Direction dir : Direction.values()) {
-      List<Piece> candidatePiecesToFlip = new ArrayList<>();
-      Square square = toSquare.getSquareInDirection(dir);
-      while (hasOppositeColorPiece(square)) {
-        candidatePiecesToFlip.add(square.getPiece());
-        square = square.getSquareInDirection(dir);
+  /**
+   * Read the bitboards, the patterns and the Zobrist key from the board after
+   * it has been set up.
+   */
+  private void syncDiscs() {
+    this.white = 0;
+    this.black = 0;
+    for (int sq = 0; sq < this.pieces.length; sq++) {
+      Piece p = getSquareAt(sq).getPiece();
+      if (p != null) {
+        if (p.getColor() == PieceColor.WHITE) {
+          this.white |= 1L << sq;
+        } else {
+          this.black |= 1L << sq;
+        }
       }
-      if (hasSameColorPiece(square)) {
-        piecesToFlip.addAll(candidatePiecesToFlip);
+    }
+    this.zobristKey = computeZobristKey();
+    this.patterns.set(this.white, this.black);
+  }
+
+  /**
+   * Get the Square at a square index.
+   * 
+   * @param sq
+   *          the square index
+   * @return the Square
+   */
+  private Square getSquareAt(final int sq) {
+    return getBoard().getSquareAt(sq % 8, sq / 8);
+  }
+
+  /**
+   * Convert a Coordinate to the square index used for hashing and masks.
+   * 
+   * @param c
+   *          the Coordinate
+   * @return the square index
+   */
+  static int squareIndex(final Coordinate c) {
+    return c.getY() * 8 + c.getX();
+  }
+
+  @Override
+  public long getZobristKey() {
+    return this.zobristKey;
+  }
+
+  /**
+   * Moves are coded as their square index plus one, so that no move has code
+   * zero.
+   */
+  @Override
+  public int encodeMove(final ReversiMove move) {
+    if (move.getType() == Move.Type.PASS) {
+      return PASS_CODE;
+    }
+    return squareIndex(move.getToCoordinate()) + 1;
+  }
+
+  @Override
+  public int getCanonicalSymmetry() {
+    return Symmetry.canonical(getDiscs(PieceColor.WHITE), getDiscs(PieceColor.BLACK), getNumFiles());
+  }
+
+  @Override
+  public long getSymmetricKey(final int symmetry) {
+    int size = getNumFiles();
+    return Zobrist.hash(Symmetry.transform(getDiscs(PieceColor.WHITE), symmetry, size), Symmetry.transform(getDiscs(PieceColor.BLACK), symmetry, size),
+        getColorToMove());
+  }
+
+  @Override
+  public int transformMoveCode(final int code, final int symmetry) {
+    if (code == 0 || code == PASS_CODE) {
+      return code;
+    }
+    return Symmetry.transformSquare(code - 1, symmetry, getNumFiles()) + 1;
+  }
+
+  /**
+   * Compute the Zobrist key of the position from scratch.
+   * 
+   * @return the key
+   */
+  long computeZobristKey() {
+    long key = getColorToMove() == PieceColor.WHITE ? Zobrist.WHITE_TO_MOVE : 0;
+    for (int file = 0; file < getNumFiles(); file++) {
+      for (int rank = 0; rank < getNumRanks(); rank++) {
+        Square sq = getBoard().getSquareAt(file, rank);
+        if (sq.getPiece() != null) {
+          key ^= Zobrist.piece(sq.getPiece().getColor(), squareIndex(sq.getCoordinate()));
+        }
       }
     }
-    return piecesToFlip;
+    return key;
   }
 
   @Override
@@ -153,64 +367,56 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
     return builder.toString();
   }
 
+  /**
+   * Generate the moves from the bitboards in one pass. The moves come in
+   * square order, and a pass is the only move when there is nothing else.
+   */
   @Override
   public List<ReversiMove> getAvailableMoves() {
+    PieceColor toMove = getColorToMove();
+    long moves = ReversiBitboard.moves(getDiscs(toMove), getDiscs(toMove.getOpposite()));
 
-    // Using a Set to avoid duplicate moves being stored.
-    Set<ReversiMove> moves = new HashSet<>();
-
-    for (int file = 0; file < getNumFiles(); file++) {
-      for (int rank = 0; rank < getNumRanks(); rank++) {
-        Square sq = getBoard().getSquareAt(file, rank);
-        if (hasSameColorPiece(sq)) {
-          for (Direction dir : Direction.values()) {
-            ReversiMove newMove = findMoveInDirection(sq, dir);
-            if (newMove != null) {
-              moves.add(newMove);
-            }
-          }
-        }
-      }
-    }
-
-    List<ReversiMove> ret = new ArrayList<>();
-    if (moves.size() > 0) {
-      ret.addAll(moves);
-    } else {
+    List<ReversiMove> ret = new ArrayList<>(Math.max(1, Long.bitCount(moves)));
+    if (moves == 0) {
       ret.add(new ReversiMove());
+      return ret;
+    }
+    while (moves != 0) {
+      ret.add(new ReversiMove(toMove, ReversiBitboard.COORDINATES[Long.numberOfTrailingZeros(moves)]));
+      moves &= moves - 1;
     }
-
     return ret;
   }
 
   /**
-   * Look in a direction from a square to see if it can make a move and create
-   * the ReversiMove object if it can.
+   * Check whether a side can play anywhere, stopping at the first direction
+   * with a move.
    * 
-   * @param square
-   *          Square to start from
-   * @param dir
-   *          Direction to look
-   * @return A ReversiMove or null if no move.
+   * @param color
+   *          the side
+   * @return whether the side has a move other than a pass
    */
-  private ReversiMove findMoveInDirection(final Square square, final Direction dir) {
-    Square lookSquare = square.getSquareInDirection(dir);
-
-    // Exit early if the first neighbor isn't an opposite color piece.
-    if (!hasOppositeColorPiece(lookSquare)) {
-      return null;
-    }
-
-    lookSquare = lookSquare.getSquareInDirection(dir);
-    while (hasOppositeColorPiece(lookSquare)) {
-      lookSquare = lookSquare.getSquareInDirection(dir);
-    }
+  public boolean hasAnyMove(final PieceColor color) {
+    return ReversiBitboard.hasMove(getDiscs(color), getDiscs(color.getOpposite()));
+  }
 
-    if (lookSquare != null && lookSquare.isEmpty()) {
-      return new ReversiMove(this.getColorToMove(), lookSquare.getCoordinate());
-    }
+  /**
+   * The game is over when neither side can move, which covers a full board
+   * and a side with no discs left. Nothing here walks the board.
+   */
+  @Override
+  public boolean isOver() {
+    return !hasAnyMove(PieceColor.WHITE) && !hasAnyMove(PieceColor.BLACK);
+  }
 
-    return null;
+  /**
+   * Count the discs from the bitboards instead of the Squares.
+   */
+  @Override
+  public PieceCount getPieceCount() {
+    int whiteCount = Long.bitCount(this.white);
+    int blackCount = Long.bitCount(this.black);
+    return new PieceCount(whiteCount, blackCount, 64 - whiteCount - blackCount);
   }
 
   @Override
@@ -222,6 +428,103 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
     return new ReversiMove(getColorToMove(), toSquare.getCoordinate());
   }
 
+  /**
+   * Set how few empty squares there must be before positions are solved
+   * exactly instead of evaluated.
+   * 
+   * @param empties
+   *          number of empty squares, 0 to never solve
+   */
+  public void setEndgameEmpties(final int empties) {
+    this.endgameEmpties = empties;
+  }
+
+  @Override
+  public boolean isSolvable() {
+    return 64 - Long.bitCount(this.white | this.black) <= this.endgameEmpties;
+  }
+
+  /**
+   * Solve to the end of the game with {@link ReversiEndgameSolver}, whose
+   * margins are scored by {@link SolvedScore#score(int)}.
+   */
+  @Override
+  public int solve(final int alpha, final int beta, final NodeCounter counter) {
+    int low = SolvedScore.marginAtMost(alpha);
+    int high = SolvedScore.marginAtMost(beta - 1) + 1;
+    PieceColor toMove = getColorToMove();
+    return SolvedScore.score(getSolver().solve(getDiscs(toMove), getDiscs(toMove.getOpposite()), low, high, counter));
+  }
+
+  /**
+   * Solve to the end of the game.
+   * 
+   * @return the best move
+   */
+  ReversiMove solveBestMove() {
+    PieceColor toMove = getColorToMove();
+    ReversiEndgameSolver s = getSolver();
+    s.solve(getDiscs(toMove), getDiscs(toMove.getOpposite()), -SolvedScore.MAX_MARGIN - 1, SolvedScore.MAX_MARGIN + 1);
+    int sq = s.getBestMove();
+    if (sq < 0) {
+      return new ReversiMove();
+    }
+    return new ReversiMove(toMove, getSquareAt(sq).getCoordinate());
+  }
+
+  /**
+   * @return the endgame solver of this game
+   */
+  ReversiEndgameSolver getSolver() {
+    if (this.solver == null) {
+      this.solver = new ReversiEndgameSolver();
+    }
+    return this.solver;
+  }
+
+  /**
+   * Get the discs of one color as a mask of square indexes.
+   * 
+   * @param color
+   *          the color
+   * @return the mask
+   */
+  long getDiscs(final PieceColor color) {
+    return color == PieceColor.WHITE ? this.white : this.black;
+  }
+
+  /**
+   * Choose the searcher used by {@link #getSearch(TranspositionTable)}.
+   * 
+   * @param algorithm
+   *          the searcher
+   */
+  public void setSearchAlgorithm(final SearchAlgorithm algorithm) {
+    this.searchAlgorithm = algorithm;
+  }
+
+  /**
+   * Get an iterative deepening search of this game using the chosen searcher.
+   * 
+   * @param table
+   *          the transposition table to use
+   * @return the search
+   */
+  public IterativeDeepening<ReversiMove> getSearch(final TranspositionTable table) {
+    return new IterativeDeepening<>(this, table, this.searchAlgorithm);
+  }
+
+  /**
+   * Get a ponderer for this game using the chosen searcher.
+   * 
+   * @param table
+   *          the transposition table to share with the engine's search
+   * @return the ponderer
+   */
+  public Ponderer<ReversiMove> getPonderer(final TranspositionTable table) {
+    return new Ponderer<>(this, table, this.searchAlgorithm);
+  }
+
   @Override
   public NegaMax<ReversiGame, ReversiMove> getThinker() throws GameException {
     NegaMax<ReversiGame, ReversiMove> ret = new NegaMax<>(this);
@@ -238,6 +541,10 @@ public final class ReversiGame extends Game implements MinMaxSearchable<ReversiM
 
     ret.getBoard().makeCopyOfPiecesInSquaresFromBoard(this.getBoard());
     ret.setColorToMove(this.getColorToMove());
+    ret.syncDiscs();
+    ret.undoMoveStack = this.undoMoveStack.copy();
+    ret.searchAlgorithm = this.searchAlgorithm;
+    ret.endgameEmpties = this.endgameEmpties;
 
     return ret;
   }
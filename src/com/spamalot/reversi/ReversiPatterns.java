@@ -0,0 +1,572 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.Symmetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pattern evaluation for Reversi.
+ *
+ * <p>The board is covered by 34 patterns: the four edges with their X-squares,
+ * the four 3x3 corners, the eight 2x5 corner regions and the eighteen
+ * diagonals of 4 to 8 squares. Each pattern reads its squares as a base-3
+ * number, 0 for an empty square, 1 for white and 2 for black, and that number
+ * indexes a table of weights for its shape and the phase of the game. The
+ * numbers are updated as discs are placed and flipped, so an evaluation is
+ * one table load per pattern.
+ *
+ * <p>All the patterns of one shape are images of each other under the board
+ * symmetries, with their squares listed in the same order, so they share a
+ * table.
+ *
+ * <p>The weights are generated rather than trained. Each entry adds up
+ * terms for the discs, the squares they stand on, X and C squares next to an
+ * empty corner and edge discs that can no longer be flipped. Each term is
+ * split between all the patterns that hold its squares, so it counts once
+ * over the whole board. Trained tables would drop into the same layout.
+ *
+ * @author gej
+ *
+ */
+final class ReversiPatterns {
+  /** Number of game phases with their own weights. */
+  static final int NUM_PHASES = 4;
+
+  /** Length of each side of the board. */
+  private static final int SIZE = 8;
+
+  /** Number of squares. */
+  private static final int NUM_SQUARES = 64;
+
+  /** Number of symmetries of the board. */
+  private static final int NUM_SYMMETRIES = 8;
+
+  /** Digit of a white disc. */
+  private static final int WHITE_DIGIT = 1;
+
+  /** Digit of a black disc. */
+  private static final int BLACK_DIGIT = 2;
+
+  /** Discs on the board at the start. */
+  private static final int START_DISCS = 4;
+
+  /** Discs added in each phase. */
+  private static final int DISCS_PER_PHASE = 15;
+
+  /** Squares of one pattern of each shape, in digit order. */
+  private static final int[][] SHAPES = {
+      // The a1-h1 edge and the b2 and g2 X-squares.
+      { 0, 1, 2, 3, 4, 5, 6, 7, 9, 14 },
+      // The 3x3 corner at a1.
+      { 0, 1, 2, 8, 9, 10, 16, 17, 18 },
+      // The 2x5 corner at a1, along the first rank.
+      { 0, 1, 2, 3, 4, 8, 9, 10, 11, 12 },
+      // The long diagonal a1-h8 and the shorter diagonals beside it.
+      { 0, 9, 18, 27, 36, 45, 54, 63 },
+      { 1, 10, 19, 28, 37, 46, 55 },
+      { 2, 11, 20, 29, 38, 47 },
+      { 3, 12, 21, 30, 39 },
+      { 4, 13, 22, 31 } };
+
+  /** Value of a disc on each square, by distance from the nearest edges. */
+  private static final int[][] SQUARE_VALUES = {
+      { 400, -30, 40, 20 },
+      { -30, -60, -10, -10 },
+      { 40, -10, 10, 5 },
+      { 20, -10, 5, 0 } };
+
+  /** Value of a disc in each phase, for the side that owns it. */
+  private static final int[] DISC_WEIGHT = { -15, 0, 25, 100 };
+
+  /** Percentage of the square values used in each phase. */
+  private static final int[] POSITION_PERCENT = { 100, 100, 80, 30 };
+
+  /** Penalty for a disc on an X-square next to an empty corner. */
+  private static final int[] X_PENALTY = { 200, 150, 100, 30 };
+
+  /** Penalty for a disc on a C-square next to an empty corner. */
+  private static final int[] C_PENALTY = { 60, 50, 30, 10 };
+
+  /** Bonus for an edge disc that cannot be flipped. */
+  private static final int[] STABLE_BONUS = { 40, 60, 80, 60 };
+
+  /** Shape of each pattern. */
+  private static final int[] PATTERN_SHAPES;
+
+  /** Squares of each pattern, in digit order. */
+  private static final int[][] PATTERN_SQUARES;
+
+  /** Pattern number shifted left 16 bits plus the power of 3 of its digit, for each square. */
+  private static final int[][] SQUARE_DIGITS;
+
+  /** Weights of each pattern, by phase and index. */
+  private static final short[][][] WEIGHTS;
+
+  static {
+    List<int[]> squares = new ArrayList<>();
+    List<Integer> shapes = new ArrayList<>();
+    List<Long> masks = new ArrayList<>();
+    for (int shape = 0; shape < SHAPES.length; shape++) {
+      for (int sym = 0; sym < NUM_SYMMETRIES; sym++) {
+        int[] image = new int[SHAPES[shape].length];
+        long mask = 0;
+        for (int i = 0; i < image.length; i++) {
+          image[i] = Symmetry.transformSquare(SHAPES[shape][i], sym, SIZE);
+          mask |= 1L << image[i];
+        }
+        if (!masks.contains(Long.valueOf(mask))) {
+          masks.add(Long.valueOf(mask));
+          squares.add(image);
+          shapes.add(Integer.valueOf(shape));
+        }
+      }
+    }
+    PATTERN_SQUARES = squares.toArray(new int[squares.size()][]);
+    PATTERN_SHAPES = new int[shapes.size()];
+    for (int i = 0; i < PATTERN_SHAPES.length; i++) {
+      PATTERN_SHAPES[i] = shapes.get(i).intValue();
+    }
+
+    SQUARE_DIGITS = new int[NUM_SQUARES][];
+    for (int sq = 0; sq < NUM_SQUARES; sq++) {
+      List<Integer> digits = new ArrayList<>();
+      for (int p = 0; p < PATTERN_SQUARES.length; p++) {
+        int power = 1;
+        for (int s : PATTERN_SQUARES[p]) {
+          if (s == sq) {
+            digits.add(Integer.valueOf(p << 16 | power));
+          }
+          power *= 3;
+        }
+      }
+      SQUARE_DIGITS[sq] = new int[digits.size()];
+      for (int i = 0; i < digits.size(); i++) {
+        SQUARE_DIGITS[sq][i] = digits.get(i).intValue();
+      }
+    }
+
+    List<Term> terms = terms(masks);
+    short[][][] tables = new short[NUM_PHASES][SHAPES.length][];
+    for (int phase = 0; phase < NUM_PHASES; phase++) {
+      for (int shape = 0; shape < SHAPES.length; shape++) {
+        tables[phase][shape] = table(SHAPES[shape], terms, phase);
+      }
+    }
+    WEIGHTS = new short[NUM_PHASES][PATTERN_SQUARES.length][];
+    for (int phase = 0; phase < NUM_PHASES; phase++) {
+      for (int p = 0; p < PATTERN_SQUARES.length; p++) {
+        WEIGHTS[phase][p] = tables[phase][PATTERN_SHAPES[p]];
+      }
+    }
+  }
+
+  /** Index of each pattern. */
+  private final int[] indexes = new int[PATTERN_SQUARES.length];
+
+  /**
+   * Construct the patterns of a position.
+   *
+   * @param white
+   *          white discs
+   * @param black
+   *          black discs
+   */
+  ReversiPatterns(final long white, final long black) {
+    set(white, black);
+  }
+
+  /**
+   * Construct a copy of other patterns.
+   *
+   * @param other
+   *          the patterns to copy
+   */
+  ReversiPatterns(final ReversiPatterns other) {
+    System.arraycopy(other.indexes, 0, this.indexes, 0, this.indexes.length);
+  }
+
+  /**
+   * Read every pattern from a position.
+   *
+   * @param white
+   *          white discs
+   * @param black
+   *          black discs
+   */
+  void set(final long white, final long black) {
+    for (int p = 0; p < PATTERN_SQUARES.length; p++) {
+      int index = 0;
+      int power = 1;
+      for (int sq : PATTERN_SQUARES[p]) {
+        if ((white >>> sq & 1) != 0) {
+          index += WHITE_DIGIT * power;
+        } else if ((black >>> sq & 1) != 0) {
+          index += BLACK_DIGIT * power;
+        }
+        power *= 3;
+      }
+      this.indexes[p] = index;
+    }
+  }
+
+  /**
+   * Put a disc on an empty square.
+   *
+   * @param sq
+   *          the square
+   * @param color
+   *          color of the disc
+   */
+  void place(final int sq, final PieceColor color) {
+    add(sq, color == PieceColor.WHITE ? WHITE_DIGIT : BLACK_DIGIT);
+  }
+
+  /**
+   * Take a disc off a square.
+   *
+   * @param sq
+   *          the square
+   * @param color
+   *          color of the disc
+   */
+  void remove(final int sq, final PieceColor color) {
+    add(sq, color == PieceColor.WHITE ? -WHITE_DIGIT : -BLACK_DIGIT);
+  }
+
+  /**
+   * Flip discs.
+   *
+   * @param squares
+   *          mask of the squares flipped
+   * @param color
+   *          color of the discs after flipping
+   */
+  void flip(final long squares, final PieceColor color) {
+    int change = color == PieceColor.WHITE ? WHITE_DIGIT - BLACK_DIGIT : BLACK_DIGIT - WHITE_DIGIT;
+    long f = squares;
+    while (f != 0) {
+      add(Long.numberOfTrailingZeros(f), change);
+      f &= f - 1;
+    }
+  }
+
+  /**
+   * Change the digit of a square in every pattern that holds it.
+   *
+   * @param sq
+   *          the square
+   * @param change
+   *          amount added to the digit
+   */
+  private void add(final int sq, final int change) {
+    for (int digit : SQUARE_DIGITS[sq]) {
+      this.indexes[digit >>> 16] += change * (digit & 0xFFFF);
+    }
+  }
+
+  /**
+   * Evaluate the position.
+   *
+   * @param discs
+   *          number of discs on the board, which picks the phase
+   * @return the score from white's point of view
+   */
+  int evaluate(final int discs) {
+    short[][] weights = WEIGHTS[phase(discs)];
+    int score = 0;
+    for (int p = 0; p < this.indexes.length; p++) {
+      score += weights[p][this.indexes[p]];
+    }
+    return score;
+  }
+
+  /**
+   * @param discs
+   *          number of discs on the board
+   * @return the phase, 0 to {@link #NUM_PHASES} - 1
+   */
+  static int phase(final int discs) {
+    return Math.min(NUM_PHASES - 1, Math.max(0, discs - START_DISCS) / DISCS_PER_PHASE);
+  }
+
+  /**
+   * @return the index of each pattern, for tests
+   */
+  int[] getIndexes() {
+    return this.indexes.clone();
+  }
+
+  /**
+   * Generate the weights of one shape in one phase.
+   *
+   * @param shape
+   *          squares of a pattern of the shape
+   * @param terms
+   *          every term on the board
+   * @param phase
+   *          the phase
+   * @return the weight of each index
+   */
+  private static short[] table(final int[] shape, final List<Term> terms, final int phase) {
+    long mask = 0;
+    for (int sq : shape) {
+      mask |= 1L << sq;
+    }
+    List<Term> seen = new ArrayList<>();
+    for (Term t : terms) {
+      if ((t.squares & ~mask) == 0) {
+        seen.add(t);
+      }
+    }
+
+    int size = 1;
+    for (int i = 0; i < shape.length; i++) {
+      size *= 3;
+    }
+    // Shares are summed over a common denominator so that every symmetric
+    // image of an entry rounds the same way.
+    long denominator = 1;
+    for (Term t : seen) {
+      denominator = lcm(denominator, t.patterns);
+    }
+    short[] ret = new short[size];
+    int[] cells = new int[NUM_SQUARES];
+    for (int index = 0; index < size; index++) {
+      int n = index;
+      for (int sq : shape) {
+        cells[sq] = n % 3;
+        n /= 3;
+      }
+      long sum = 0;
+      for (Term t : seen) {
+        sum += t.value(cells, phase) * (denominator / t.patterns);
+      }
+      ret[index] = (short) (Long.signum(sum) * ((Math.abs(sum) + denominator / 2) / denominator));
+    }
+    return ret;
+  }
+
+  /**
+   * @param a
+   *          a positive number
+   * @param b
+   *          another
+   * @return the least common multiple
+   */
+  private static long lcm(final long a, final long b) {
+    long x = a;
+    long y = b;
+    while (y != 0) {
+      long t = x % y;
+      x = y;
+      y = t;
+    }
+    return a / x * b;
+  }
+
+  /**
+   * List the terms on the board that at least one pattern can see.
+   *
+   * @param masks
+   *          squares of each pattern
+   * @return the terms
+   */
+  private static List<Term> terms(final List<Long> masks) {
+    List<Term> all = new ArrayList<>();
+    for (int sq = 0; sq < NUM_SQUARES; sq++) {
+      all.add(new Term(Term.DISC, new int[] { sq }));
+    }
+    for (int sym = 0; sym < NUM_SYMMETRIES; sym++) {
+      int corner = Symmetry.transformSquare(0, sym, SIZE);
+      int x = Symmetry.transformSquare(9, sym, SIZE);
+      int c = Symmetry.transformSquare(1, sym, SIZE);
+      int[] edge = new int[SIZE];
+      for (int i = 0; i < SIZE; i++) {
+        edge[i] = Symmetry.transformSquare(i, sym, SIZE);
+      }
+      all.add(new Term(Term.X_SQUARE, new int[] { x, corner }));
+      all.add(new Term(Term.C_SQUARE, new int[] { c, corner }));
+      all.add(new Term(Term.EDGE, edge));
+    }
+
+    List<Term> ret = new ArrayList<>();
+    for (Term t : all) {
+      if (isDuplicate(t, ret)) {
+        continue;
+      }
+      for (Long m : masks) {
+        if ((t.squares & ~m.longValue()) == 0) {
+          t.patterns++;
+        }
+      }
+      if (t.patterns > 0) {
+        ret.add(t);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @param term
+   *          a term
+   * @param terms
+   *          terms already listed
+   * @return whether the same term on the same squares is listed
+   */
+  private static boolean isDuplicate(final Term term, final List<Term> terms) {
+    for (Term t : terms) {
+      if (t.kind == term.kind && t.squares == term.squares) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sign of the disc in a cell.
+   *
+   * @param cell
+   *          the digit of the square
+   * @return 1 for white, -1 for black and 0 for empty
+   */
+  static int owner(final int cell) {
+    if (cell == WHITE_DIGIT) {
+      return 1;
+    }
+    return cell == BLACK_DIGIT ? -1 : 0;
+  }
+
+  /**
+   * One part of the evaluation, over a few squares.
+   *
+   * @author gej
+   *
+   */
+  private static final class Term {
+    /** A disc on a square. */
+    static final int DISC = 0;
+
+    /** A disc on an X-square next to a corner. */
+    static final int X_SQUARE = 1;
+
+    /** A disc on a C-square next to a corner. */
+    static final int C_SQUARE = 2;
+
+    /** Stable discs on an edge. */
+    static final int EDGE = 3;
+
+    /** What is scored. */
+    final int kind;
+
+    /**
+     * The squares: the scored square and then its corner, or an edge from
+     * corner to corner.
+     */
+    private final int[] cells;
+
+    /** Mask of the squares. */
+    final long squares;
+
+    /** Number of patterns that hold all the squares. */
+    int patterns;
+
+    /**
+     * Construct a term.
+     *
+     * @param kind
+     *          what is scored
+     * @param cells
+     *          the squares
+     */
+    Term(final int kind, final int[] cells) {
+      this.kind = kind;
+      this.cells = cells;
+      long mask = 0;
+      for (int sq : cells) {
+        mask |= 1L << sq;
+      }
+      this.squares = mask;
+    }
+
+    /**
+     * Score the term.
+     *
+     * @param board
+     *          digit of each square
+     * @param phase
+     *          the game phase
+     * @return the score from white's point of view
+     */
+    int value(final int[] board, final int phase) {
+      int own = owner(board[this.cells[0]]);
+      switch (this.kind) {
+        case DISC:
+          return own * (DISC_WEIGHT[phase] + POSITION_PERCENT[phase] * squareValue(this.cells[0]) / 100);
+        case X_SQUARE:
+          return board[this.cells[1]] == 0 ? -own * X_PENALTY[phase] : 0;
+        case C_SQUARE:
+          return board[this.cells[1]] == 0 ? -own * C_PENALTY[phase] : 0;
+        default:
+          return stableEdge(board) * STABLE_BONUS[phase];
+      }
+    }
+
+    /**
+     * Count the stable discs between the corners of an edge: those in an
+     * unbroken run of one color from a corner, or every disc once the edge is
+     * full.
+     *
+     * @param board
+     *          digit of each square
+     * @return white's stable discs less black's
+     */
+    private int stableEdge(final int[] board) {
+      boolean full = true;
+      for (int sq : this.cells) {
+        full &= board[sq] != 0;
+      }
+      int ret = 0;
+      for (int i = 1; i < SIZE - 1; i++) {
+        int cell = board[this.cells[i]];
+        if (full || run(board, cell, 0, i) || run(board, cell, SIZE - 1, i)) {
+          ret += owner(cell);
+        }
+      }
+      return ret;
+    }
+
+    /**
+     * @param board
+     *          digit of each square
+     * @param cell
+     *          digit to look for
+     * @param from
+     *          position on the edge of the corner
+     * @param to
+     *          position on the edge of the disc
+     * @return whether every square from the corner to the disc holds the digit
+     */
+    private boolean run(final int[] board, final int cell, final int from, final int to) {
+      int step = to > from ? 1 : -1;
+      for (int i = from; i != to; i += step) {
+        if (board[this.cells[i]] != cell) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * @param sq
+   *          the square
+   * @return the value of a disc on the square
+   */
+  private static int squareValue(final int sq) {
+    int x = sq % SIZE;
+    int y = sq / SIZE;
+    return SQUARE_VALUES[Math.min(x, SIZE - 1 - x)][Math.min(y, SIZE - 1 - y)];
+  }
+}
@@ -0,0 +1,146 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.Coordinate;
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.Perft;
+
+/**
+ * Count Reversi move paths to a fixed depth and time it.
+ *
+ * <p>Arguments are the depth, then optionally <code>divide</code> to print the
+ * count under each root move, <code>objects</code> to count with ReversiGame
+ * instead of the bitboards, and a position as read by
+ * {@link ReversiGame#parsePosition(String)}.
+ *
+ * @author gej
+ *
+ */
+public final class ReversiPerft {
+
+  /**
+   * No construction.
+   */
+  private ReversiPerft() {
+  }
+
+  /**
+   * Main method.
+   * 
+   * @param args
+   *          arguments to the program.
+   * @throws GameException
+   *           when the position can't be read.
+   */
+  public static void main(final String[] args) throws GameException {
+    if (args.length < 1) {
+      System.out.println("Usage: ReversiPerft depth [divide] [objects] [board color]");
+      return;
+    }
+
+    int depth = Integer.parseInt(args[0]);
+    if (depth < 0) {
+      System.out.println("Depth must not be negative.");
+      return;
+    }
+    boolean divide = false;
+    boolean objects = false;
+    StringBuilder position = new StringBuilder();
+    for (int i = 1; i < args.length; i++) {
+      if ("divide".equals(args[i])) {
+        divide = true;
+      } else if ("objects".equals(args[i])) {
+        objects = true;
+      } else {
+        position.append(args[i]).append(' ');
+      }
+    }
+
+    ReversiGame game = position.length() == 0 ? new ReversiGame() : ReversiGame.parsePosition(position.toString());
+
+    long start = System.nanoTime();
+    long nodes = 0;
+    if (objects) {
+      Perft<ReversiMove> perft = new Perft<>(game);
+      nodes = divide ? perft.divide(depth, System.out) : perft.count(depth);
+    } else {
+      PieceColor toMove = game.getColorToMove();
+      long own = game.getDiscs(toMove);
+      long opp = game.getDiscs(toMove.getOpposite());
+      nodes = divide ? divide(own, opp, depth) : count(own, opp, depth);
+    }
+    Perft.report(depth, nodes, System.nanoTime() - start, System.out);
+  }
+
+  /**
+   * Count leaf nodes on the bitboards, counting the moves at the last ply
+   * from the move mask without making them. A pass counts as one move, and a
+   * finished game has none.
+   * 
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param depth
+   *          depth left, 0 for just the position
+   * @return the count
+   * @throws IllegalArgumentException
+   *           if depth is negative.
+   */
+  static long count(final long own, final long opp, final int depth) {
+    if (depth < 1) {
+      Perft.checkDepth(depth);
+      return 1;
+    }
+    long moves = ReversiBitboard.moves(own, opp);
+    if (moves == 0) {
+      if (ReversiBitboard.moves(opp, own) == 0) {
+        return 0;
+      }
+      return depth == 1 ? 1 : count(opp, own, depth - 1);
+    }
+    if (depth == 1) {
+      return Long.bitCount(moves);
+    }
+    long nodes = 0;
+    while (moves != 0) {
+      int sq = Long.numberOfTrailingZeros(moves);
+      moves &= moves - 1;
+      long flipped = ReversiBitboard.flips(own, opp, sq);
+      nodes += count(opp ^ flipped, own | flipped | (1L << sq), depth - 1);
+    }
+    return nodes;
+  }
+
+  /**
+   * Count leaf nodes on the bitboards and print the count under each root
+   * move.
+   * 
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @param depth
+   *          depth, at least 1 for there to be root moves
+   * @return the total count
+   */
+  private static long divide(final long own, final long opp, final int depth) {
+    long moves = ReversiBitboard.moves(own, opp);
+    if (moves == 0 || depth < 1) {
+      return count(own, opp, depth);
+    }
+    long nodes = 0;
+    while (moves != 0) {
+      int sq = Long.numberOfTrailingZeros(moves);
+      moves &= moves - 1;
+      long count = 1;
+      if (depth > 1) {
+        long flipped = ReversiBitboard.flips(own, opp, sq);
+        count = count(opp ^ flipped, own | flipped | (1L << sq), depth - 1);
+      }
+      System.out.println(new Coordinate(sq % 8, sq / 8) + ": " + count);
+      nodes += count;
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,64 @@
+package com.spamalot.reversi;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.search.MatchResult;
+import com.spamalot.search.Tournament;
+
+/**
+ * Play a match between two Reversi engines from the start position.
+ *
+ * <p>Arguments are the number of games, the number of threads, the two engines
+ * as <code>ALGORITHM:depth[:millis]</code>, and optionally the number of random
+ * opening moves and the seed of the openings. Results are for the first
+ * engine.
+ *
+ * @author gej
+ *
+ */
+public final class ReversiTournament {
+  /** Size of each engine's table in megabytes. */
+  private static final int TABLE_MEGABYTES = 16;
+
+  /**
+   * No construction.
+   */
+  private ReversiTournament() {
+  }
+
+  /**
+   * Main method.
+   * 
+   * @param args
+   *          arguments to the program.
+   * @throws GameException
+   *           when the game can't be set up.
+   * @throws InterruptedException
+   *           if interrupted while the games are played.
+   */
+  public static void main(final String[] args) throws GameException, InterruptedException {
+    if (args.length < 4) {
+      System.out.println("Usage: ReversiTournament games threads engine engine [openingPlies [seed]]");
+      return;
+    }
+    int games = Integer.parseInt(args[0]);
+    if (games < 1) {
+      System.out.println("Games must be at least 1.");
+      return;
+    }
+
+    Tournament.Player first = Tournament.Player.parse(args[2], TABLE_MEGABYTES);
+    Tournament.Player second = Tournament.Player.parse(args[3], TABLE_MEGABYTES);
+    Tournament<ReversiMove> tournament = new Tournament<>(new ReversiBitboardGame(), first, second);
+    tournament.setThreads(Integer.parseInt(args[1]));
+    if (args.length > 4) {
+      tournament.setOpeningPlies(Integer.parseInt(args[4]));
+    }
+    if (args.length > 5) {
+      tournament.setSeed(Long.parseLong(args[5]));
+    }
+
+    MatchResult result = tournament.play(games);
+    System.out.println(first.getName() + " vs " + second.getName());
+    System.out.println(result.toLogLine());
+  }
+}
@@ -0,0 +1,434 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+
+import java.util.List;
+
+/**
+ * What the searchers have in common: the game and table, node counting and
+ * the limits that abort a search.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public abstract class AbstractSearch<M extends Move> implements Searcher<M> {
+  /** Bigger than any evaluation. */
+  public static final int INFINITY = 1000000;
+
+  /** Positions between checks of the clock. */
+  private static final int CHECK_INTERVAL = 1024;
+
+  /** Plies with their own sort key buffer. */
+  private static final int KEY_BUFFER_PLIES = 128;
+
+  /** Smallest sort key buffer. */
+  private static final int MIN_KEY_BUFFER = 64;
+
+  /** The game to search. */
+  private final SearchableGame<M> game;
+
+  /** Where results are remembered. */
+  private final TranspositionTable table;
+
+  /** Positions visited. */
+  private long nodes;
+
+  /** Set from any thread to abort the search. */
+  private volatile boolean stopRequested;
+
+  /** Whether there is a deadline. */
+  private boolean timed;
+
+  /** System.nanoTime() after which the search is aborted. */
+  private long deadline;
+
+  /** Positions after which the search is aborted. */
+  private long maxNodes = Long.MAX_VALUE;
+
+  /** Whether the last search was aborted before it finished. */
+  private boolean aborted;
+
+  /** Killer moves and history. */
+  private final MoveOrdering ordering = new MoveOrdering();
+
+  /** The game as a MoveScorer, or null if it can't score moves. */
+  private final MoveScorer<M> scorer;
+
+  /** The game as an EndgameSolvable, or null if it can't solve positions. */
+  private final EndgameSolvable solvable;
+
+  /** Counts the positions of endgame solves against the limits. */
+  private final NodeCounter solveCounter = new NodeCounter() {
+    @Override
+    public boolean countNodes(final long count) {
+      AbstractSearch.this.nodes += count;
+      if (limitReached()) {
+        AbstractSearch.this.aborted = true;
+      }
+      return AbstractSearch.this.aborted;
+    }
+  };
+
+  /** Sort key buffers, one for each ply. */
+  private final int[][] keyBuffers = new int[KEY_BUFFER_PLIES][];
+
+  /** Whether each search starts a new table generation. */
+  private boolean agesTable = true;
+
+  /** Whether positions are stored in the table by their canonical form. */
+  private boolean canonicalKeys;
+
+  /** Cutoff, table and timing statistics of the last search. */
+  private final SearchCounters counters = new SearchCounters();
+
+  /** Whether move generation and evaluation are timed. */
+  private boolean timing;
+
+  /**
+   * Construct a search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param transpositionTable
+   *          the table to use
+   */
+  @SuppressWarnings("unchecked")
+  protected AbstractSearch(final SearchableGame<M> searchGame, final TranspositionTable transpositionTable) {
+    this.game = searchGame;
+    this.table = transpositionTable;
+    this.scorer = searchGame instanceof MoveScorer ? (MoveScorer<M>) searchGame : null;
+    this.solvable = searchGame instanceof EndgameSolvable ? (EndgameSolvable) searchGame : null;
+  }
+
+  /**
+   * Search to a fixed depth.
+   *
+   * @param depth
+   *          depth in plies
+   * @return the best move, which is only complete if the search was not
+   *         aborted
+   */
+  public final M search(final int depth) {
+    return search(depth, null);
+  }
+
+  /**
+   * Get ready for a new search.
+   */
+  protected final void startSearch() {
+    this.nodes = 0;
+    this.aborted = false;
+    this.counters.clear();
+    this.ordering.age();
+    if (this.agesTable) {
+      this.table.newSearch();
+    }
+  }
+
+  /**
+   * Count a position and check the limits.
+   *
+   * @return whether the search must abort
+   */
+  protected final boolean countNode() {
+    this.nodes++;
+    if (this.nodes >= this.maxNodes || (this.nodes & (CHECK_INTERVAL - 1)) == 0) {
+      if (limitReached()) {
+        this.aborted = true;
+      }
+    }
+    return this.aborted;
+  }
+
+  /**
+   * @return whether a stop was requested or a limit has been reached
+   */
+  private boolean limitReached() {
+    return this.stopRequested || this.nodes >= this.maxNodes || this.timed && System.nanoTime() - this.deadline > 0;
+  }
+
+  /**
+   * Check whether a position below the root can be solved instead of
+   * searched.
+   *
+   * @param ply
+   *          distance from the root
+   * @return whether to call {@link #solve(int, int)}
+   */
+  protected final boolean canSolve(final int ply) {
+    return ply > 0 && this.solvable != null && this.solvable.isSolvable();
+  }
+
+  /**
+   * Solve the position exactly. The solve counts its positions and is given
+   * up when the search runs into its limits, and the search is then aborted.
+   *
+   * @param alpha
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @return the score for the side to move, meaningless if the search was
+   *         aborted
+   */
+  protected final int solve(final int alpha, final int beta) {
+    return this.solvable.solve(alpha, beta, this.solveCounter);
+  }
+
+  /**
+   * Evaluate the position for the side to move.
+   *
+   * @param over
+   *          whether the game is over
+   * @return the evaluation
+   */
+  protected final int evaluateForSideToMove(final boolean over) {
+    if (this.timing) {
+      long start = System.nanoTime();
+      int eval = this.game.evaluate(over);
+      this.counters.addEvaluation(System.nanoTime() - start);
+      return this.game.getColorToMove() == PieceColor.WHITE ? eval : -eval;
+    }
+    int eval = this.game.evaluate(over);
+    return this.game.getColorToMove() == PieceColor.WHITE ? eval : -eval;
+  }
+
+  /**
+   * Generate the moves of the position.
+   *
+   * @return the moves
+   */
+  protected final List<M> generateMoves() {
+    if (this.timing) {
+      long start = System.nanoTime();
+      List<M> moves = this.game.getAvailableMoves();
+      this.counters.addMoveGeneration(System.nanoTime() - start);
+      return moves;
+    }
+    return this.game.getAvailableMoves();
+  }
+
+  /**
+   * Look a position up in the table.
+   *
+   * @param key
+   *          table key of the position
+   * @return the data word, or 0 if the position is not stored
+   */
+  protected final long probeTable(final long key) {
+    long entry = this.table.probe(key);
+    this.counters.probe(entry != 0);
+    return entry;
+  }
+
+  /**
+   * Sort moves so the likeliest to cause a cutoff come first: the hash move,
+   * the killers, then by the game's score if it is a {@link MoveScorer} and by
+   * history.
+   *
+   * @param moves
+   *          the moves
+   * @param ply
+   *          distance from the root
+   * @param hashMove
+   *          code of the move to try first, or 0
+   */
+  protected final void orderMoves(final List<M> moves, final int ply, final int hashMove) {
+    int n = moves.size();
+    if (n < 2) {
+      return;
+    }
+    int[] keys = sortKeys(ply, n);
+    for (int i = 0; i < n; i++) {
+      M move = moves.get(i);
+      int score = this.scorer == null ? 0 : this.scorer.scoreMove(move);
+      keys[i] = this.ordering.key(this.game.encodeMove(move), score, ply, hashMove);
+    }
+
+    for (int i = 1; i < n; i++) {
+      int key = keys[i];
+      M move = moves.get(i);
+      int j = i - 1;
+      while (j >= 0 && keys[j] < key) {
+        keys[j + 1] = keys[j];
+        moves.set(j + 1, moves.get(j));
+        j--;
+      }
+      keys[j + 1] = key;
+      moves.set(j + 1, move);
+    }
+  }
+
+  /**
+   * Get a buffer for the sort keys of a ply.
+   *
+   * @param ply
+   *          distance from the root
+   * @param n
+   *          number of keys
+   * @return the buffer
+   */
+  private int[] sortKeys(final int ply, final int n) {
+    if (ply >= this.keyBuffers.length) {
+      return new int[n];
+    }
+    if (this.keyBuffers[ply] == null || this.keyBuffers[ply].length < n) {
+      this.keyBuffers[ply] = new int[Math.max(n, MIN_KEY_BUFFER)];
+    }
+    return this.keyBuffers[ply];
+  }
+
+  /**
+   * Note a move that caused a cutoff, for ordering later.
+   *
+   * @param move
+   *          the move
+   * @param ply
+   *          distance from the root
+   * @param depth
+   *          depth left
+   * @param firstMove
+   *          whether the move was the first tried
+   */
+  protected final void cutoff(final M move, final int ply, final int depth, final boolean firstMove) {
+    this.counters.cutoff(firstMove);
+    this.ordering.cutoff(this.game.encodeMove(move), ply, depth);
+  }
+
+  /**
+   * @return the cutoff, table and timing statistics of the last search
+   */
+  public final SearchCounters getCounters() {
+    return this.counters;
+  }
+
+  /**
+   * Choose whether move generation and evaluation are timed, which costs two
+   * calls to <code>System.nanoTime()</code> a node.
+   *
+   * @param timed
+   *          whether to time them
+   */
+  public final void setTiming(final boolean timed) {
+    this.timing = timed;
+  }
+
+  /**
+   * @return the killer moves and history of this search
+   */
+  public final MoveOrdering getOrdering() {
+    return this.ordering;
+  }
+
+  /**
+   * Choose whether each search starts a new table generation. Helpers sharing
+   * a table with another search leave that to it.
+   *
+   * @param ages
+   *          whether to start a new generation
+   */
+  final void setAgesTable(final boolean ages) {
+    this.agesTable = ages;
+  }
+
+  /**
+   * Choose whether positions are stored in the table by their canonical form,
+   * so symmetric positions share entries. Finding the canonical form costs
+   * time at every node, so it pays off mostly in the opening where symmetric
+   * positions are common. It has no effect unless the game is a
+   * {@link SymmetricGame}.
+   *
+   * @param canonical
+   *          whether to use canonical keys
+   */
+  public final void setCanonicalKeys(final boolean canonical) {
+    this.canonicalKeys = canonical && this.game instanceof SymmetricGame;
+  }
+
+  /**
+   * @return the symmetry taking the current position to the form it is stored
+   *         in the table
+   */
+  protected final int tableSymmetry() {
+    return this.canonicalKeys ? Symmetry.canonical(this.game) : 0;
+  }
+
+  /**
+   * @param symmetry
+   *          symmetry from {@link #tableSymmetry()}
+   * @return the table key of the current position
+   */
+  protected final long tableKey(final int symmetry) {
+    return Symmetry.key(this.game, symmetry);
+  }
+
+  /**
+   * @param code
+   *          code of a move in the current position
+   * @param symmetry
+   *          symmetry from {@link #tableSymmetry()}
+   * @return the code to store in the table
+   */
+  protected final int toTableMove(final int code, final int symmetry) {
+    return Symmetry.moveCode(this.game, code, symmetry);
+  }
+
+  /**
+   * @param code
+   *          code of a move read from the table
+   * @param symmetry
+   *          symmetry from {@link #tableSymmetry()}
+   * @return the code of the move in the current position
+   */
+  protected final int fromTableMove(final int code, final int symmetry) {
+    return Symmetry.moveCode(this.game, code, Symmetry.inverse(symmetry));
+  }
+
+  /**
+   * @return the game being searched
+   */
+  protected final SearchableGame<M> getGame() {
+    return this.game;
+  }
+
+  /**
+   * @return the transposition table
+   */
+  protected final TranspositionTable getTable() {
+    return this.table;
+  }
+
+  @Override
+  public final long getNodes() {
+    return this.nodes;
+  }
+
+  @Override
+  public final boolean isAborted() {
+    return this.aborted;
+  }
+
+  @Override
+  public final void setLimits(final long deadlineNanos, final long nodeLimit) {
+    this.timed = deadlineNanos != SearchLimits.UNLIMITED;
+    this.deadline = deadlineNanos;
+    this.maxNodes = nodeLimit;
+  }
+
+  @Override
+  public final void setNodeLimit(final long nodeLimit) {
+    this.maxNodes = nodeLimit;
+  }
+
+  @Override
+  public final void stop() {
+    this.stopRequested = true;
+  }
+
+  @Override
+  public final void clearStop() {
+    this.stopRequested = false;
+  }
+}
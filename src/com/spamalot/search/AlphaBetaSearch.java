@@ -0,0 +1,185 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A NegaMax search with alpha-beta pruning that remembers results in a
+ * {@link TranspositionTable}, so a position reached by different move orders
+ * is only searched once.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class AlphaBetaSearch<M extends Move> extends AbstractSearch<M> {
+  /** Best move found at the root. */
+  private M bestMove;
+
+  /** Score of the best move, for the side to move at the root. */
+  private int score;
+
+  /** Depth of the last search. */
+  private int searchDepth;
+
+  /** Code of the move to search first at the root, or 0. */
+  private int rootMoveCode;
+
+  /**
+   * Construct a search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param transpositionTable
+   *          the table to use
+   */
+  public AlphaBetaSearch(final SearchableGame<M> searchGame, final TranspositionTable transpositionTable) {
+    super(searchGame, transpositionTable);
+  }
+
+  @Override
+  public M search(final int depth, final M firstMove) {
+    startSearch();
+    this.bestMove = null;
+    this.searchDepth = depth;
+    this.rootMoveCode = firstMove == null ? 0 : getGame().encodeMove(firstMove);
+    this.score = negaMax(depth, -INFINITY, INFINITY, 0);
+    return this.bestMove;
+  }
+
+  /**
+   * Search the current position.
+   *
+   * @param depth
+   *          depth left
+   * @param alphaIn
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param ply
+   *          distance from the root
+   * @return the score for the side to move
+   */
+  private int negaMax(final int depth, final int alphaIn, final int beta, final int ply) {
+    if (countNode()) {
+      return 0;
+    }
+    SearchableGame<M> game = getGame();
+    boolean over = game.isOver();
+    if (!over && canSolve(ply)) {
+      return solve(alphaIn, beta);
+    }
+    if (over || depth == 0) {
+      return evaluateForSideToMove(over);
+    }
+
+    int alpha = alphaIn;
+    int symmetry = tableSymmetry();
+    long key = tableKey(symmetry);
+    long entry = probeTable(key);
+    int hashMove = fromTableMove(TranspositionTable.move(entry), symmetry);
+    if (ply > 0 && entry != 0 && TranspositionTable.depth(entry) >= depth) {
+      int s = TranspositionTable.score(entry);
+      switch (TranspositionTable.bound(entry)) {
+        case TranspositionTable.EXACT:
+          return s;
+        case TranspositionTable.LOWER:
+          if (s >= beta) {
+            return s;
+          }
+          break;
+        case TranspositionTable.UPPER:
+          if (s <= alpha) {
+            return s;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    List<M> moves = generateMoves();
+    orderMoves(moves, ply, ply == 0 && this.rootMoveCode != 0 ? this.rootMoveCode : hashMove);
+
+    int best = -INFINITY;
+    int bestCode = 0;
+    boolean first = true;
+    for (M move : moves) {
+      game.makeMove(move);
+      int s = -negaMax(depth - 1, -beta, -alpha, ply + 1);
+      game.undoLastMove();
+      if (isAborted()) {
+        return 0;
+      }
+
+      if (s > best) {
+        best = s;
+        bestCode = game.encodeMove(move);
+        if (ply == 0) {
+          this.bestMove = move;
+        }
+      }
+      if (s > alpha) {
+        alpha = s;
+      }
+      if (alpha >= beta) {
+        cutoff(move, ply, depth, first);
+        break;
+      }
+      first = false;
+    }
+
+    int bound = TranspositionTable.EXACT;
+    if (best <= alphaIn) {
+      bound = TranspositionTable.UPPER;
+    } else if (best >= beta) {
+      bound = TranspositionTable.LOWER;
+    }
+    getTable().store(key, toTableMove(bestCode, symmetry), depth, bound, best);
+
+    return best;
+  }
+
+  @Override
+  public int getScore() {
+    return this.score;
+  }
+
+  /**
+   * Follow the best moves stored in the table from the root. Entries may have
+   * been replaced, so the line can be shorter than the search depth.
+   */
+  @Override
+  public List<M> getPrincipalVariation() {
+    List<M> ret = new ArrayList<>();
+    if (this.bestMove == null) {
+      return ret;
+    }
+    SearchableGame<M> game = getGame();
+    ret.add(this.bestMove);
+    game.makeMove(this.bestMove);
+    while (ret.size() < this.searchDepth && !game.isOver()) {
+      int symmetry = tableSymmetry();
+      int code = fromTableMove(TranspositionTable.move(getTable().probe(tableKey(symmetry))), symmetry);
+      M next = null;
+      for (M move : game.getAvailableMoves()) {
+        if (code != 0 && game.encodeMove(move) == code) {
+          next = move;
+          break;
+        }
+      }
+      if (next == null) {
+        break;
+      }
+      ret.add(next);
+      game.makeMove(next);
+    }
+    for (int i = 0; i < ret.size(); i++) {
+      game.undoLastMove();
+    }
+    return ret;
+  }
+}
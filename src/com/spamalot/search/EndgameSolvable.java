@@ -0,0 +1,36 @@
+package com.spamalot.search;
+
+/**
+ * A game that can score some positions exactly instead of evaluating them,
+ * usually because few enough moves remain to search to the end of the game.
+ * The searchers ask below the root, so the root moves are still searched
+ * and a best move found.
+ *
+ * @author gej
+ *
+ */
+public interface EndgameSolvable {
+  /**
+   * @return whether the current position is close enough to the end to solve
+   */
+  boolean isSolvable();
+
+  /**
+   * Solve the current position. Like a search, the result may stop at a
+   * bound outside the window. The solve reports its positions to the counter
+   * now and then, and gives up as soon as the counter says the search is
+   * aborted.
+   *
+   * @param alpha
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param counter
+   *          counts the positions against the limits of the search
+   * @return the exact score for the side to move, on the same scale as
+   *         evaluate() and above any evaluation for a won game, or anything
+   *         if the solve was given up. A solver that has to cut some lines
+   *         short scores them like an evaluation, never as solved.
+   */
+  int solve(int alpha, int beta, NodeCounter counter);
+}
@@ -0,0 +1,311 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Search one ply deeper at a time until a limit is reached, and play the best
+ * move of the last iteration that finished.
+ *
+ * <p>Each iteration searches the previous best move first, and the
+ * transposition table carries the best moves of the rest of the tree from one
+ * iteration to the next.
+ *
+ * <p>With an {@link OpeningBook} set, positions in the book are answered from
+ * it without searching.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class IterativeDeepening<M extends Move> {
+  /** Nanoseconds in a millisecond. */
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  /** The game to search. */
+  private final SearchableGame<M> game;
+
+  /** The search run for each iteration. */
+  private final AbstractSearch<M> search;
+
+  /** Deepest iteration that finished. */
+  private int depth;
+
+  /** Score of the deepest iteration that finished. */
+  private int score;
+
+  /** Positions visited over all iterations. */
+  private long nodes;
+
+  /** Principal variation of the deepest iteration that finished. */
+  private List<M> principalVariation = new ArrayList<>();
+
+  /** Statistics summed over all iterations. */
+  private final SearchCounters counters = new SearchCounters();
+
+  /** Time taken by each iteration that finished. */
+  private long[] iterationNanos = new long[0];
+
+  /** Time taken by the whole search. */
+  private long elapsedNanos;
+
+  /** Where statistics are published after each iteration, or null. */
+  private SearchMetrics metrics;
+
+  /** Book to play from before searching, or null. */
+  private OpeningBook book;
+
+  /** Chooses among the book moves. */
+  private Random random;
+
+  /**
+   * Construct an iterative deepening alpha-beta search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param table
+   *          the table to use
+   */
+  public IterativeDeepening(final SearchableGame<M> searchGame, final TranspositionTable table) {
+    this(searchGame, table, SearchAlgorithm.ALPHA_BETA);
+  }
+
+  /**
+   * Construct an iterative deepening search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param table
+   *          the table to use
+   * @param algorithm
+   *          the search to run for each iteration
+   */
+  public IterativeDeepening(final SearchableGame<M> searchGame, final TranspositionTable table, final SearchAlgorithm algorithm) {
+    this.game = searchGame;
+    this.search = algorithm.create(searchGame, table);
+  }
+
+  /**
+   * Search within limits.
+   *
+   * @param limits
+   *          the limits
+   * @return the best move of the deepest iteration that finished. If none
+   *         did, the best move found so far in the first, or failing that the
+   *         first move available.
+   */
+  public M search(final SearchLimits limits) {
+    this.search.clearStop();
+    return searchUnlessStopped(limits);
+  }
+
+  /**
+   * Search within limits without forgetting an earlier request to stop. A
+   * search handed to another thread runs this, so that a {@link #stop()}
+   * made before the thread gets to it still stops it.
+   *
+   * @param limits
+   *          the limits
+   * @return the best move, as for {@link #search(SearchLimits)}
+   */
+  M searchUnlessStopped(final SearchLimits limits) {
+    long start = System.nanoTime();
+    long deadline = deadline(start, limits.getHardTimeMillis());
+    long softDeadline = deadline(start, limits.getSoftTimeMillis());
+
+    this.depth = 0;
+    this.nodes = 0;
+    this.counters.clear();
+    this.elapsedNanos = 0;
+    this.iterationNanos = new long[0];
+    this.principalVariation = new ArrayList<>();
+    M bookMove = probeBook();
+    if (bookMove != null) {
+      return bookMove;
+    }
+
+    this.search.setLimits(deadline, limits.getMaxNodes());
+    this.search.setTiming(this.metrics != null && this.metrics.isTiming());
+    M best = null;
+    for (int d = 1; d <= limits.getMaxDepth(); d++) {
+      if (limits.getMaxNodes() != SearchLimits.UNLIMITED) {
+        this.search.setNodeLimit(limits.getMaxNodes() - this.nodes);
+      }
+
+      long iterationStart = System.nanoTime();
+      M move = this.search.search(d, best);
+      long now = System.nanoTime();
+      this.nodes += this.search.getNodes();
+      this.counters.add(this.search.getCounters());
+      this.elapsedNanos = now - start;
+      if (this.search.isAborted()) {
+        if (best == null) {
+          best = move;
+        }
+        break;
+      }
+
+      best = move;
+      this.depth = d;
+      this.score = this.search.getScore();
+      this.principalVariation = this.search.getPrincipalVariation();
+      this.iterationNanos = Arrays.copyOf(this.iterationNanos, d);
+      this.iterationNanos[d - 1] = now - iterationStart;
+      if (this.metrics != null) {
+        this.metrics.record(this.depth, this.nodes, this.elapsedNanos, this.iterationNanos, this.counters);
+      }
+      if (softDeadline != SearchLimits.UNLIMITED && System.nanoTime() - softDeadline > 0) {
+        break;
+      }
+    }
+
+    if (best == null) {
+      best = this.game.getAvailableMoves().get(0);
+    }
+    return best;
+  }
+
+  /**
+   * Look the position up in the book.
+   *
+   * @return the book move, or null if the position is not in the book
+   */
+  private M probeBook() {
+    if (this.book == null) {
+      return null;
+    }
+    int symmetry = Symmetry.canonical(this.game);
+    int i = this.book.choose(Symmetry.key(this.game, symmetry), this.random);
+    if (i < 0) {
+      return null;
+    }
+    M move = MoveCodes.findMove(this.game, Symmetry.moveCode(this.game, this.book.getMove(i), Symmetry.inverse(symmetry)));
+    if (move != null) {
+      this.score = this.book.getScore(i);
+      this.principalVariation.add(move);
+    }
+    return move;
+  }
+
+  /**
+   * Play from a book before searching. A book move comes back with a depth of
+   * 0 and the score stored in the book.
+   *
+   * @param openingBook
+   *          the book, or null for none
+   * @param bookRandom
+   *          chooses among the book moves of a position
+   */
+  public void setOpeningBook(final OpeningBook openingBook, final Random bookRandom) {
+    this.book = openingBook;
+    this.random = bookRandom;
+  }
+
+  /**
+   * Choose whether positions are stored in the table by their canonical form.
+   *
+   * @param canonical
+   *          whether to use canonical keys
+   * @see AbstractSearch#setCanonicalKeys(boolean)
+   */
+  public void setCanonicalKeys(final boolean canonical) {
+    this.search.setCanonicalKeys(canonical);
+  }
+
+  /**
+   * Forget the killer moves and history of earlier searches, so the next
+   * search orders moves as a new searcher would.
+   */
+  public void clearOrdering() {
+    this.search.getOrdering().clear();
+  }
+
+  /**
+   * Publish statistics after each iteration.
+   *
+   * @param searchMetrics
+   *          where to publish them, or null for nowhere
+   */
+  public void setMetrics(final SearchMetrics searchMetrics) {
+    this.metrics = searchMetrics;
+  }
+
+  /**
+   * Work out a System.nanoTime() deadline.
+   *
+   * @param start
+   *          System.nanoTime() at the start
+   * @param millis
+   *          milliseconds allowed, or {@link SearchLimits#UNLIMITED}
+   * @return the deadline, or {@link SearchLimits#UNLIMITED}
+   */
+  static long deadline(final long start, final long millis) {
+    if (millis == SearchLimits.UNLIMITED) {
+      return SearchLimits.UNLIMITED;
+    }
+    return start + millis * NANOS_PER_MILLI;
+  }
+
+  /**
+   * Ask the search to stop as soon as it can. Safe to call from any thread.
+   */
+  public void stop() {
+    this.search.stop();
+  }
+
+  /**
+   * @return the deepest iteration that finished
+   */
+  public int getDepth() {
+    return this.depth;
+  }
+
+  /**
+   * @return the score of the deepest iteration that finished, for the side to
+   *         move
+   */
+  public int getScore() {
+    return this.score;
+  }
+
+  /**
+   * @return the principal variation of the deepest iteration that finished
+   */
+  public List<M> getPrincipalVariation() {
+    return this.principalVariation;
+  }
+
+  /**
+   * @return the positions visited over all iterations
+   */
+  public long getNodes() {
+    return this.nodes;
+  }
+
+  /**
+   * @return the cutoff, table and timing statistics summed over all
+   *         iterations
+   */
+  public SearchCounters getCounters() {
+    return this.counters;
+  }
+
+  /**
+   * @return the time taken by each iteration that finished, in nanoseconds
+   */
+  public long[] getIterationNanos() {
+    return this.iterationNanos.clone();
+  }
+
+  /**
+   * @return the time taken by the last search, in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+}
@@ -0,0 +1,267 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parallel search that shares nothing but the transposition table.
+ *
+ * <p>The calling thread runs an ordinary {@link IterativeDeepening} search and
+ * its result is the one played. Helper threads search their own copies of
+ * the position at the same time, every other helper one ply deeper, and the
+ * results they store in the shared table let the main search cut off sooner.
+ * The helpers are stopped as soon as the main search finishes.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class LazySmpSearch<M extends Move> implements AutoCloseable {
+  /** The game to search. */
+  private final SearchableGame<M> game;
+
+  /** Table shared by all threads. */
+  private final TranspositionTable table;
+
+  /** The searcher each thread runs. */
+  private final SearchAlgorithm algorithm;
+
+  /** Number of threads, the calling thread included. */
+  private final int threads;
+
+  /** Threads that run the helpers, or null for a single thread. */
+  private final ExecutorService executor;
+
+  /** The search on the calling thread. */
+  private final IterativeDeepening<M> main;
+
+  /** Whether positions are stored in the table by their canonical form. */
+  private boolean canonicalKeys;
+
+  /** Where statistics are published, or null. */
+  private SearchMetrics metrics;
+
+  /** Positions visited by all threads in the last search. */
+  private long nodes;
+
+  /**
+   * Construct a parallel search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param transpositionTable
+   *          the table shared by all threads
+   * @param searchAlgorithm
+   *          the searcher each thread runs
+   * @param numThreads
+   *          number of threads, the calling thread included
+   */
+  public LazySmpSearch(final SearchableGame<M> searchGame, final TranspositionTable transpositionTable, final SearchAlgorithm searchAlgorithm,
+      final int numThreads) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread.");
+    }
+    this.game = searchGame;
+    this.table = transpositionTable;
+    this.algorithm = searchAlgorithm;
+    this.threads = numThreads;
+    this.executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads - 1) : null;
+    this.main = new IterativeDeepening<>(searchGame, transpositionTable, searchAlgorithm);
+  }
+
+  /**
+   * Search within limits.
+   *
+   * @param limits
+   *          the limits, which apply to the main search
+   * @return the best move of the main search
+   * @throws GameException
+   *           if the position can't be copied for the helpers.
+   */
+  public M search(final SearchLimits limits) throws GameException {
+    long start = System.nanoTime();
+    long deadline = IterativeDeepening.deadline(start, limits.getHardTimeMillis());
+
+    List<AbstractSearch<M>> helpers = new ArrayList<>();
+    List<Future<Long>> results = new ArrayList<>();
+    List<SearchCounters> helperCounters = new ArrayList<>();
+    for (int i = 1; i < this.threads; i++) {
+      AbstractSearch<M> helper = this.algorithm.create(this.game.copyGame(), this.table);
+      helper.setAgesTable(false);
+      helper.setCanonicalKeys(this.canonicalKeys);
+      helper.setTiming(this.metrics != null && this.metrics.isTiming());
+      helper.setLimits(deadline, SearchLimits.UNLIMITED);
+      helpers.add(helper);
+      SearchCounters counters = new SearchCounters();
+      helperCounters.add(counters);
+      results.add(this.executor.submit(helperTask(helper, 1 + i % 2, limits.getMaxDepth(), counters)));
+    }
+
+    M best = this.main.search(limits);
+
+    for (AbstractSearch<M> helper : helpers) {
+      helper.stop();
+    }
+    this.nodes = this.main.getNodes();
+    long helperNodes = 0;
+    for (Future<Long> result : results) {
+      helperNodes += waitFor(result);
+    }
+    this.nodes += helperNodes;
+    if (this.metrics != null) {
+      SearchCounters sum = new SearchCounters();
+      for (SearchCounters counters : helperCounters) {
+        sum.add(counters);
+      }
+      this.metrics.recordHelpers(helperNodes, sum);
+    }
+    return best;
+  }
+
+  /**
+   * Choose whether all threads store positions in the table by their
+   * canonical form.
+   *
+   * @param canonical
+   *          whether to use canonical keys
+   * @see AbstractSearch#setCanonicalKeys(boolean)
+   */
+  public void setCanonicalKeys(final boolean canonical) {
+    this.canonicalKeys = canonical;
+    this.main.setCanonicalKeys(canonical);
+  }
+
+  /**
+   * Publish statistics after each iteration of the main search, with the
+   * helpers' work added once they stop.
+   *
+   * @param searchMetrics
+   *          where to publish them, or null for nowhere
+   */
+  public void setMetrics(final SearchMetrics searchMetrics) {
+    this.metrics = searchMetrics;
+    this.main.setMetrics(searchMetrics);
+  }
+
+  /**
+   * Build the work of one helper: search one ply deeper at a time until
+   * stopped.
+   *
+   * @param helper
+   *          the helper's searcher
+   * @param firstDepth
+   *          depth of the first iteration
+   * @param maxDepth
+   *          depth of the last iteration
+   * @param counters
+   *          where the helper's statistics are summed
+   * @return the task, which returns the positions visited
+   */
+  private Callable<Long> helperTask(final AbstractSearch<M> helper, final int firstDepth, final int maxDepth, final SearchCounters counters) {
+    return new Callable<Long>() {
+      @Override
+      public Long call() {
+        long count = 0;
+        M best = null;
+        for (int d = firstDepth; d <= maxDepth; d++) {
+          M move = helper.search(d, best);
+          count += helper.getNodes();
+          counters.add(helper.getCounters());
+          if (helper.isAborted()) {
+            break;
+          }
+          best = move;
+        }
+        return count;
+      }
+    };
+  }
+
+  /**
+   * Wait for a helper to finish.
+   *
+   * @param result
+   *          the pending result
+   * @return the positions the helper visited
+   */
+  private static long waitFor(final Future<Long> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 0;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Search helper failed.", e.getCause());
+    }
+  }
+
+  /**
+   * Ask the main search to stop as soon as it can, which stops the helpers
+   * too. Safe to call from any thread.
+   */
+  public void stop() {
+    this.main.stop();
+  }
+
+  /**
+   * @return the deepest iteration the main search finished
+   */
+  public int getDepth() {
+    return this.main.getDepth();
+  }
+
+  /**
+   * @return the score of the main search for the side to move
+   */
+  public int getScore() {
+    return this.main.getScore();
+  }
+
+  /**
+   * @return the principal variation of the main search
+   */
+  public List<M> getPrincipalVariation() {
+    return this.main.getPrincipalVariation();
+  }
+
+  /**
+   * @return the positions visited by all threads
+   */
+  public long getNodes() {
+    return this.nodes;
+  }
+
+  /**
+   * @return the number of threads, the calling thread included
+   */
+  public int getThreads() {
+    return this.threads;
+  }
+
+  /**
+   * Stop the helper threads. If interrupted while waiting, the helpers are
+   * stopped at once and the interrupt is kept.
+   */
+  @Override
+  public void close() {
+    if (this.executor != null) {
+      this.executor.shutdown();
+      try {
+        this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        this.executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
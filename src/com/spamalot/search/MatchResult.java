@@ -0,0 +1,165 @@
+package com.spamalot.search;
+
+import java.util.Locale;
+
+/**
+ * Wins, draws and losses of a match between two engines, counted for the
+ * first engine, and the Elo difference they imply.
+ *
+ * <p>The Elo error is the half-width of a 95% confidence interval, taken from
+ * the spread of the game scores around their mean. Games are counted from
+ * several threads, so every method is synchronized.
+ *
+ * @author gej
+ *
+ */
+public final class MatchResult {
+  /** Standard normal quantile of a two-sided 95% interval. */
+  private static final double Z_95 = 1.959964;
+
+  /** Nanoseconds in a second. */
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /** Games won by the first engine. */
+  private int wins;
+
+  /** Games drawn. */
+  private int draws;
+
+  /** Games lost by the first engine. */
+  private int losses;
+
+  /** Time the match took. */
+  private long elapsedNanos;
+
+  /**
+   * Count a finished game.
+   *
+   * @param outcome
+   *          positive for a win of the first engine, 0 for a draw and
+   *          negative for a loss
+   */
+  synchronized void record(final int outcome) {
+    if (outcome > 0) {
+      this.wins++;
+    } else if (outcome < 0) {
+      this.losses++;
+    } else {
+      this.draws++;
+    }
+  }
+
+  /**
+   * @param nanos
+   *          time the match took
+   */
+  synchronized void setElapsedNanos(final long nanos) {
+    this.elapsedNanos = nanos;
+  }
+
+  /**
+   * @return games won by the first engine
+   */
+  public synchronized int getWins() {
+    return this.wins;
+  }
+
+  /**
+   * @return games drawn
+   */
+  public synchronized int getDraws() {
+    return this.draws;
+  }
+
+  /**
+   * @return games lost by the first engine
+   */
+  public synchronized int getLosses() {
+    return this.losses;
+  }
+
+  /**
+   * @return games played
+   */
+  public synchronized int getGames() {
+    return this.wins + this.draws + this.losses;
+  }
+
+  /**
+   * @return points per game of the first engine, a draw counting half, or
+   *         one half before any game is played
+   */
+  public synchronized double getScore() {
+    int games = getGames();
+    return games == 0 ? 0.5 : (this.wins + 0.5 * this.draws) / games;
+  }
+
+  /**
+   * @return Elo difference of the first engine over the second, infinite if
+   *         one engine won every game
+   */
+  public synchronized double getElo() {
+    return elo(getScore());
+  }
+
+  /**
+   * @return half-width of the 95% confidence interval of the Elo difference,
+   *         infinite before any game is played or when one engine won every
+   *         game, as the difference itself is then unbounded
+   */
+  public synchronized double getEloError() {
+    int games = getGames();
+    double score = getScore();
+    if (games == 0 || score == 0 || score == 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double variance = (this.wins * square(1 - score) + this.draws * square(0.5 - score) + this.losses * square(score)) / games;
+    double margin = Z_95 * Math.sqrt(variance / games);
+    return (elo(Math.min(1, score + margin)) - elo(Math.max(0, score - margin))) / 2;
+  }
+
+  /**
+   * @return games finished per second of the match
+   */
+  public synchronized double getGamesPerSecond() {
+    return this.elapsedNanos == 0 ? 0 : getGames() * NANOS_PER_SECOND / this.elapsedNanos;
+  }
+
+  /**
+   * Describe the result as <code>name=value</code> pairs on one line.
+   *
+   * @return the line
+   */
+  public synchronized String toLogLine() {
+    StringBuilder sb = new StringBuilder("match");
+    sb.append(" games=").append(getGames());
+    sb.append(" wins=").append(this.wins);
+    sb.append(" draws=").append(this.draws);
+    sb.append(" losses=").append(this.losses);
+    sb.append(" score=").append(String.format(Locale.ROOT, "%.3f", getScore()));
+    sb.append(" elo=").append(String.format(Locale.ROOT, "%.1f", getElo()));
+    sb.append(" eloError=").append(String.format(Locale.ROOT, "%.1f", getEloError()));
+    sb.append(" gamesPerSecond=").append(String.format(Locale.ROOT, "%.2f", getGamesPerSecond()));
+    return sb.toString();
+  }
+
+  /**
+   * Convert a score to an Elo difference with the logistic model.
+   *
+   * @param score
+   *          points per game, 0 to 1
+   * @return the Elo difference
+   */
+  static double elo(final double score) {
+    return 400 * Math.log10(score / (1 - score));
+  }
+
+  /**
+   * @param x
+   *          a number
+   * @return its square
+   */
+  private static double square(final double x) {
+    return x * x;
+  }
+}
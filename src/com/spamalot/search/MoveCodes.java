@@ -0,0 +1,38 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+/**
+ * Turn the move codes of {@link SearchableGame#encodeMove(Move)} back into
+ * moves.
+ *
+ * @author gej
+ *
+ */
+public final class MoveCodes {
+  /**
+   * No construction.
+   */
+  private MoveCodes() {
+  }
+
+  /**
+   * Find the available move with a code.
+   *
+   * @param game
+   *          the game
+   * @param code
+   *          the move code
+   * @param <M>
+   *          the type of Move
+   * @return the move, or null if none has the code
+   */
+  public static <M extends Move> M findMove(final SearchableGame<M> game, final int code) {
+    for (M move : game.getAvailableMoves()) {
+      if (game.encodeMove(move) == code) {
+        return move;
+      }
+    }
+    return null;
+  }
+}
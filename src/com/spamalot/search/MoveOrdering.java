@@ -0,0 +1,128 @@
+package com.spamalot.search;
+
+import java.util.Arrays;
+
+/**
+ * What a search has learned about which moves cause cutoffs: two killer moves
+ * for each ply and a history table indexed by move code, which for the games
+ * here means by from and to square.
+ *
+ * <p>The order it gives is the hash move, then the killers, then the rest by
+ * the game's own score and then by history.
+ *
+ * @author gej
+ *
+ */
+public final class MoveOrdering {
+  /** Largest score a {@link MoveScorer} may give. */
+  public static final int MAX_SCORE = 255;
+
+  /** Deepest ply with killer moves. */
+  private static final int MAX_PLY = 128;
+
+  /** Number of move codes. */
+  private static final int NUM_CODES = 1 << 16;
+
+  /** History values are halved when one passes this. */
+  private static final int MAX_HISTORY = 1 << 20;
+
+  /** Sort key of the hash move. */
+  private static final int HASH_KEY = Integer.MAX_VALUE;
+
+  /** Sort key of the first killer. */
+  private static final int KILLER_KEY = Integer.MAX_VALUE - 2;
+
+  /** Killer moves for each ply, most recent first. */
+  private final int[][] killers = new int[MAX_PLY][2];
+
+  /** Cutoff history for each move code. */
+  private final int[] history = new int[NUM_CODES];
+
+  /**
+   * Forget everything learned.
+   */
+  public void clear() {
+    for (int[] k : this.killers) {
+      Arrays.fill(k, 0);
+    }
+    Arrays.fill(this.history, 0);
+  }
+
+  /**
+   * Make older history count for less, between searches.
+   */
+  public void age() {
+    for (int i = 0; i < NUM_CODES; i++) {
+      this.history[i] >>= 1;
+    }
+  }
+
+  /**
+   * Remember a move that caused a cutoff.
+   *
+   * @param code
+   *          code of the move
+   * @param ply
+   *          distance from the root
+   * @param depth
+   *          depth left at the cutoff
+   */
+  public void cutoff(final int code, final int ply, final int depth) {
+    if (ply < MAX_PLY && this.killers[ply][0] != code) {
+      this.killers[ply][1] = this.killers[ply][0];
+      this.killers[ply][0] = code;
+    }
+    this.history[code] += depth * depth;
+    if (this.history[code] > MAX_HISTORY) {
+      age();
+    }
+  }
+
+  /**
+   * Work out the sort key of a move. Higher keys are tried first.
+   *
+   * @param code
+   *          code of the move
+   * @param score
+   *          the game's score of the move, or 0
+   * @param ply
+   *          distance from the root
+   * @param hashMove
+   *          code of the move to try first, or 0
+   * @return the key
+   */
+  public int key(final int code, final int score, final int ply, final int hashMove) {
+    if (code == hashMove) {
+      return HASH_KEY;
+    }
+    if (ply < MAX_PLY) {
+      if (code == this.killers[ply][0]) {
+        return KILLER_KEY;
+      }
+      if (code == this.killers[ply][1]) {
+        return KILLER_KEY - 1;
+      }
+    }
+    return score * (MAX_HISTORY + 1) + this.history[code];
+  }
+
+  /**
+   * @param ply
+   *          distance from the root
+   * @param slot
+   *          0 for the most recent killer, 1 for the one before
+   * @return the killer move code, or 0
+   */
+  public int getKiller(final int ply, final int slot) {
+    return this.killers[ply][slot];
+  }
+
+  /**
+   * @param code
+   *          code of a move
+   * @return the history value of the move
+   */
+  public int getHistory(final int code) {
+    return this.history[code];
+  }
+}
@@ -0,0 +1,24 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+/**
+ * A game that can guess cheaply, without making a move, how good it is. The
+ * searchers use the guess to try promising moves first.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public interface MoveScorer<M extends Move> {
+  /**
+   * Score a move of the current position for ordering. Higher scores are
+   * tried first. Scores must be between 0 and {@link MoveOrdering#MAX_SCORE}.
+   *
+   * @param move
+   *          the move
+   * @return the score
+   */
+  int scoreMove(M move);
+}
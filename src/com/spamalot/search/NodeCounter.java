@@ -0,0 +1,19 @@
+package com.spamalot.search;
+
+/**
+ * Counts work done outside the searcher's own nodes, such as an endgame
+ * solve, against the limits of the search.
+ *
+ * @author gej
+ *
+ */
+public interface NodeCounter {
+  /**
+   * Count positions and check the limits of the search.
+   *
+   * @param count
+   *          positions visited since the last call
+   * @return whether the search is aborted, so the work must be given up
+   */
+  boolean countNodes(long count);
+}
@@ -0,0 +1,214 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * An opening book read straight from a memory-mapped file.
+ *
+ * <p>The file is a header followed by fixed-size records sorted by position
+ * key. Each record is a Zobrist key, a move code, a weight and a score, so a
+ * lookup is a binary search over the mapped pages with no parsing and
+ * nothing loaded up front. Several JVMs opening the same book share it
+ * through the page cache. {@link OpeningBookBuilder} writes the files.
+ *
+ * <p>Positions of a {@link SymmetricGame} are stored in their canonical form,
+ * with the move codes transformed to match, so one record serves all the
+ * symmetric images of a position.
+ *
+ * <p>The header is the magic number {@link #MAGIC}, the record size and the
+ * number of records. A record is the key in 8 bytes, the move code and the
+ * weight in 2 unsigned bytes each, and the score for the side to move in 4.
+ * Everything is big-endian.
+ *
+ * @author gej
+ *
+ */
+public final class OpeningBook implements AutoCloseable {
+  /** First four bytes of a book file. */
+  public static final int MAGIC = 0x53424B31;
+
+  /** Bytes in the header. */
+  static final int HEADER_BYTES = 16;
+
+  /** Bytes in a record. */
+  static final int RECORD_BYTES = 16;
+
+  /** Offset of the move code in a record. */
+  private static final int MOVE_OFFSET = 8;
+
+  /** Offset of the weight in a record. */
+  private static final int WEIGHT_OFFSET = 10;
+
+  /** Offset of the score in a record. */
+  private static final int SCORE_OFFSET = 12;
+
+  /** The open file. */
+  private final FileChannel channel;
+
+  /** The mapped file. */
+  private final MappedByteBuffer buffer;
+
+  /** Number of records. */
+  private final int size;
+
+  /**
+   * Open a book.
+   *
+   * @param file
+   *          the book file
+   * @throws IOException
+   *           if the file can't be read or is not a book.
+   */
+  public OpeningBook(final Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+      this.buffer.order(ByteOrder.BIG_ENDIAN);
+      if (this.buffer.capacity() < HEADER_BYTES || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != RECORD_BYTES) {
+        throw new IOException("Not an opening book: " + file);
+      }
+      long count = this.buffer.getLong(8);
+      if (count < 0 || HEADER_BYTES + count * RECORD_BYTES > this.buffer.capacity()) {
+        throw new IOException("Opening book is truncated: " + file);
+      }
+      this.size = (int) count;
+    } catch (IOException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Find the first record of a position.
+   *
+   * @param key
+   *          key of the position, of its canonical form for a
+   *          {@link SymmetricGame}
+   * @return the index of the record, or -1 if the position is not in the book
+   */
+  public int find(final long key) {
+    int lo = 0;
+    int hi = this.size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getKey(mid) < key) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo < this.size && getKey(lo) == key ? lo : -1;
+  }
+
+  /**
+   * Choose a record of a position at random in proportion to the weights.
+   *
+   * @param key
+   *          key of the position, of its canonical form for a
+   *          {@link SymmetricGame}
+   * @param random
+   *          source of randomness
+   * @return the index of the record, or -1 if the position is not in the book
+   */
+  public int choose(final long key, final Random random) {
+    int first = find(key);
+    if (first < 0) {
+      return -1;
+    }
+    int total = 0;
+    int end = first;
+    while (end < this.size && getKey(end) == key) {
+      total += getWeight(end);
+      end++;
+    }
+    int pick = random.nextInt(total);
+    for (int i = first; i < end - 1; i++) {
+      pick -= getWeight(i);
+      if (pick < 0) {
+        return i;
+      }
+    }
+    return end - 1;
+  }
+
+  /**
+   * Choose a book move for the current position, at random in proportion to
+   * the weights.
+   *
+   * @param game
+   *          the game
+   * @param random
+   *          source of randomness
+   * @param <M>
+   *          the type of Move
+   * @return the move, or null if the position is not in the book
+   */
+  public <M extends Move> M chooseMove(final SearchableGame<M> game, final Random random) {
+    int symmetry = Symmetry.canonical(game);
+    int i = choose(Symmetry.key(game, symmetry), random);
+    return i < 0 ? null : MoveCodes.findMove(game, Symmetry.moveCode(game, getMove(i), Symmetry.inverse(symmetry)));
+  }
+
+  /**
+   * @return the number of records
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param i
+   *          index of a record
+   * @return the position key
+   */
+  public long getKey(final int i) {
+    return this.buffer.getLong(HEADER_BYTES + i * RECORD_BYTES);
+  }
+
+  /**
+   * @param i
+   *          index of a record
+   * @return the move code
+   */
+  public int getMove(final int i) {
+    return this.buffer.getShort(HEADER_BYTES + i * RECORD_BYTES + MOVE_OFFSET) & 0xFFFF;
+  }
+
+  /**
+   * @param i
+   *          index of a record
+   * @return the weight
+   */
+  public int getWeight(final int i) {
+    return this.buffer.getShort(HEADER_BYTES + i * RECORD_BYTES + WEIGHT_OFFSET) & 0xFFFF;
+  }
+
+  /**
+   * @param i
+   *          index of a record
+   * @return the score for the side to move
+   */
+  public int getScore(final int i) {
+    return this.buffer.getInt(HEADER_BYTES + i * RECORD_BYTES + SCORE_OFFSET);
+  }
+
+  /**
+   * Close the file. The mapping itself goes away when it is garbage
+   * collected.
+   *
+   * @throws IOException
+   *           if the file can't be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
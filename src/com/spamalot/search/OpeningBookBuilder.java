@@ -0,0 +1,202 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Build an {@link OpeningBook} offline by searching every move of the
+ * opening positions.
+ *
+ * <p>Starting from the current position of a game, each move is searched and
+ * the moves scoring within a margin of the best go into the book, weighted by
+ * how close they came. The positions after those moves are expanded the same
+ * way until the given number of plies. Positions of a {@link SymmetricGame}
+ * are expanded once for all their symmetric images.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class OpeningBookBuilder<M extends Move> {
+  /** Largest weight that fits in a record. */
+  private static final int MAX_WEIGHT = 0xFFFF;
+
+  /** The game to build from. */
+  private final SearchableGame<M> game;
+
+  /** Search of each move. */
+  private final IterativeDeepening<M> search;
+
+  /** Positions already expanded. */
+  private final Set<Long> seen = new HashSet<>();
+
+  /** Records found so far. */
+  private final List<Record> records = new ArrayList<>();
+
+  /**
+   * One move of one position.
+   */
+  private static final class Record {
+    /** Position key. */
+    private final long key;
+
+    /** Move code. */
+    private final int move;
+
+    /** Weight. */
+    private final int weight;
+
+    /** Score for the side to move. */
+    private final int score;
+
+    /**
+     * Construct a record.
+     *
+     * @param recordKey
+     *          position key
+     * @param recordMove
+     *          move code
+     * @param recordWeight
+     *          weight
+     * @param recordScore
+     *          score for the side to move
+     */
+    Record(final long recordKey, final int recordMove, final int recordWeight, final int recordScore) {
+      this.key = recordKey;
+      this.move = recordMove;
+      this.weight = recordWeight;
+      this.score = recordScore;
+    }
+  }
+
+  /**
+   * Construct a builder.
+   *
+   * @param bookGame
+   *          the game, in the position the book starts from
+   * @param table
+   *          the table for the searches
+   * @param algorithm
+   *          the searcher to use
+   */
+  public OpeningBookBuilder(final SearchableGame<M> bookGame, final TranspositionTable table, final SearchAlgorithm algorithm) {
+    this.game = bookGame;
+    this.search = new IterativeDeepening<>(bookGame, table, algorithm);
+  }
+
+  /**
+   * Search the opening and collect the book moves.
+   *
+   * @param plies
+   *          plies from the current position to cover
+   * @param limits
+   *          limits for the search of each move
+   * @param margin
+   *          how far below the best score a move may be and still be played,
+   *          at most 65534
+   */
+  public void build(final int plies, final SearchLimits limits, final int margin) {
+    expand(plies, limits, Math.min(margin, MAX_WEIGHT - 1));
+  }
+
+  /**
+   * Add the book moves of the current position and expand the positions
+   * after them.
+   *
+   * @param plies
+   *          plies left to cover
+   * @param limits
+   *          limits for the search of each move
+   * @param margin
+   *          how far below the best score a move may be
+   */
+  private void expand(final int plies, final SearchLimits limits, final int margin) {
+    int symmetry = Symmetry.canonical(this.game);
+    long key = Symmetry.key(this.game, symmetry);
+    if (plies == 0 || this.game.isOver() || !this.seen.add(key)) {
+      return;
+    }
+
+    List<M> moves = this.game.getAvailableMoves();
+    int[] scores = new int[moves.size()];
+    int best = -AbstractSearch.INFINITY;
+    for (int i = 0; i < moves.size(); i++) {
+      this.game.makeMove(moves.get(i));
+      this.search.search(limits);
+      scores[i] = -this.search.getScore();
+      this.game.undoLastMove();
+      best = Math.max(best, scores[i]);
+    }
+
+    for (int i = 0; i < moves.size(); i++) {
+      if (best - scores[i] <= margin) {
+        M move = moves.get(i);
+        this.records.add(new Record(key, Symmetry.moveCode(this.game, this.game.encodeMove(move), symmetry), margin + 1 - (best - scores[i]), scores[i]));
+        this.game.makeMove(move);
+        expand(plies - 1, limits, margin);
+        this.game.undoLastMove();
+      }
+    }
+  }
+
+  /**
+   * @return the number of records collected
+   */
+  public int size() {
+    return this.records.size();
+  }
+
+  /**
+   * Write the collected records as a book file, sorted by key and then by
+   * weight, heaviest first.
+   *
+   * @param file
+   *          where to write
+   * @throws IOException
+   *           if the file can't be written.
+   */
+  public void write(final Path file) throws IOException {
+    Collections.sort(this.records, new Comparator<Record>() {
+      @Override
+      public int compare(final Record a, final Record b) {
+        int ret = Long.compare(a.key, b.key);
+        if (ret == 0) {
+          ret = Integer.compare(b.weight, a.weight);
+        }
+        return ret;
+      }
+    });
+
+    ByteBuffer out = ByteBuffer.allocate(OpeningBook.HEADER_BYTES + this.records.size() * OpeningBook.RECORD_BYTES);
+    out.order(ByteOrder.BIG_ENDIAN);
+    out.putInt(OpeningBook.MAGIC);
+    out.putInt(OpeningBook.RECORD_BYTES);
+    out.putLong(this.records.size());
+    for (Record r : this.records) {
+      out.putLong(r.key);
+      out.putShort((short) r.move);
+      out.putShort((short) r.weight);
+      out.putInt(r.score);
+    }
+    out.flip();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.ai.MinMaxSearchable;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Count the leaf nodes of the game tree to a fixed depth, for checking move
+ * generation against known counts and for timing it.
+ *
+ * <p>A pass counts as a move. A position where the game is over has no moves,
+ * so it adds nothing below it. At the last ply the moves are counted without
+ * being made.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class Perft<M extends Move> {
+  /** Nanoseconds in a second. */
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /** The game to count. */
+  private final MinMaxSearchable<M> game;
+
+  /**
+   * Construct a counter.
+   *
+   * @param perftGame
+   *          the game to count
+   */
+  public Perft(final MinMaxSearchable<M> perftGame) {
+    this.game = perftGame;
+  }
+
+  /**
+   * Count the leaf nodes.
+   *
+   * @param depth
+   *          depth in plies, 0 for just the current position
+   * @return the count
+   * @throws IllegalArgumentException
+   *           if depth is negative.
+   */
+  public long count(final int depth) {
+    if (depth < 1) {
+      checkDepth(depth);
+      return 1;
+    }
+    if (this.game.isOver()) {
+      return 0;
+    }
+    List<M> moves = this.game.getAvailableMoves();
+    if (depth == 1) {
+      return moves.size();
+    }
+    long nodes = 0;
+    for (M move : moves) {
+      this.game.makeMove(move);
+      nodes += count(depth - 1);
+      this.game.undoLastMove();
+    }
+    return nodes;
+  }
+
+  /**
+   * Count the leaf nodes and print the count under each root move.
+   *
+   * @param depth
+   *          depth in plies, at least 1 for there to be root moves
+   * @param out
+   *          where to print
+   * @return the total count
+   * @throws IllegalArgumentException
+   *           if depth is negative.
+   */
+  public long divide(final int depth, final PrintStream out) {
+    if (depth < 1) {
+      return count(depth);
+    }
+    if (this.game.isOver()) {
+      return 0;
+    }
+    long nodes = 0;
+    for (M move : this.game.getAvailableMoves()) {
+      long n = 1;
+      if (depth > 1) {
+        this.game.makeMove(move);
+        n = count(depth - 1);
+        this.game.undoLastMove();
+      }
+      out.println(move + ": " + n);
+      nodes += n;
+    }
+    return nodes;
+  }
+
+  /**
+   * Reject a depth that can't be counted.
+   *
+   * @param depth
+   *          depth in plies
+   * @throws IllegalArgumentException
+   *           if depth is negative.
+   */
+  public static void checkDepth(final int depth) {
+    if (depth < 0) {
+      throw new IllegalArgumentException("Depth must not be negative: " + depth);
+    }
+  }
+
+  /**
+   * Print a count with its time and rate.
+   *
+   * @param depth
+   *          depth counted
+   * @param nodes
+   *          the count
+   * @param nanos
+   *          time taken in nanoseconds
+   * @param out
+   *          where to print
+   */
+  public static void report(final int depth, final long nodes, final long nanos, final PrintStream out) {
+    double seconds = nanos / NANOS_PER_SECOND;
+    long rate = seconds > 0 ? (long) (nodes / seconds) : 0;
+    out.println(String.format("perft %d: %d nodes in %.3f s, %d nodes/sec", depth, nodes, seconds, rate));
+  }
+}
@@ -0,0 +1,218 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Think on the opponent's time.
+ *
+ * <p>After the engine plays, {@link #start(Move, int)} searches the position
+ * after the reply the engine expects, usually the second move of its
+ * principal variation, on a background thread and a copy of the game. When
+ * the opponent replies, {@link #finish(Move, long)} either keeps the
+ * pondered search going for the time of the move and returns its best move,
+ * or stops it and returns null so the caller searches as usual. Either way
+ * the pondered results stay in the shared transposition table.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class Ponderer<M extends Move> implements AutoCloseable {
+  /** The game being played. */
+  private final SearchableGame<M> game;
+
+  /** Table shared with the engine's own search. */
+  private final TranspositionTable table;
+
+  /** The searcher to ponder with. */
+  private final SearchAlgorithm algorithm;
+
+  /** Thread that ponders. */
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  /** The pondered search, or null. */
+  private IterativeDeepening<M> search;
+
+  /** The position being pondered. */
+  private SearchableGame<M> pondered;
+
+  /** Code of the expected reply. */
+  private int expectedCode;
+
+  /** Result of the pondered search, or null when not pondering. */
+  private Future<M> result;
+
+  /**
+   * Construct a ponderer.
+   *
+   * @param ponderGame
+   *          the game being played
+   * @param transpositionTable
+   *          the table shared with the engine's own search
+   * @param searchAlgorithm
+   *          the searcher to ponder with
+   */
+  public Ponderer(final SearchableGame<M> ponderGame, final TranspositionTable transpositionTable, final SearchAlgorithm searchAlgorithm) {
+    this.game = ponderGame;
+    this.table = transpositionTable;
+    this.algorithm = searchAlgorithm;
+  }
+
+  /**
+   * Start pondering the position after an expected reply. Any pondering
+   * already going on is cancelled.
+   *
+   * @param expectedReply
+   *          the reply expected in the current position of the game
+   * @param maxDepth
+   *          depth to stop pondering at
+   * @throws GameException
+   *           if the position can't be copied.
+   */
+  public void start(final M expectedReply, final int maxDepth) throws GameException {
+    cancel();
+    this.expectedCode = this.game.encodeMove(expectedReply);
+    this.pondered = this.game.copyGame();
+    M move = MoveCodes.findMove(this.pondered, this.expectedCode);
+    if (move == null) {
+      return;
+    }
+    this.pondered.makeMove(move);
+    if (this.pondered.isOver()) {
+      return;
+    }
+
+    final SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(maxDepth);
+    final IterativeDeepening<M> ponderSearch = new IterativeDeepening<>(this.pondered, this.table, this.algorithm);
+    this.search = ponderSearch;
+    this.result = this.executor.submit(new Callable<M>() {
+      @Override
+      public M call() {
+        return ponderSearch.searchUnlessStopped(limits);
+      }
+    });
+  }
+
+  /**
+   * Finish pondering once the opponent has replied. Call it after the reply
+   * has been made on the game.
+   *
+   * @param actualReply
+   *          the reply played
+   * @param millis
+   *          longest to keep pondering if the reply was the expected one
+   * @return the best move of the deepest pondered iteration, or null if the
+   *         reply was not the expected one or no iteration finished, in which
+   *         case the caller searches as usual
+   */
+  public M finish(final M actualReply, final long millis) {
+    if (this.result == null) {
+      return null;
+    }
+    if (this.game.encodeMove(actualReply) != this.expectedCode) {
+      cancel();
+      return null;
+    }
+
+    Future<M> pending = this.result;
+    try {
+      pending.get(millis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // Out of time, so play the best move so far.
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Pondering failed.", e.getCause());
+    }
+    M best = stopAndWait();
+    if (best == null || this.search.getDepth() == 0) {
+      return null;
+    }
+    return MoveCodes.findMove(this.game, this.pondered.encodeMove(best));
+  }
+
+  /**
+   * Stop pondering and throw the result away.
+   */
+  public void cancel() {
+    stopAndWait();
+  }
+
+  /**
+   * Stop the pondered search and wait for it to return.
+   *
+   * @return its best move, or null if there was none
+   */
+  private M stopAndWait() {
+    Future<M> pending = this.result;
+    this.result = null;
+    if (pending == null) {
+      return null;
+    }
+    this.search.stop();
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Pondering failed.", e.getCause());
+    }
+  }
+
+  /**
+   * @return whether a pondered search is running or waiting to be finished
+   */
+  public boolean isPondering() {
+    return this.result != null;
+  }
+
+  /**
+   * @return the deepest iteration the last pondered search finished
+   */
+  public int getDepth() {
+    return this.search == null ? 0 : this.search.getDepth();
+  }
+
+  /**
+   * @return the score of the last pondered search, for the side to move after
+   *         the reply
+   */
+  public int getScore() {
+    return this.search == null ? 0 : this.search.getScore();
+  }
+
+  /**
+   * @return the positions visited by the last pondered search
+   */
+  public long getNodes() {
+    return this.search == null ? 0 : this.search.getNodes();
+  }
+
+  /**
+   * Stop pondering and the pondering thread. If interrupted while waiting, the
+   * thread is stopped at once and the interrupt is kept.
+   */
+  @Override
+  public void close() {
+    cancel();
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      this.executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A principal variation search. The first move at each node is searched with
+ * the full window and the rest with a null window that only proves them
+ * worse, re-searching the few that turn out better.
+ *
+ * <p>Once a search has finished, the next one starts with an aspiration window
+ * around its score and widens the window only if the score falls outside it.
+ * The principal variation is collected as the search goes, so it is complete
+ * even when table entries have been replaced.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class PvsSearch<M extends Move> extends AbstractSearch<M> {
+  /** Half width of the first aspiration window, half a piece. */
+  private static final int ASPIRATION_WINDOW = 50;
+
+  /** Deepest line that can be collected. */
+  private static final int MAX_PLY = 128;
+
+  /** Principal variation found below each ply, one row per ply. */
+  private final Object[][] pvTable = new Object[MAX_PLY][MAX_PLY];
+
+  /** Length of the principal variation in each row. */
+  private final int[] pvLength = new int[MAX_PLY];
+
+  /** Score of the last search for the side to move. */
+  private int score;
+
+  /** Whether the last search finished, so its score can centre a window. */
+  private boolean haveScore;
+
+  /** Code of the move to search first at the root, or 0. */
+  private int rootMoveCode;
+
+  /**
+   * Construct a search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param transpositionTable
+   *          the table to use
+   */
+  public PvsSearch(final SearchableGame<M> searchGame, final TranspositionTable transpositionTable) {
+    super(searchGame, transpositionTable);
+  }
+
+  @Override
+  public M search(final int depth, final M firstMove) {
+    startSearch();
+    this.pvLength[0] = 0;
+    this.rootMoveCode = firstMove == null ? 0 : getGame().encodeMove(firstMove);
+
+    int delta = ASPIRATION_WINDOW;
+    int alpha = -INFINITY;
+    int beta = INFINITY;
+    if (this.haveScore && depth > 1) {
+      alpha = Math.max(-INFINITY, this.score - delta);
+      beta = Math.min(INFINITY, this.score + delta);
+    }
+
+    int s;
+    while (true) {
+      s = pvs(depth, alpha, beta, 0);
+      if (isAborted()) {
+        break;
+      }
+      if (s <= alpha && alpha > -INFINITY) {
+        delta *= 2;
+        alpha = Math.max(-INFINITY, s - delta);
+      } else if (s >= beta && beta < INFINITY) {
+        delta *= 2;
+        beta = Math.min(INFINITY, s + delta);
+      } else {
+        break;
+      }
+    }
+
+    if (!isAborted()) {
+      this.score = s;
+      this.haveScore = true;
+    }
+    return this.pvLength[0] > 0 ? getPvMove(0, 0) : null;
+  }
+
+  /**
+   * Search the current position.
+   *
+   * @param depth
+   *          depth left
+   * @param alphaIn
+   *          lower bound
+   * @param beta
+   *          upper bound
+   * @param ply
+   *          distance from the root
+   * @return the score for the side to move
+   */
+  private int pvs(final int depth, final int alphaIn, final int beta, final int ply) {
+    this.pvLength[ply] = 0;
+    if (countNode()) {
+      return 0;
+    }
+    SearchableGame<M> game = getGame();
+    boolean over = game.isOver();
+    if (!over && canSolve(ply)) {
+      return solve(alphaIn, beta);
+    }
+    if (over || depth == 0 || ply == MAX_PLY - 1) {
+      return evaluateForSideToMove(over);
+    }
+
+    boolean pvNode = beta - alphaIn > 1;
+    int alpha = alphaIn;
+    int symmetry = tableSymmetry();
+    long key = tableKey(symmetry);
+    long entry = probeTable(key);
+    int hashMove = fromTableMove(TranspositionTable.move(entry), symmetry);
+    if (!pvNode && entry != 0 && TranspositionTable.depth(entry) >= depth) {
+      int s = TranspositionTable.score(entry);
+      int bound = TranspositionTable.bound(entry);
+      if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && s >= beta
+          || bound == TranspositionTable.UPPER && s <= alpha) {
+        return s;
+      }
+    }
+
+    List<M> moves = generateMoves();
+    orderMoves(moves, ply, ply == 0 && this.rootMoveCode != 0 ? this.rootMoveCode : hashMove);
+
+    int best = -INFINITY;
+    int bestCode = 0;
+    boolean first = true;
+    for (M move : moves) {
+      game.makeMove(move);
+      int s;
+      if (first) {
+        s = -pvs(depth - 1, -beta, -alpha, ply + 1);
+      } else {
+        s = -pvs(depth - 1, -alpha - 1, -alpha, ply + 1);
+        if (s > alpha && s < beta && !isAborted()) {
+          s = -pvs(depth - 1, -beta, -alpha, ply + 1);
+        }
+      }
+      game.undoLastMove();
+      if (isAborted()) {
+        return 0;
+      }
+
+      if (s > best) {
+        best = s;
+        bestCode = game.encodeMove(move);
+        if (s > alpha) {
+          alpha = s;
+          updatePv(ply, move);
+        }
+      }
+      if (alpha >= beta) {
+        cutoff(move, ply, depth, first);
+        break;
+      }
+      first = false;
+    }
+
+    int bound = TranspositionTable.EXACT;
+    if (best <= alphaIn) {
+      bound = TranspositionTable.UPPER;
+    } else if (best >= beta) {
+      bound = TranspositionTable.LOWER;
+    }
+    getTable().store(key, toTableMove(bestCode, symmetry), depth, bound, best);
+
+    return best;
+  }
+
+  /**
+   * Make a move followed by the line below it the principal variation at a
+   * ply.
+   *
+   * @param ply
+   *          distance from the root
+   * @param move
+   *          the new best move
+   */
+  private void updatePv(final int ply, final M move) {
+    Object[] row = this.pvTable[ply];
+    row[0] = move;
+    int below = this.pvLength[ply + 1];
+    System.arraycopy(this.pvTable[ply + 1], 0, row, 1, below);
+    this.pvLength[ply] = below + 1;
+  }
+
+  /**
+   * @param ply
+   *          row of the table
+   * @param i
+   *          position in the row
+   * @return the move
+   */
+  @SuppressWarnings("unchecked")
+  private M getPvMove(final int ply, final int i) {
+    return (M) this.pvTable[ply][i];
+  }
+
+  @Override
+  public int getScore() {
+    return this.score;
+  }
+
+  @Override
+  public List<M> getPrincipalVariation() {
+    List<M> ret = new ArrayList<>();
+    for (int i = 0; i < this.pvLength[0]; i++) {
+      ret.add(getPvMove(0, i));
+    }
+    return ret;
+  }
+}
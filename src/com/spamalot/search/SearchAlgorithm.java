@@ -0,0 +1,40 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+/**
+ * The searchers a game can choose between.
+ *
+ * @author gej
+ *
+ */
+public enum SearchAlgorithm {
+  /** Plain alpha-beta, {@link AlphaBetaSearch}. */
+  ALPHA_BETA {
+    @Override
+    public <M extends Move> AbstractSearch<M> create(final SearchableGame<M> game, final TranspositionTable table) {
+      return new AlphaBetaSearch<>(game, table);
+    }
+  },
+
+  /** Principal variation search, {@link PvsSearch}. */
+  PVS {
+    @Override
+    public <M extends Move> AbstractSearch<M> create(final SearchableGame<M> game, final TranspositionTable table) {
+      return new PvsSearch<>(game, table);
+    }
+  };
+
+  /**
+   * Create a searcher of this kind.
+   *
+   * @param game
+   *          the game to search
+   * @param table
+   *          the table to use
+   * @param <M>
+   *          the type of Move
+   * @return the searcher
+   */
+  public abstract <M extends Move> AbstractSearch<M> create(SearchableGame<M> game, TranspositionTable table);
+}
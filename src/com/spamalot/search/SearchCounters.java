@@ -0,0 +1,153 @@
+package com.spamalot.search;
+
+/**
+ * Statistics of one search thread.
+ *
+ * <p>Every searcher has its own counters in plain fields, so counting costs an
+ * increment of memory only that thread touches, with no atomics or shared
+ * cache lines. Counters of several threads are summed with
+ * {@link #add(SearchCounters)} once their searches are done. Timing move
+ * generation and evaluation calls <code>System.nanoTime()</code> twice a
+ * node, so it is only done when switched on.
+ *
+ * @author gej
+ *
+ */
+public final class SearchCounters {
+  /** Cutoffs where a move scored at least beta. */
+  private long betaCutoffs;
+
+  /** Cutoffs by the first move tried. */
+  private long firstMoveCutoffs;
+
+  /** Transposition table lookups. */
+  private long tableProbes;
+
+  /** Transposition table lookups that found the position. */
+  private long tableHits;
+
+  /** Nanoseconds spent generating moves, when timed. */
+  private long moveGenerationNanos;
+
+  /** Nanoseconds spent evaluating, when timed. */
+  private long evaluationNanos;
+
+  /**
+   * Zero the counters.
+   */
+  public void clear() {
+    this.betaCutoffs = 0;
+    this.firstMoveCutoffs = 0;
+    this.tableProbes = 0;
+    this.tableHits = 0;
+    this.moveGenerationNanos = 0;
+    this.evaluationNanos = 0;
+  }
+
+  /**
+   * Add the counters of another search.
+   *
+   * @param other
+   *          the other counters
+   */
+  public void add(final SearchCounters other) {
+    this.betaCutoffs += other.betaCutoffs;
+    this.firstMoveCutoffs += other.firstMoveCutoffs;
+    this.tableProbes += other.tableProbes;
+    this.tableHits += other.tableHits;
+    this.moveGenerationNanos += other.moveGenerationNanos;
+    this.evaluationNanos += other.evaluationNanos;
+  }
+
+  /**
+   * Count a beta cutoff.
+   *
+   * @param firstMove
+   *          whether the move was the first tried
+   */
+  void cutoff(final boolean firstMove) {
+    this.betaCutoffs++;
+    if (firstMove) {
+      this.firstMoveCutoffs++;
+    }
+  }
+
+  /**
+   * Count a transposition table lookup.
+   *
+   * @param hit
+   *          whether the position was found
+   */
+  void probe(final boolean hit) {
+    this.tableProbes++;
+    if (hit) {
+      this.tableHits++;
+    }
+  }
+
+  /**
+   * @param nanos
+   *          time spent generating moves
+   */
+  void addMoveGeneration(final long nanos) {
+    this.moveGenerationNanos += nanos;
+  }
+
+  /**
+   * @param nanos
+   *          time spent evaluating
+   */
+  void addEvaluation(final long nanos) {
+    this.evaluationNanos += nanos;
+  }
+
+  /**
+   * @return cutoffs where a move scored at least beta
+   */
+  public long getBetaCutoffs() {
+    return this.betaCutoffs;
+  }
+
+  /**
+   * @return cutoffs by the first move tried
+   */
+  public long getFirstMoveCutoffs() {
+    return this.firstMoveCutoffs;
+  }
+
+  /**
+   * @return the share of cutoffs made by the first move tried, a measure of
+   *         move ordering
+   */
+  public double getFirstMoveCutoffRatio() {
+    return this.betaCutoffs == 0 ? 0 : (double) this.firstMoveCutoffs / this.betaCutoffs;
+  }
+
+  /**
+   * @return transposition table lookups
+   */
+  public long getTableProbes() {
+    return this.tableProbes;
+  }
+
+  /**
+   * @return transposition table lookups that found the position
+   */
+  public long getTableHits() {
+    return this.tableHits;
+  }
+
+  /**
+   * @return nanoseconds spent generating moves, 0 unless timed
+   */
+  public long getMoveGenerationNanos() {
+    return this.moveGenerationNanos;
+  }
+
+  /**
+   * @return nanoseconds spent evaluating, 0 unless timed
+   */
+  public long getEvaluationNanos() {
+    return this.evaluationNanos;
+  }
+}
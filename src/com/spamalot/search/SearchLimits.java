@@ -0,0 +1,103 @@
+package com.spamalot.search;
+
+/**
+ * Limits on an iterative deepening search.
+ *
+ * <p>The soft time limit stops a new iteration from starting. The hard time
+ * limit and the node limit abort the iteration in progress, in which case the
+ * best move of the last completed iteration is played.
+ *
+ * @author gej
+ *
+ */
+public final class SearchLimits {
+  /** No limit. */
+  public static final long UNLIMITED = Long.MAX_VALUE;
+
+  /** Deepest iteration to search. */
+  private int maxDepth = 64;
+
+  /** Milliseconds after which no new iteration is started. */
+  private long softTimeMillis = UNLIMITED;
+
+  /** Milliseconds after which the search is aborted. */
+  private long hardTimeMillis = UNLIMITED;
+
+  /** Positions after which the search is aborted. */
+  private long maxNodes = UNLIMITED;
+
+  /**
+   * @return the deepest iteration to search
+   */
+  public int getMaxDepth() {
+    return this.maxDepth;
+  }
+
+  /**
+   * @param depth
+   *          the deepest iteration to search
+   */
+  public void setMaxDepth(final int depth) {
+    this.maxDepth = depth;
+  }
+
+  /**
+   * @return milliseconds after which no new iteration is started
+   */
+  public long getSoftTimeMillis() {
+    return this.softTimeMillis;
+  }
+
+  /**
+   * @param millis
+   *          milliseconds after which no new iteration is started
+   */
+  public void setSoftTimeMillis(final long millis) {
+    this.softTimeMillis = millis;
+  }
+
+  /**
+   * @return milliseconds after which the search is aborted
+   */
+  public long getHardTimeMillis() {
+    return this.hardTimeMillis;
+  }
+
+  /**
+   * @param millis
+   *          milliseconds after which the search is aborted
+   */
+  public void setHardTimeMillis(final long millis) {
+    this.hardTimeMillis = millis;
+  }
+
+  /**
+   * @return positions after which the search is aborted
+   */
+  public long getMaxNodes() {
+    return this.maxNodes;
+  }
+
+  /**
+   * @param nodes
+   *          positions after which the search is aborted
+   */
+  public void setMaxNodes(final long nodes) {
+    this.maxNodes = nodes;
+  }
+
+  /**
+   * Make limits that only allow a time per move: no new iteration after half
+   * the time, and an abort when it runs out.
+   *
+   * @param millis
+   *          time for the move in milliseconds
+   * @return the limits
+   */
+  public static SearchLimits moveTime(final long millis) {
+    SearchLimits ret = new SearchLimits();
+    ret.setSoftTimeMillis(millis / 2);
+    ret.setHardTimeMillis(millis);
+    return ret;
+  }
+}
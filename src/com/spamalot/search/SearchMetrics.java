@@ -0,0 +1,251 @@
+package com.spamalot.search;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The statistics of the latest search, for JMX and for a periodic log line.
+ *
+ * <p>Searches count into their own {@link SearchCounters} and publish a copy
+ * here once an iteration finishes, so nothing on the hot path is shared.
+ * {@link #register(String)} makes the statistics visible as an MXBean and
+ * {@link #startLogging(PrintStream, long)} prints {@link #toLogLine()} on a
+ * schedule.
+ *
+ * @author gej
+ *
+ */
+public final class SearchMetrics implements SearchMetricsMXBean, AutoCloseable {
+  /** Nanoseconds in a microsecond. */
+  private static final long NANOS_PER_MICRO = 1000L;
+
+  /** Nanoseconds in a second. */
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
+  /** Deepest iteration finished. */
+  private int depth;
+
+  /** Positions visited. */
+  private long nodes;
+
+  /** Time the search has taken. */
+  private long elapsedNanos;
+
+  /** Time taken by each iteration. */
+  private long[] iterationNanos = new long[0];
+
+  /** Copy of the search's counters. */
+  private final SearchCounters counters = new SearchCounters();
+
+  /** Whether searches time move generation and evaluation. */
+  private volatile boolean timing;
+
+  /** Name registered with JMX, or null. */
+  private ObjectName objectName;
+
+  /** Thread printing the log line, or null. */
+  private ScheduledExecutorService logger;
+
+  /**
+   * Publish the statistics of a search.
+   *
+   * @param searchDepth
+   *          deepest iteration finished
+   * @param searchNodes
+   *          positions visited
+   * @param searchNanos
+   *          time the search has taken
+   * @param searchIterationNanos
+   *          time taken by each iteration
+   * @param searchCounters
+   *          the search's counters
+   */
+  public synchronized void record(final int searchDepth, final long searchNodes, final long searchNanos, final long[] searchIterationNanos,
+      final SearchCounters searchCounters) {
+    this.depth = searchDepth;
+    this.nodes = searchNodes;
+    this.elapsedNanos = searchNanos;
+    this.iterationNanos = searchIterationNanos.clone();
+    this.counters.clear();
+    this.counters.add(searchCounters);
+  }
+
+  /**
+   * Add the work of helper threads to the latest search.
+   *
+   * @param helperNodes
+   *          positions the helpers visited
+   * @param helperCounters
+   *          the helpers' counters
+   */
+  public synchronized void recordHelpers(final long helperNodes, final SearchCounters helperCounters) {
+    this.nodes += helperNodes;
+    this.counters.add(helperCounters);
+  }
+
+  @Override
+  public synchronized int getDepth() {
+    return this.depth;
+  }
+
+  @Override
+  public synchronized long getNodes() {
+    return this.nodes;
+  }
+
+  @Override
+  public synchronized long getNodesPerSecond() {
+    return this.elapsedNanos == 0 ? 0 : (long) (this.nodes * (double) NANOS_PER_SECOND / this.elapsedNanos);
+  }
+
+  @Override
+  public synchronized long getBetaCutoffs() {
+    return this.counters.getBetaCutoffs();
+  }
+
+  @Override
+  public synchronized double getFirstMoveCutoffRatio() {
+    return this.counters.getFirstMoveCutoffRatio();
+  }
+
+  @Override
+  public synchronized long getTableProbes() {
+    return this.counters.getTableProbes();
+  }
+
+  @Override
+  public synchronized long getTableHits() {
+    return this.counters.getTableHits();
+  }
+
+  @Override
+  public synchronized long[] getIterationMicros() {
+    long[] ret = new long[this.iterationNanos.length];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = this.iterationNanos[i] / NANOS_PER_MICRO;
+    }
+    return ret;
+  }
+
+  @Override
+  public synchronized long getMoveGenerationMicros() {
+    return this.counters.getMoveGenerationNanos() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public synchronized long getEvaluationMicros() {
+    return this.counters.getEvaluationNanos() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public boolean isTiming() {
+    return this.timing;
+  }
+
+  @Override
+  public void setTiming(final boolean timed) {
+    this.timing = timed;
+  }
+
+  /**
+   * Describe the statistics on one line of space separated
+   * <code>name=value</code> pairs, iteration times separated by commas.
+   *
+   * @return the line
+   */
+  public synchronized String toLogLine() {
+    StringBuilder sb = new StringBuilder("search");
+    sb.append(" depth=").append(this.depth);
+    sb.append(" nodes=").append(this.nodes);
+    sb.append(" nps=").append(getNodesPerSecond());
+    sb.append(" cutoffs=").append(this.counters.getBetaCutoffs());
+    sb.append(" firstMoveCutoffRatio=").append(String.format(Locale.ROOT, "%.3f", this.counters.getFirstMoveCutoffRatio()));
+    sb.append(" tableProbes=").append(this.counters.getTableProbes());
+    sb.append(" tableHits=").append(this.counters.getTableHits());
+    sb.append(" iterationMicros=");
+    long[] micros = getIterationMicros();
+    for (int i = 0; i < micros.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(micros[i]);
+    }
+    sb.append(" moveGenMicros=").append(getMoveGenerationMicros());
+    sb.append(" evalMicros=").append(getEvaluationMicros());
+    return sb.toString();
+  }
+
+  /**
+   * Register with the platform MBean server under
+   * <code>com.spamalot.search:type=SearchMetrics,name=</code><i>name</i>.
+   *
+   * @param name
+   *          name to tell this search apart
+   * @throws JMException
+   *           if it can't be registered.
+   */
+  public synchronized void register(final String name) throws JMException {
+    ObjectName on = new ObjectName("com.spamalot.search:type=SearchMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+    this.objectName = on;
+  }
+
+  /**
+   * Print {@link #toLogLine()} on a schedule from a daemon thread.
+   *
+   * @param out
+   *          where to print
+   * @param periodMillis
+   *          milliseconds between lines
+   */
+  public synchronized void startLogging(final PrintStream out, final long periodMillis) {
+    stopLogging();
+    this.logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        Thread t = new Thread(r, "search-metrics");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    this.logger.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        out.println(toLogLine());
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop printing the log line.
+   */
+  public synchronized void stopLogging() {
+    if (this.logger != null) {
+      this.logger.shutdownNow();
+      this.logger = null;
+    }
+  }
+
+  /**
+   * Stop logging and unregister from JMX.
+   *
+   * @throws JMException
+   *           if it can't be unregistered.
+   */
+  @Override
+  public synchronized void close() throws JMException {
+    stopLogging();
+    if (this.objectName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+      this.objectName = null;
+    }
+  }
+}
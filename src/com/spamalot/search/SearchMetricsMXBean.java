@@ -0,0 +1,73 @@
+package com.spamalot.search;
+
+/**
+ * The statistics of a search as seen through JMX.
+ *
+ * @author gej
+ *
+ */
+public interface SearchMetricsMXBean {
+  /**
+   * @return the deepest iteration finished
+   */
+  int getDepth();
+
+  /**
+   * @return positions visited
+   */
+  long getNodes();
+
+  /**
+   * @return positions visited per second
+   */
+  long getNodesPerSecond();
+
+  /**
+   * @return cutoffs where a move scored at least beta
+   */
+  long getBetaCutoffs();
+
+  /**
+   * @return the share of cutoffs made by the first move tried
+   */
+  double getFirstMoveCutoffRatio();
+
+  /**
+   * @return transposition table lookups
+   */
+  long getTableProbes();
+
+  /**
+   * @return transposition table lookups that found the position
+   */
+  long getTableHits();
+
+  /**
+   * @return the time taken by each iteration, in microseconds
+   */
+  long[] getIterationMicros();
+
+  /**
+   * @return time spent generating moves, in microseconds, 0 unless timing
+   */
+  long getMoveGenerationMicros();
+
+  /**
+   * @return time spent evaluating, in microseconds, 0 unless timing
+   */
+  long getEvaluationMicros();
+
+  /**
+   * @return whether move generation and evaluation are timed
+   */
+  boolean isTiming();
+
+  /**
+   * Choose whether move generation and evaluation are timed, from the next
+   * search on.
+   *
+   * @param timing
+   *          whether to time them
+   */
+  void setTiming(boolean timing);
+}
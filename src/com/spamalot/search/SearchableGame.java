@@ -0,0 +1,54 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.boardgame.ai.MinMaxSearchable;
+
+/**
+ * A MinMaxSearchable game with the extra information the searchers in this
+ * package need.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public interface SearchableGame<M extends Move> extends MinMaxSearchable<M> {
+  /**
+   * Get the Zobrist key of the current position, including the color to move.
+   * Games keep it up to date as moves are made and undone.
+   *
+   * @return the key
+   */
+  long getZobristKey();
+
+  /**
+   * Get the color to move. Evaluations are from white's point of view, so
+   * searchers need this to score a position for the side to move.
+   *
+   * @return the color to move
+   */
+  PieceColor getColorToMove();
+
+  /**
+   * Encode a move as a small non-zero int, at most 16 bits, that identifies it
+   * among the moves of the same position. Used to remember best moves in
+   * tables.
+   *
+   * @param move
+   *          the move
+   * @return the code
+   */
+  int encodeMove(M move);
+
+  /**
+   * Make an independent copy of the current position, so another thread can
+   * search it.
+   *
+   * @return the copy
+   * @throws GameException
+   *           if the position can't be copied.
+   */
+  SearchableGame<M> copyGame() throws GameException;
+}
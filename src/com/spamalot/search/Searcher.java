@@ -0,0 +1,80 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.Move;
+
+import java.util.List;
+
+/**
+ * A fixed-depth search that {@link IterativeDeepening} can drive.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public interface Searcher<M extends Move> {
+  /**
+   * Search to a fixed depth, trying a given move first at the root.
+   *
+   * @param depth
+   *          depth in plies
+   * @param firstMove
+   *          move to try first, or null
+   * @return the best move, which is only complete if the search was not
+   *         aborted
+   */
+  M search(int depth, M firstMove);
+
+  /**
+   * @return the score of the last search for the side to move
+   */
+  int getScore();
+
+  /**
+   * @return the positions visited by the last search
+   */
+  long getNodes();
+
+  /**
+   * @return whether the last search was aborted before it finished
+   */
+  boolean isAborted();
+
+  /**
+   * @return the moves expected to be played from the root, best first
+   */
+  List<M> getPrincipalVariation();
+
+  /**
+   * Set limits that abort a search. They stay in force until changed. A
+   * request to stop is not forgotten, see {@link #clearStop()}.
+   *
+   * @param deadlineNanos
+   *          System.nanoTime() after which to abort, or
+   *          {@link SearchLimits#UNLIMITED}
+   * @param nodeLimit
+   *          positions after which to abort, or {@link SearchLimits#UNLIMITED}
+   */
+  void setLimits(long deadlineNanos, long nodeLimit);
+
+  /**
+   * Change the node limit without touching the other limits.
+   *
+   * @param nodeLimit
+   *          positions after which to abort
+   */
+  void setNodeLimit(long nodeLimit);
+
+  /**
+   * Ask the search to abort as soon as it can. Safe to call from any thread.
+   * The request holds until {@link #clearStop()}, so it also aborts a search
+   * that has not started yet.
+   */
+  void stop();
+
+  /**
+   * Forget any earlier request to stop. Call it when a new search is started,
+   * on the thread that starts it.
+   */
+  void clearStop();
+}
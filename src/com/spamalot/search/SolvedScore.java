@@ -0,0 +1,53 @@
+package com.spamalot.search;
+
+/**
+ * Map the final margin of a solved game to a search score: above any
+ * evaluation for a win, below any for a loss, and 0 for a draw. Games
+ * evaluate at 100 a piece, so a bigger margin still scores higher.
+ *
+ * @author gej
+ *
+ */
+public final class SolvedScore {
+  /** Score of a won game with a margin of zero, above any evaluation. */
+  public static final int SOLVED_SCORE = 200000;
+
+  /** Score of one piece of margin. */
+  public static final int PIECE_SCORE = 100;
+
+  /** Largest margin on any board here. */
+  public static final int MAX_MARGIN = 64;
+
+  /**
+   * No construction.
+   */
+  private SolvedScore() {
+  }
+
+  /**
+   * Convert a final margin to a search score.
+   *
+   * @param margin
+   *          margin in pieces for the side to move
+   * @return the score
+   */
+  public static int score(final int margin) {
+    return Integer.signum(margin) * SOLVED_SCORE + margin * PIECE_SCORE;
+  }
+
+  /**
+   * Find the largest margin whose score is at most a search score, to turn a
+   * search window into a margin window.
+   *
+   * @param score
+   *          the search score
+   * @return the margin, from -{@link #MAX_MARGIN} - 1 to {@link #MAX_MARGIN}
+   */
+  public static int marginAtMost(final int score) {
+    int m = MAX_MARGIN;
+    while (m > -MAX_MARGIN - 1 && score(m) > score) {
+      m--;
+    }
+    return m;
+  }
+}
@@ -0,0 +1,37 @@
+package com.spamalot.search;
+
+/**
+ * A game whose positions look the same under the 8 symmetries of a square
+ * board, as numbered by {@link Symmetry}.
+ *
+ * @author gej
+ *
+ */
+public interface SymmetricGame {
+  /**
+   * @return the symmetry that takes the current position to its canonical
+   *         form
+   */
+  int getCanonicalSymmetry();
+
+  /**
+   * Get the Zobrist key of the current position after a symmetry, computed
+   * the same way as {@link SearchableGame#getZobristKey()}.
+   *
+   * @param symmetry
+   *          the symmetry
+   * @return the key
+   */
+  long getSymmetricKey(int symmetry);
+
+  /**
+   * Transform a move code by a symmetry.
+   *
+   * @param code
+   *          the move code, or 0 for no move
+   * @param symmetry
+   *          the symmetry
+   * @return the code of the transformed move, 0 for no move
+   */
+  int transformMoveCode(int code, int symmetry);
+}
@@ -0,0 +1,250 @@
+package com.spamalot.search;
+
+/**
+ * The 8 symmetries of a square board held in a long.
+ *
+ * <p>Squares are numbered <code>rank * 8 + file</code> with the board in the
+ * low ranks and files, so boards smaller than 8x8 leave the top ranks and
+ * right files empty. Each transform is a few mask and shift operations
+ * rather than a loop over squares.
+ *
+ * <p>A symmetry is a number from 0 to 7. Bit 0 flips about the a1-h8
+ * diagonal, bit 1 mirrors the files and bit 2 flips the ranks, applied in
+ * that order. Symmetry 0 is the identity.
+ *
+ * <p>The canonical form of a position is the smallest of its 8 images,
+ * comparing the white pieces and then the black pieces. Keys and move codes
+ * of the canonical form are shared by all 8 images, so caches hold one entry
+ * where they would hold up to 8.
+ *
+ * @author gej
+ *
+ */
+public final class Symmetry {
+  /** Number of symmetries. */
+  public static final int COUNT = 8;
+
+  /** Flip about the a1-h8 diagonal. */
+  public static final int DIAGONAL = 1;
+
+  /** Mirror the files. */
+  public static final int MIRROR = 2;
+
+  /** Flip the ranks. */
+  public static final int FLIP = 4;
+
+  /** Largest board. */
+  private static final int MAX_SIZE = 8;
+
+  /** Inverse of each symmetry. */
+  private static final int[] INVERSE = new int[COUNT];
+
+  static {
+    int sq = squareIndex(1, 2);
+    for (int s = 0; s < COUNT; s++) {
+      for (int t = 0; t < COUNT; t++) {
+        if (transformSquare(transformSquare(sq, s, MAX_SIZE), t, MAX_SIZE) == sq) {
+          INVERSE[s] = t;
+        }
+      }
+    }
+  }
+
+  /**
+   * No construction.
+   */
+  private Symmetry() {
+  }
+
+  /**
+   * @param file
+   *          file of the square
+   * @param rank
+   *          rank of the square
+   * @return the square index
+   */
+  private static int squareIndex(final int file, final int rank) {
+    return rank * MAX_SIZE + file;
+  }
+
+  /**
+   * Flip the ranks.
+   *
+   * @param b
+   *          the squares
+   * @param size
+   *          size of the board
+   * @return the flipped squares
+   */
+  public static long flipVertical(final long b, final int size) {
+    return Long.reverseBytes(b) >>> (MAX_SIZE * (MAX_SIZE - size));
+  }
+
+  /**
+   * Mirror the files.
+   *
+   * @param b
+   *          the squares
+   * @param size
+   *          size of the board
+   * @return the mirrored squares
+   */
+  public static long mirrorHorizontal(final long b, final int size) {
+    long x = ((b >>> 1) & 0x5555555555555555L) | ((b & 0x5555555555555555L) << 1);
+    x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+    x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+    return x >>> (MAX_SIZE - size);
+  }
+
+  /**
+   * Flip about the a1-h8 diagonal, which needs no adjustment for the board
+   * size.
+   *
+   * @param b
+   *          the squares
+   * @return the flipped squares
+   */
+  public static long flipDiagonal(final long b) {
+    long x = b;
+    long t = 0x0F0F0F0F00000000L & (x ^ (x << 28));
+    x ^= t ^ (t >>> 28);
+    t = 0x3333000033330000L & (x ^ (x << 14));
+    x ^= t ^ (t >>> 14);
+    t = 0x5500550055005500L & (x ^ (x << 7));
+    x ^= t ^ (t >>> 7);
+    return x;
+  }
+
+  /**
+   * Apply a symmetry to a set of squares.
+   *
+   * @param b
+   *          the squares
+   * @param symmetry
+   *          the symmetry
+   * @param size
+   *          size of the board
+   * @return the transformed squares
+   */
+  public static long transform(final long b, final int symmetry, final int size) {
+    long x = b;
+    if ((symmetry & DIAGONAL) != 0) {
+      x = flipDiagonal(x);
+    }
+    if ((symmetry & MIRROR) != 0) {
+      x = mirrorHorizontal(x, size);
+    }
+    if ((symmetry & FLIP) != 0) {
+      x = flipVertical(x, size);
+    }
+    return x;
+  }
+
+  /**
+   * Apply a symmetry to a square.
+   *
+   * @param sq
+   *          the square index
+   * @param symmetry
+   *          the symmetry
+   * @param size
+   *          size of the board
+   * @return the transformed square index
+   */
+  public static int transformSquare(final int sq, final int symmetry, final int size) {
+    int file = sq % MAX_SIZE;
+    int rank = sq / MAX_SIZE;
+    if ((symmetry & DIAGONAL) != 0) {
+      int t = file;
+      file = rank;
+      rank = t;
+    }
+    if ((symmetry & MIRROR) != 0) {
+      file = size - 1 - file;
+    }
+    if ((symmetry & FLIP) != 0) {
+      rank = size - 1 - rank;
+    }
+    return squareIndex(file, rank);
+  }
+
+  /**
+   * @param symmetry
+   *          the symmetry
+   * @return the symmetry that undoes it
+   */
+  public static int inverse(final int symmetry) {
+    return INVERSE[symmetry];
+  }
+
+  /**
+   * Find the symmetry that takes a position to its canonical form.
+   *
+   * @param white
+   *          white pieces
+   * @param black
+   *          black pieces
+   * @param size
+   *          size of the board
+   * @return the symmetry, the lowest one if several give the canonical form
+   */
+  public static int canonical(final long white, final long black, final int size) {
+    int best = 0;
+    long bestWhite = white;
+    long bestBlack = black;
+    for (int s = 1; s < COUNT; s++) {
+      long w = transform(white, s, size);
+      int c = Long.compareUnsigned(w, bestWhite);
+      if (c > 0) {
+        continue;
+      }
+      long b = transform(black, s, size);
+      if (c < 0 || Long.compareUnsigned(b, bestBlack) < 0) {
+        best = s;
+        bestWhite = w;
+        bestBlack = b;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Get the symmetry to use for caching a position of a game.
+   *
+   * @param game
+   *          the game
+   * @return the canonical symmetry, or 0 if the game is not a
+   *         {@link SymmetricGame}
+   */
+  public static int canonical(final SearchableGame<?> game) {
+    return game instanceof SymmetricGame ? ((SymmetricGame) game).getCanonicalSymmetry() : 0;
+  }
+
+  /**
+   * Get the key of a position of a game after a symmetry.
+   *
+   * @param game
+   *          the game
+   * @param symmetry
+   *          the symmetry, 0 unless the game is a {@link SymmetricGame}
+   * @return the key
+   */
+  public static long key(final SearchableGame<?> game, final int symmetry) {
+    return symmetry == 0 ? game.getZobristKey() : ((SymmetricGame) game).getSymmetricKey(symmetry);
+  }
+
+  /**
+   * Transform a move code of a game by a symmetry.
+   *
+   * @param game
+   *          the game
+   * @param code
+   *          the move code
+   * @param symmetry
+   *          the symmetry, 0 unless the game is a {@link SymmetricGame}
+   * @return the transformed code
+   */
+  public static int moveCode(final SearchableGame<?> game, final int code, final int symmetry) {
+    return symmetry == 0 ? code : ((SymmetricGame) game).transformMoveCode(code, symmetry);
+  }
+}
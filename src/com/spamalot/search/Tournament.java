@@ -0,0 +1,308 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Play a match between two engines without a controller.
+ *
+ * <p>Games are shared out between a fixed number of worker threads, one game at
+ * a time per worker. Each worker copies the start position once and keeps
+ * its own searcher and transposition table for each engine. A game is played
+ * on the worker's copy and then undone back to the start. The tables and
+ * the move ordering are cleared between games, so the big allocations are
+ * made once per worker rather than once per game, and every game is played
+ * as if by new engines.
+ *
+ * <p>Games come in pairs. Both games of a pair start from the same opening of
+ * random moves, and the engines swap sides for the second game. Openings are
+ * drawn from the tournament's seed and the pair number, so a rerun plays the
+ * same openings whatever the number of threads, and with depth limits the
+ * same games.
+ *
+ * <p>A game ends when it is over or after a limit on plies. Its result is
+ * the sign of the evaluation at the end: the final evaluation when the game
+ * is over, and an adjudication by the static evaluation at the ply limit.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class Tournament<M extends Move> {
+  /** Default number of random moves at the start of each game. */
+  public static final int DEFAULT_OPENING_PLIES = 4;
+
+  /** Default number of plies after which a game is adjudicated. */
+  public static final int DEFAULT_MAX_PLIES = 400;
+
+  /** The start position. */
+  private final SearchableGame<M> start;
+
+  /** The two engines. */
+  private final Player[] players;
+
+  /** Number of worker threads. */
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /** Random moves at the start of each game. */
+  private int openingPlies = DEFAULT_OPENING_PLIES;
+
+  /** Plies after which a game is adjudicated. */
+  private int maxPlies = DEFAULT_MAX_PLIES;
+
+  /** Seed of the openings. */
+  private long seed;
+
+  /**
+   * Settings of one engine.
+   *
+   * @author gej
+   *
+   */
+  public static final class Player {
+    /** Name used in reports. */
+    private final String name;
+
+    /** The searcher. */
+    private final SearchAlgorithm algorithm;
+
+    /** Limits of each search. */
+    private final SearchLimits limits;
+
+    /** Size of the transposition table in megabytes. */
+    private final int tableMegabytes;
+
+    /**
+     * Construct an engine.
+     *
+     * @param playerName
+     *          name used in reports
+     * @param searchAlgorithm
+     *          the searcher
+     * @param searchLimits
+     *          limits of each search
+     * @param megabytes
+     *          size of the transposition table
+     */
+    public Player(final String playerName, final SearchAlgorithm searchAlgorithm, final SearchLimits searchLimits, final int megabytes) {
+      this.name = playerName;
+      this.algorithm = searchAlgorithm;
+      this.limits = searchLimits;
+      this.tableMegabytes = megabytes;
+    }
+
+    /**
+     * Read an engine from text of the form
+     * <code>ALGORITHM:depth[:millis]</code>, for example
+     * <code>PVS:6</code> or <code>ALPHA_BETA:64:100</code>.
+     *
+     * @param text
+     *          the engine
+     * @param megabytes
+     *          size of the transposition table
+     * @return the engine
+     */
+    public static Player parse(final String text, final int megabytes) {
+      String[] parts = text.split(":");
+      if (parts.length < 2 || parts.length > 3) {
+        throw new IllegalArgumentException("Engine must be ALGORITHM:depth[:millis]: " + text);
+      }
+      SearchLimits limits = parts.length == 3 ? SearchLimits.moveTime(Long.parseLong(parts[2])) : new SearchLimits();
+      limits.setMaxDepth(Integer.parseInt(parts[1]));
+      return new Player(text, SearchAlgorithm.valueOf(parts[0]), limits, megabytes);
+    }
+
+    /**
+     * @return the name used in reports
+     */
+    public String getName() {
+      return this.name;
+    }
+  }
+
+  /**
+   * Construct a tournament.
+   *
+   * @param startPosition
+   *          the position every game starts from, before the opening moves
+   * @param first
+   *          the engine results are counted for
+   * @param second
+   *          its opponent
+   */
+  public Tournament(final SearchableGame<M> startPosition, final Player first, final Player second) {
+    this.start = startPosition;
+    this.players = new Player[] { first, second };
+  }
+
+  /**
+   * @param count
+   *          number of worker threads
+   */
+  public void setThreads(final int count) {
+    this.threads = count;
+  }
+
+  /**
+   * @param plies
+   *          random moves at the start of each game
+   */
+  public void setOpeningPlies(final int plies) {
+    this.openingPlies = plies;
+  }
+
+  /**
+   * @param plies
+   *          plies after which a game is adjudicated
+   */
+  public void setMaxPlies(final int plies) {
+    this.maxPlies = plies;
+  }
+
+  /**
+   * @param openingSeed
+   *          seed of the openings
+   */
+  public void setSeed(final long openingSeed) {
+    this.seed = openingSeed;
+  }
+
+  /**
+   * Play a match and wait for it to finish.
+   *
+   * @param games
+   *          number of games, best even so every opening is played from both
+   *          sides
+   * @return the result for the first engine
+   * @throws GameException
+   *           if the start position can't be copied.
+   * @throws InterruptedException
+   *           if interrupted while waiting.
+   * @throws IllegalArgumentException
+   *           if there are no games to play.
+   */
+  public MatchResult play(final int games) throws GameException, InterruptedException {
+    if (games < 1) {
+      throw new IllegalArgumentException("Need at least one game: " + games);
+    }
+    final MatchResult result = new MatchResult();
+    final AtomicInteger next = new AtomicInteger();
+    int workers = Math.max(1, Math.min(this.threads, games));
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    long startNanos = System.nanoTime();
+    try {
+      List<Future<Void>> futures = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        final SearchableGame<M> game = this.start.copyGame();
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            playGames(game, next, games, result);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> f : futures) {
+        f.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Tournament game failed.", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    result.setElapsedNanos(System.nanoTime() - startNanos);
+    return result;
+  }
+
+  /**
+   * Play games on one worker until there are none left.
+   *
+   * @param game
+   *          the worker's copy of the start position
+   * @param next
+   *          number of the next game to play
+   * @param games
+   *          number of games in the match
+   * @param result
+   *          where the games are counted
+   */
+  private void playGames(final SearchableGame<M> game, final AtomicInteger next, final int games, final MatchResult result) {
+    TranspositionTable[] tables = new TranspositionTable[this.players.length];
+    List<IterativeDeepening<M>> searches = new ArrayList<>(this.players.length);
+    for (int i = 0; i < this.players.length; i++) {
+      tables[i] = new TranspositionTable(this.players[i].tableMegabytes);
+      searches.add(new IterativeDeepening<>(game, tables[i], this.players[i].algorithm));
+    }
+    Random random = new Random();
+
+    for (int g = next.getAndIncrement(); g < games; g = next.getAndIncrement()) {
+      for (int i = 0; i < tables.length; i++) {
+        tables[i].clear();
+        searches.get(i).clearOrdering();
+      }
+      random.setSeed(this.seed + g / 2);
+      int firstPlayer = g % 2;
+      int plies = 0;
+      while (!game.isOver() && plies < this.maxPlies) {
+        M move;
+        if (plies < this.openingPlies) {
+          List<M> moves = game.getAvailableMoves();
+          move = moves.get(random.nextInt(moves.size()));
+        } else {
+          int player = playerToMove(plies, firstPlayer);
+          move = searches.get(player).search(this.players[player].limits);
+        }
+        game.makeMove(move);
+        plies++;
+      }
+      result.record(outcome(game, plies, firstPlayer));
+      for (; plies > 0; plies--) {
+        game.undoLastMove();
+      }
+    }
+  }
+
+  /**
+   * Score a finished game for the first engine.
+   *
+   * @param game
+   *          the game at its last position
+   * @param plies
+   *          plies played
+   * @param firstPlayer
+   *          the engine that moved first after the opening
+   * @return positive for a win of the first engine, 0 for a draw and
+   *         negative for a loss
+   */
+  private int outcome(final SearchableGame<M> game, final int plies, final int firstPlayer) {
+    int eval = game.evaluate(game.isOver());
+    int forSideToMove = game.getColorToMove() == PieceColor.WHITE ? eval : -eval;
+    return Integer.signum(playerToMove(plies, firstPlayer) == 0 ? forSideToMove : -forSideToMove);
+  }
+
+  /**
+   * Find the engine to move. Passes are plies too, so the engines simply
+   * alternate after the opening.
+   *
+   * @param plies
+   *          plies played, opening included
+   * @param firstPlayer
+   *          the engine that moves first after the opening
+   * @return 0 for the first engine of the tournament, 1 for the second
+   */
+  private int playerToMove(final int plies, final int firstPlayer) {
+    return Math.floorMod(plies - this.openingPlies, 2) == 0 ? firstPlayer : 1 - firstPlayer;
+  }
+}
@@ -0,0 +1,217 @@
+package com.spamalot.search;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table held in a preallocated long array.
+ *
+ * <p>Each entry is two longs: the position key XORed with the data, and the
+ * data itself. A probe only accepts an entry whose two words XOR back to the
+ * key, so a torn write from another thread reads as a miss instead of as wrong
+ * data. That lets several search threads share one table without locking.
+ *
+ * <p>Entries come in buckets of two. The first slot keeps the deepest result
+ * of the current search and the second slot always takes the newest result.
+ *
+ * <p>The data word packs the score into bits 0-31, the best move code into bits
+ * 32-47, the depth into bits 48-55, the bound type into bits 56-57 and the
+ * search generation into bits 58-63.
+ *
+ * @author gej
+ *
+ */
+public final class TranspositionTable {
+  /** No entry. */
+  public static final int NONE = 0;
+
+  /** The score is exact. */
+  public static final int EXACT = 1;
+
+  /** The score is a lower bound. */
+  public static final int LOWER = 2;
+
+  /** The score is an upper bound. */
+  public static final int UPPER = 3;
+
+  /** Bytes used by one entry. */
+  private static final int ENTRY_BYTES = 16;
+
+  /** Longs in one bucket. */
+  private static final int BUCKET_LONGS = 4;
+
+  /** Most buckets, so that the array holds no more than Integer.MAX_VALUE longs. */
+  private static final long MAX_BUCKETS = Long.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS);
+
+  /** Generations wrap at this many searches. */
+  private static final int GENERATIONS = 64;
+
+  /** The entries. */
+  private final long[] table;
+
+  /** Mask that turns a key into a bucket number. */
+  private final long bucketMask;
+
+  /** Generation of the current search. */
+  private int generation;
+
+  /**
+   * Construct a table.
+   *
+   * @param megabytes
+   *          size of the table in megabytes, rounded down to a power of two
+   *          buckets and capped at the largest array Java allows, 8 GB
+   * @throws IllegalArgumentException
+   *           if megabytes is not positive.
+   */
+  public TranspositionTable(final int megabytes) {
+    long buckets = buckets(megabytes);
+    this.table = new long[(int) (buckets * BUCKET_LONGS)];
+    this.bucketMask = buckets - 1;
+  }
+
+  /**
+   * Work out the number of buckets for a size.
+   *
+   * @param megabytes
+   *          size of the table in megabytes
+   * @return a power of two buckets that fits in the size and in one array
+   * @throws IllegalArgumentException
+   *           if megabytes is not positive.
+   */
+  static long buckets(final int megabytes) {
+    if (megabytes <= 0) {
+      throw new IllegalArgumentException("Table size must be at least 1 MB: " + megabytes);
+    }
+    long entries = ((long) megabytes << 20) / ENTRY_BYTES;
+    return Math.min(MAX_BUCKETS, Long.highestOneBit(entries / 2));
+  }
+
+  /**
+   * Start a new search, so entries from earlier searches can be replaced
+   * first.
+   */
+  public void newSearch() {
+    this.generation = (this.generation + 1) % GENERATIONS;
+  }
+
+  /**
+   * Empty the table.
+   */
+  public void clear() {
+    Arrays.fill(this.table, 0);
+  }
+
+  /**
+   * Look up a position.
+   *
+   * @param key
+   *          Zobrist key of the position
+   * @return the data word, or 0 if the position is not stored
+   */
+  public long probe(final long key) {
+    int i = (int) (key & this.bucketMask) * BUCKET_LONGS;
+    for (int slot = 0; slot < BUCKET_LONGS; slot += 2) {
+      long data = this.table[i + slot + 1];
+      if ((this.table[i + slot] ^ data) == key) {
+        return data;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Store a search result.
+   *
+   * @param key
+   *          Zobrist key of the position
+   * @param move
+   *          code of the best move, or 0
+   * @param depth
+   *          depth searched
+   * @param bound
+   *          {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+   * @param score
+   *          the score
+   */
+  public void store(final long key, final int move, final int depth, final int bound, final int score) {
+    long data = pack(move, depth, bound, score, this.generation);
+    int i = (int) (key & this.bucketMask) * BUCKET_LONGS;
+
+    long old = this.table[i + 1];
+    boolean sameKey = (this.table[i] ^ old) == key;
+    if (sameKey || bound(old) == NONE || generation(old) != this.generation || depth >= depth(old)) {
+      if (sameKey && move == 0) {
+        data = pack(move(old), depth, bound, score, this.generation);
+      }
+      this.table[i] = key ^ data;
+      this.table[i + 1] = data;
+    } else {
+      this.table[i + 2] = key ^ data;
+      this.table[i + 3] = data;
+    }
+  }
+
+  /**
+   * Pack the fields of an entry.
+   *
+   * @param move
+   *          move code
+   * @param depth
+   *          depth searched
+   * @param bound
+   *          bound type
+   * @param score
+   *          the score
+   * @param gen
+   *          search generation
+   * @return the data word
+   */
+  private static long pack(final int move, final int depth, final int bound, final int score, final int gen) {
+    return (score & 0xFFFFFFFFL) | ((long) (move & 0xFFFF) << 32) | ((long) Math.min(depth, 0xFF) << 48) | ((long) bound << 56) | ((long) gen << 58);
+  }
+
+  /**
+   * @param data
+   *          data word from {@link #probe(long)}
+   * @return the score
+   */
+  public static int score(final long data) {
+    return (int) data;
+  }
+
+  /**
+   * @param data
+   *          data word from {@link #probe(long)}
+   * @return the best move code, or 0
+   */
+  public static int move(final long data) {
+    return (int) (data >>> 32) & 0xFFFF;
+  }
+
+  /**
+   * @param data
+   *          data word from {@link #probe(long)}
+   * @return the depth searched
+   */
+  public static int depth(final long data) {
+    return (int) (data >>> 48) & 0xFF;
+  }
+
+  /**
+   * @param data
+   *          data word from {@link #probe(long)}
+   * @return the bound type, {@link #NONE} for an empty entry
+   */
+  public static int bound(final long data) {
+    return (int) (data >>> 56) & 0x3;
+  }
+
+  /**
+   * @param data
+   *          data word from {@link #probe(long)}
+   * @return the search generation
+   */
+  private static int generation(final long data) {
+    return (int) (data >>> 58);
+  }
+}
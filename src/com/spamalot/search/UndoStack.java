@@ -0,0 +1,124 @@
+package com.spamalot.search;
+
+import java.util.Arrays;
+
+/**
+ * An unsynchronized stack of the information needed to undo moves, held as
+ * primitives in parallel arrays.
+ *
+ * <p>Each entry is a move code, a mask of the squares whose pieces were
+ * flipped and the Zobrist key before the move. Pushing and popping allocate
+ * nothing once the arrays are big enough for the game.
+ *
+ * @author gej
+ *
+ */
+public final class UndoStack {
+  /** Initial number of entries. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** Move codes. */
+  private int[] moves;
+
+  /** Masks of flipped squares. */
+  private long[] flipped;
+
+  /** Zobrist keys before each move. */
+  private long[] keys;
+
+  /** Number of entries. */
+  private int size;
+
+  /**
+   * Construct an empty stack.
+   */
+  public UndoStack() {
+    this.moves = new int[INITIAL_CAPACITY];
+    this.flipped = new long[INITIAL_CAPACITY];
+    this.keys = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Construct a copy of another stack.
+   *
+   * @param other
+   *          the stack to copy
+   */
+  private UndoStack(final UndoStack other) {
+    this.moves = other.moves.clone();
+    this.flipped = other.flipped.clone();
+    this.keys = other.keys.clone();
+    this.size = other.size;
+  }
+
+  /**
+   * Make a copy that can be pushed and popped on its own.
+   *
+   * @return the copy
+   */
+  public UndoStack copy() {
+    return new UndoStack(this);
+  }
+
+  /**
+   * Push an entry.
+   *
+   * @param move
+   *          code of the move made
+   * @param flippedSquares
+   *          mask of the squares whose pieces were flipped
+   * @param key
+   *          Zobrist key before the move
+   */
+  public void push(final int move, final long flippedSquares, final long key) {
+    if (this.size == this.moves.length) {
+      int len = this.size * 2;
+      this.moves = Arrays.copyOf(this.moves, len);
+      this.flipped = Arrays.copyOf(this.flipped, len);
+      this.keys = Arrays.copyOf(this.keys, len);
+    }
+    this.moves[this.size] = move;
+    this.flipped[this.size] = flippedSquares;
+    this.keys[this.size] = key;
+    this.size++;
+  }
+
+  /**
+   * Remove the top entry. Read it with the peek methods first.
+   */
+  public void pop() {
+    this.size--;
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Get the move code of an entry.
+   *
+   * @param fromTop
+   *          0 for the top entry, 1 for the one below and so on
+   * @return the move code
+   */
+  public int peekMove(final int fromTop) {
+    return this.moves[this.size - 1 - fromTop];
+  }
+
+  /**
+   * @return the flipped squares of the top entry
+   */
+  public long peekFlipped() {
+    return this.flipped[this.size - 1];
+  }
+
+  /**
+   * @return the Zobrist key of the top entry
+   */
+  public long peekKey() {
+    return this.keys[this.size - 1];
+  }
+}
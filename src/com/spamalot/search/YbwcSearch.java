@@ -0,0 +1,305 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.GameException;
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parallel alpha-beta search that splits the work with fork/join, Young
+ * Brothers Wait style.
+ *
+ * <p>Along the principal variation the first move of a node is searched before
+ * anything else. Its score then bounds the window for the remaining moves,
+ * which are searched in parallel, each on its own copy of the position. Below
+ * the principal variation the search is serial.
+ *
+ * <p>Siblings searched in parallel all get the window the first move left
+ * and no transposition table is shared, so the score, the move and the node
+ * count at a fixed depth do not depend on the number of threads or on
+ * timing. Moves at split nodes are tried in the order of their codes, so ties
+ * are broken the same way every time.
+ *
+ * @author gej
+ *
+ * @param <M>
+ *          the type of Move
+ */
+public final class YbwcSearch<M extends Move> implements AutoCloseable {
+  /** Shallowest depth at which moves are split across tasks. */
+  private static final int MIN_SPLIT_DEPTH = 2;
+
+  /** The game to search. */
+  private final SearchableGame<M> game;
+
+  /** Workers that run the tasks. */
+  private final ForkJoinPool pool;
+
+  /** Orders moves by their codes. */
+  private final Comparator<M> byCode;
+
+  /** Score of the last search for the side to move. */
+  private int score;
+
+  /** Positions visited by the last search. */
+  private long nodes;
+
+  /** Cutoff statistics of the last search, summed over the tasks. */
+  private SearchCounters counters = new SearchCounters();
+
+  /**
+   * Construct a parallel search.
+   *
+   * @param searchGame
+   *          the game to search
+   * @param parallelism
+   *          number of worker threads
+   */
+  public YbwcSearch(final SearchableGame<M> searchGame, final int parallelism) {
+    this.game = searchGame;
+    this.pool = new ForkJoinPool(parallelism);
+    this.byCode = new Comparator<M>() {
+      @Override
+      public int compare(final M a, final M b) {
+        return Integer.compare(searchGame.encodeMove(a), searchGame.encodeMove(b));
+      }
+    };
+  }
+
+  /**
+   * Search to a fixed depth.
+   *
+   * @param depth
+   *          depth in plies, at least 1
+   * @return the best move
+   */
+  public M search(final int depth) {
+    NodeTask root = new NodeTask(this.game, depth, -AbstractSearch.INFINITY, AbstractSearch.INFINITY, true);
+    root.root = true;
+    this.score = this.pool.invoke(root);
+    this.nodes = root.count;
+    this.counters = root.counters;
+    return root.bestMove;
+  }
+
+  /**
+   * @return the score of the last search for the side to move
+   */
+  public int getScore() {
+    return this.score;
+  }
+
+  /**
+   * @return the positions visited by the last search
+   */
+  public long getNodes() {
+    return this.nodes;
+  }
+
+  /**
+   * @return the cutoff statistics of the last search. There is no table and
+   *         nothing is timed.
+   */
+  public SearchCounters getCounters() {
+    return this.counters;
+  }
+
+  /**
+   * Stop the worker threads.
+   */
+  @Override
+  public void close() {
+    this.pool.shutdown();
+  }
+
+  /**
+   * The search of one position by one task.
+   */
+  private final class NodeTask extends RecursiveTask<Integer> {
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** The position, owned by this task while it runs. */
+    private final transient SearchableGame<M> position;
+
+    /** Depth left. */
+    private final int depth;
+
+    /** Lower bound. */
+    private final int alpha;
+
+    /** Upper bound. */
+    private final int beta;
+
+    /** Whether the node is on the principal variation, so it may split. */
+    private final boolean pv;
+
+    /** Positions visited by this task and the tasks it split off. */
+    private long count;
+
+    /** Cutoffs made by this task and the tasks it split off. */
+    private final transient SearchCounters counters = new SearchCounters();
+
+    /** Best move found, if this task split. */
+    private transient M bestMove;
+
+    /** Whether this is the root, which splits at any depth to find a move. */
+    private boolean root;
+
+    /**
+     * Construct a task.
+     *
+     * @param taskPosition
+     *          the position, owned by this task
+     * @param taskDepth
+     *          depth left
+     * @param taskAlpha
+     *          lower bound
+     * @param taskBeta
+     *          upper bound
+     * @param onPv
+     *          whether the node is on the principal variation
+     */
+    NodeTask(final SearchableGame<M> taskPosition, final int taskDepth, final int taskAlpha, final int taskBeta, final boolean onPv) {
+      this.position = taskPosition;
+      this.depth = taskDepth;
+      this.alpha = taskAlpha;
+      this.beta = taskBeta;
+      this.pv = onPv;
+    }
+
+    @Override
+    protected Integer compute() {
+      if (this.root || this.pv && this.depth >= MIN_SPLIT_DEPTH) {
+        return split();
+      }
+      return alphaBeta(this.depth, this.alpha, this.beta);
+    }
+
+    /**
+     * Search the first move, then the rest in parallel.
+     *
+     * @return the score for the side to move
+     */
+    private int split() {
+      this.count++;
+      boolean over = this.position.isOver();
+      if (over) {
+        return evaluate(over);
+      }
+
+      List<M> moves = this.position.getAvailableMoves();
+      Collections.sort(moves, YbwcSearch.this.byCode);
+
+      M first = moves.get(0);
+      this.position.makeMove(first);
+      NodeTask eldest = new NodeTask(this.position, this.depth - 1, -this.beta, -this.alpha, true);
+      int best = -eldest.compute();
+      this.position.undoLastMove();
+      this.count += eldest.count;
+      this.counters.add(eldest.counters);
+      this.bestMove = first;
+
+      int a = Math.max(this.alpha, best);
+      if (a >= this.beta) {
+        this.counters.cutoff(true);
+        return best;
+      }
+
+      List<NodeTask> brothers = new ArrayList<>();
+      for (int i = 1; i < moves.size(); i++) {
+        this.position.makeMove(moves.get(i));
+        brothers.add(new NodeTask(copy(this.position), this.depth - 1, -this.beta, -a, false));
+        this.position.undoLastMove();
+      }
+      invokeAll(brothers);
+
+      for (int i = 0; i < brothers.size(); i++) {
+        NodeTask brother = brothers.get(i);
+        int s = -brother.join();
+        this.count += brother.count;
+        this.counters.add(brother.counters);
+        if (s > best) {
+          best = s;
+          this.bestMove = moves.get(i + 1);
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Serial alpha-beta search of the task's position.
+     *
+     * @param d
+     *          depth left
+     * @param alphaIn
+     *          lower bound
+     * @param b
+     *          upper bound
+     * @return the score for the side to move
+     */
+    private int alphaBeta(final int d, final int alphaIn, final int b) {
+      this.count++;
+      boolean over = this.position.isOver();
+      if (over || d == 0) {
+        return evaluate(over);
+      }
+
+      int a = alphaIn;
+      int best = -AbstractSearch.INFINITY;
+      boolean firstMove = true;
+      for (M move : this.position.getAvailableMoves()) {
+        this.position.makeMove(move);
+        int s = -alphaBeta(d - 1, -b, -a);
+        this.position.undoLastMove();
+        if (s > best) {
+          best = s;
+          if (s > a) {
+            a = s;
+            if (a >= b) {
+              this.counters.cutoff(firstMove);
+              break;
+            }
+          }
+        }
+        firstMove = false;
+      }
+      return best;
+    }
+
+    /**
+     * Evaluate the position for the side to move.
+     *
+     * @param over
+     *          whether the game is over
+     * @return the evaluation
+     */
+    private int evaluate(final boolean over) {
+      int eval = this.position.evaluate(over);
+      return this.position.getColorToMove() == PieceColor.WHITE ? eval : -eval;
+    }
+  }
+
+  /**
+   * Copy a position for another task.
+   *
+   * @param position
+   *          the position
+   * @param <M>
+   *          the type of Move
+   * @return the copy
+   */
+  private static <M extends Move> SearchableGame<M> copy(final SearchableGame<M> position) {
+    try {
+      return position.copyGame();
+    } catch (GameException e) {
+      throw new IllegalStateException("Position could not be copied.", e);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.spamalot.search;
+
+import com.spamalot.boardgame.PieceColor;
+
+/**
+ * Zobrist keys for hashing positions on boards of up to 64 squares.
+ *
+ * <p>Squares are numbered <code>rank * 8 + file</code>. The keys are fixed
+ * from run to run so that hashes can be written to files.
+ *
+ * @author gej
+ *
+ */
+public final class Zobrist {
+  /** Number of squares with keys. */
+  private static final int NUM_SQUARES = 64;
+
+  /** Keys for a white piece on each square. */
+  private static final long[] WHITE = new long[NUM_SQUARES];
+
+  /** Keys for a black piece on each square. */
+  private static final long[] BLACK = new long[NUM_SQUARES];
+
+  /** Keys for changing the color of a piece on each square. */
+  private static final long[] FLIP = new long[NUM_SQUARES];
+
+  /** Key included when white is to move. */
+  public static final long WHITE_TO_MOVE;
+
+  static {
+    long seed = 0x5DEECE66DL;
+    for (int sq = 0; sq < NUM_SQUARES; sq++) {
+      seed += 0x9E3779B97F4A7C15L;
+      WHITE[sq] = mix(seed);
+      seed += 0x9E3779B97F4A7C15L;
+      BLACK[sq] = mix(seed);
+      FLIP[sq] = WHITE[sq] ^ BLACK[sq];
+    }
+    seed += 0x9E3779B97F4A7C15L;
+    WHITE_TO_MOVE = mix(seed);
+  }
+
+  /**
+   * No construction.
+   */
+  private Zobrist() {
+  }
+
+  /**
+   * The SplitMix64 finalizer.
+   *
+   * @param z
+   *          value to mix
+   * @return the mixed value
+   */
+  private static long mix(final long z) {
+    long x = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+
+  /**
+   * Get the key of a piece on a square.
+   *
+   * @param color
+   *          color of the piece
+   * @param sq
+   *          square index
+   * @return the key
+   */
+  public static long piece(final PieceColor color, final int sq) {
+    return color == PieceColor.WHITE ? WHITE[sq] : BLACK[sq];
+  }
+
+  /**
+   * Get the change in key when the piece on a square changes color. It is the
+   * same whichever way the piece flips.
+   *
+   * @param sq
+   *          square index
+   * @return the key
+   */
+  public static long flip(final int sq) {
+    return FLIP[sq];
+  }
+
+  /**
+   * Get the change in key when the pieces on all the given squares change
+   * color.
+   *
+   * @param squares
+   *          mask of square indexes
+   * @return the key
+   */
+  public static long flips(final long squares) {
+    long ret = 0;
+    long b = squares;
+    while (b != 0) {
+      ret ^= FLIP[Long.numberOfTrailingZeros(b)];
+      b &= b - 1;
+    }
+    return ret;
+  }
+
+  /**
+   * Get the key of a whole position given as bitboards.
+   *
+   * @param white
+   *          white pieces
+   * @param black
+   *          black pieces
+   * @param toMove
+   *          color to move
+   * @return the key
+   */
+  public static long hash(final long white, final long black, final PieceColor toMove) {
+    long ret = toMove == PieceColor.WHITE ? WHITE_TO_MOVE : 0;
+    long b = white;
+    while (b != 0) {
+      ret ^= WHITE[Long.numberOfTrailingZeros(b)];
+      b &= b - 1;
+    }
+    b = black;
+    while (b != 0) {
+      ret ^= BLACK[Long.numberOfTrailingZeros(b)];
+      b &= b - 1;
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,8 @@
+/**
+ * Search support shared by the games: position hashing, undo information and
+ * the searchers that use them.
+ * 
+ * @author gej
+ *
+ */
+package com.spamalot.search;
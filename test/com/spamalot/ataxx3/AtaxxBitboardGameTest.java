@@ -0,0 +1,158 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.MoveCodes;
+import com.spamalot.search.Symmetry;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * JUnit Test for AtaxxBitboardGame.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxBitboardGameTest {
+
+  /**
+   * Describe a list of moves so the two representations can be compared.
+   * Drops are described by their destination only because either
+   * representation may pick a different source piece.
+   * 
+   * @param moves
+   *          the moves
+   * @return a sorted set of descriptions
+   */
+  private static Set<String> describe(final List<AtaxxMove> moves) {
+    Set<String> ret = new TreeSet<>();
+    for (AtaxxMove m : moves) {
+      if (m.getType() == Move.Type.JUMP) {
+        ret.add("J" + m.getFromCoordinate() + m.getToCoordinate());
+      } else if (m.getType() == Move.Type.DROP) {
+        ret.add("D" + m.getToCoordinate());
+      } else {
+        ret.add("P");
+      }
+    }
+    return ret;
+  }
+
+  @Test
+  public final void testMatchesAtaxxGame() throws Exception {
+    Random random = new Random(42);
+    for (int game = 0; game < 20; game++) {
+      AtaxxGame ataxxGame = new AtaxxGame();
+      AtaxxBitboardGame bitboardGame = new AtaxxBitboardGame(ataxxGame);
+
+      for (int ply = 0; ply < 80; ply++) {
+        List<AtaxxMove> moves = ataxxGame.getAvailableMoves();
+        assertEquals(describe(moves), describe(bitboardGame.getAvailableMoves()));
+        assertEquals(ataxxGame.evaluate(false), bitboardGame.evaluate(false));
+        assertEquals(ataxxGame.computeZobristKey(), ataxxGame.getZobristKey());
+        assertEquals(ataxxGame.getZobristKey(), bitboardGame.getZobristKey());
+
+        AtaxxMove move = moves.get(random.nextInt(moves.size()));
+        ataxxGame.makeMove(move);
+        bitboardGame.makeMove(move);
+      }
+    }
+  }
+
+  @Test
+  public final void testScoreMoveCountsFlips() throws Exception {
+    Random random = new Random(11);
+    AtaxxGame ataxxGame = new AtaxxGame();
+    AtaxxBitboardGame bitboardGame = new AtaxxBitboardGame(ataxxGame);
+
+    for (int ply = 0; ply < 60 && !bitboardGame.isOver(); ply++) {
+      List<AtaxxMove> moves = bitboardGame.getAvailableMoves();
+      for (AtaxxMove m : moves) {
+        int score = bitboardGame.scoreMove(m);
+        assertEquals(ataxxGame.scoreMove(m), score);
+
+        int before = Long.bitCount(bitboardGame.getOwn());
+        bitboardGame.makeMove(m);
+        int gained = Long.bitCount(bitboardGame.getColorToMove() == PieceColor.WHITE ? bitboardGame.getBlack() : bitboardGame.getWhite()) - before;
+        bitboardGame.undoLastMove();
+        if (m.getType() != Move.Type.PASS) {
+          assertEquals(2 * gained - (m.getType() == Move.Type.DROP ? 1 : 0), score);
+        }
+      }
+
+      AtaxxMove move = moves.get(random.nextInt(moves.size()));
+      ataxxGame.makeMove(move);
+      bitboardGame.makeMove(move);
+    }
+  }
+
+  @Test
+  public final void testSymmetricLinesShareCanonicalKey() throws Exception {
+    int size = AtaxxBitboard.MAXIMUM_BOARD_SIZE;
+    Random random = new Random(5);
+    AtaxxBitboardGame start = new AtaxxBitboardGame();
+    for (int s = 0; s < Symmetry.COUNT; s++) {
+      if (Symmetry.transform(start.getWhite(), s, size) != start.getWhite() || Symmetry.transform(start.getBlack(), s, size) != start.getBlack()) {
+        continue;
+      }
+      AtaxxBitboardGame game = new AtaxxBitboardGame();
+      AtaxxBitboardGame image = new AtaxxBitboardGame();
+      for (int i = 0; i < 20 && !game.isOver(); i++) {
+        List<AtaxxMove> moves = game.getAvailableMoves();
+        int code = game.encodeMove(moves.get(random.nextInt(moves.size())));
+        game.makeMove(MoveCodes.findMove(game, code));
+        AtaxxMove move = MoveCodes.findMove(image, game.transformMoveCode(code, s));
+        assertNotNull(move);
+        image.makeMove(move);
+
+        assertEquals(Symmetry.transform(game.getWhite(), s, size), image.getWhite());
+        assertEquals(game.getSymmetricKey(s), image.getZobristKey());
+        assertEquals(Symmetry.key(game, game.getCanonicalSymmetry()), Symmetry.key(image, image.getCanonicalSymmetry()));
+      }
+    }
+  }
+
+  @Test
+  public final void testUndoRestoresPosition() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    long white = game.getWhite();
+    long black = game.getBlack();
+    long key = game.getZobristKey();
+
+    for (AtaxxMove m : game.getAvailableMoves()) {
+      game.makeMove(m);
+      game.undoLastMove();
+      assertEquals(white, game.getWhite());
+      assertEquals(black, game.getBlack());
+      assertEquals(key, game.getZobristKey());
+    }
+  }
+
+  @Test
+  public final void testGeneratedCodesMatchMoveList() throws Exception {
+    Random random = new Random(7);
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    AtaxxMoveGenerator generator = new AtaxxMoveGenerator();
+
+    for (int ply = 0; ply < 100 && !game.isOver(); ply++) {
+      List<AtaxxMove> moves = game.getAvailableMoves();
+      int count = generator.generate(game, ply);
+      assertEquals(moves.size(), count);
+
+      int[] codes = generator.getMoves(ply);
+      for (int i = 0; i < count; i++) {
+        assertEquals(codes[i], AtaxxMoveCode.encode(moves.get(i)));
+      }
+
+      game.makeMove(codes[random.nextInt(count)]);
+    }
+  }
+}
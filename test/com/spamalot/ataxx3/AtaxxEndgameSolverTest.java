@@ -0,0 +1,177 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchLimits;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.TranspositionTable;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JUnit Test for AtaxxEndgameSolver.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxEndgameSolverTest {
+  /** A window around every score. */
+  private static final int INFINITY = SolvedScore.score(64) + 1;
+
+  /** An endgame position with 11 empty squares. */
+  private static final String ENDGAME = "..WWW.B/B#W.W#B/..BWW.B/..BBWWW/BBBWWWW/B#B.W#W/BWWWW.B B";
+
+  /** A midgame position with 28 empty squares, far too many to solve. */
+  private static final String MIDGAME = "B....../B#B..#./BBB.BW./...BB../.W...../W#...#B/WW...BB B";
+
+  /**
+   * Play drops from the endgame position until few squares are empty.
+   * 
+   * @param empties
+   *          empty squares to leave
+   * @param seed
+   *          seed for choosing the drops
+   * @return the position
+   * @throws Exception
+   *           if the position can't be read.
+   */
+  private static AtaxxBitboardGame endgame(final int empties, final long seed) throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame(AtaxxGame.parsePosition(ENDGAME));
+    game.setEndgameEmpties(0);
+    Random random = new Random(seed);
+    while (Long.bitCount(game.getEmpty()) > empties && !game.isOver()) {
+      List<AtaxxMove> moves = game.getAvailableMoves();
+      AtaxxMove move = moves.get(random.nextInt(moves.size()));
+      for (AtaxxMove m : moves) {
+        if (m.getType() == AtaxxMove.Type.DROP && random.nextBoolean()) {
+          move = m;
+        }
+      }
+      game.makeMove(move);
+    }
+    return game;
+  }
+
+  /**
+   * Search every line to the end of the game or the solver's horizon, without
+   * pruning. Finished games get solved scores and lines cut at the horizon
+   * get a piece score.
+   * 
+   * @param game
+   *          the position
+   * @param depth
+   *          plies left before the horizon
+   * @return the score for the side to move
+   */
+  private static int score(final AtaxxBitboardGame game, final int depth) {
+    int margin = Long.bitCount(game.getOwn()) - Long.bitCount(game.getOpponent());
+    if (game.isOver()) {
+      return SolvedScore.score(margin);
+    }
+    if (depth == 0) {
+      return margin * SolvedScore.PIECE_SCORE;
+    }
+    int best = Integer.MIN_VALUE;
+    for (AtaxxMove m : game.getAvailableMoves()) {
+      game.makeMove(m);
+      best = Math.max(best, -score(game, depth - 1));
+      game.undoLastMove();
+    }
+    return best;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMatchesFullSearch() throws Exception {
+    for (long seed = 0; seed < 8; seed++) {
+      AtaxxBitboardGame game = endgame(3, seed);
+      if (game.isOver()) {
+        continue;
+      }
+      int horizon = Long.bitCount(game.getEmpty()) + AtaxxEndgameSolver.EXTRA_PLIES;
+      int expected = score(game, horizon);
+
+      AtaxxEndgameSolver solver = game.getSolver();
+      assertEquals(expected, solver.solve(game.getOwn(), game.getOpponent(), false, -INFINITY, INFINITY));
+
+      AtaxxMove best = game.solveBestMove();
+      game.makeMove(best);
+      assertEquals(expected, -score(game, horizon - 1));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testWindowBounds() throws Exception {
+    AtaxxBitboardGame game = endgame(4, 5);
+    AtaxxEndgameSolver solver = game.getSolver();
+    int exact = solver.solve(game.getOwn(), game.getOpponent(), false, -INFINITY, INFINITY);
+
+    assertTrue(solver.solve(game.getOwn(), game.getOpponent(), false, exact, exact + 1) <= exact);
+    assertTrue(solver.solve(game.getOwn(), game.getOpponent(), false, exact - 1, exact) >= exact);
+    assertEquals(exact, solver.solve(game.getOwn(), game.getOpponent(), false, exact - 1, exact + 1));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testCutLinesAreNotSolved() throws Exception {
+    AtaxxBitboardGame game = endgame(3, 0);
+    int horizon = Long.bitCount(game.getEmpty()) + AtaxxEndgameSolver.EXTRA_PLIES;
+    int expected = score(game, horizon);
+    assertTrue(Math.abs(expected) < SolvedScore.SOLVED_SCORE);
+
+    game.setEndgameEmpties(AtaxxEndgameSolver.DEFAULT_EMPTIES);
+    assertEquals(expected, game.solve(-INFINITY, INFINITY, null));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testFinishedGamesScoreAsSolved() throws Exception {
+    AtaxxGame wipeOut = AtaxxGame.parsePosition("WW...../.#...#./......./......./......./.#...#./....... B");
+    AtaxxBitboardGame bitboards = new AtaxxBitboardGame(wipeOut);
+    assertTrue(bitboards.isOver());
+    assertEquals(SolvedScore.score(2), wipeOut.evaluate(true));
+    assertEquals(SolvedScore.score(2), bitboards.evaluate(true));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMoveTimeCutsSolveOff() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame(AtaxxGame.parsePosition(MIDGAME));
+    game.setEndgameEmpties(64);
+    IterativeDeepening<AtaxxMove> search = game.getSearch(new TranspositionTable(1));
+
+    long start = System.nanoTime();
+    AtaxxMove move = search.search(SearchLimits.moveTime(100));
+    assertTrue(System.nanoTime() - start < 2000000000L);
+    assertTrue(game.getAvailableMoves().contains(move));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testSearchUsesSolver() throws Exception {
+    AtaxxBitboardGame game = endgame(3, 2);
+    int expected = Integer.MIN_VALUE;
+    for (AtaxxMove m : game.getAvailableMoves()) {
+      game.makeMove(m);
+      int horizon = Long.bitCount(game.getEmpty()) + AtaxxEndgameSolver.EXTRA_PLIES;
+      expected = Math.max(expected, -score(game, horizon));
+      game.undoLastMove();
+    }
+
+    game.setEndgameEmpties(AtaxxEndgameSolver.DEFAULT_EMPTIES);
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(2);
+    for (SearchAlgorithm algorithm : SearchAlgorithm.values()) {
+      IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(game, new TranspositionTable(1), algorithm);
+      search.search(limits);
+      assertEquals(expected, search.getScore());
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.spamalot.boardgame.GameException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+/**
+ * Stress test AtaxxGame instances running on many threads at once.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxEnginePoolTest {
+  /** Number of games to play. */
+  private static final int GAMES = 64;
+
+  /** Number of plies in each game. */
+  private static final int PLIES = 60;
+
+  /**
+   * Play a random game and record every move list seen along the way.
+   * 
+   * @param game
+   *          the game to play on
+   * @param seed
+   *          seed for choosing moves
+   * @return the record of move lists
+   */
+  static String playRandomGame(final AtaxxGame game, final long seed) {
+    Random random = new Random(seed);
+    StringBuilder builder = new StringBuilder();
+    for (int ply = 0; ply < PLIES; ply++) {
+      List<AtaxxMove> moves = game.getAvailableMoves();
+      builder.append(moves).append('\n');
+      game.makeMove(moves.get(random.nextInt(moves.size())));
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public final void testMoveListsUnderContention() throws Exception {
+    AtaxxGame start = new AtaxxGame();
+
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < GAMES; i++) {
+      expected.add(playRandomGame(start.copyGame(), i));
+    }
+
+    List<Future<String>> results = new ArrayList<>();
+    try (AtaxxEnginePool pool = new AtaxxEnginePool(8)) {
+      for (int i = 0; i < GAMES; i++) {
+        final long seed = i;
+        results.add(pool.submit(start, new AtaxxEnginePool.Task<String>() {
+          @Override
+          public String run(final AtaxxGame game) throws GameException {
+            return playRandomGame(game, seed);
+          }
+        }));
+      }
+
+      for (int i = 0; i < GAMES; i++) {
+        assertEquals(expected.get(i), results.get(i).get());
+      }
+    }
+  }
+}
@@ -1,7 +1,12 @@
 package com.spamalot.ataxx3;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.spamalot.boardgame.GameException;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -10,6 +15,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * @author gej
@@ -84,6 +90,73 @@ public class AtaxxGameTest {
     }
   }
 
+  /**
+   * Test that the incrementally kept evaluation and key survive make and undo
+   * and match a game built from scratch.
+   */
+  @Test
+  public final void testIncrementalStateAfterUndo() throws Exception {
+    AtaxxGame game = new AtaxxGame();
+    Random random = new Random(11);
+    for (int i = 0; i < 30; i++) {
+      List<AtaxxMove> moves = game.getAvailableMoves();
+      game.makeMove(moves.get(random.nextInt(moves.size())));
+    }
+
+    int evaluation = game.evaluate(false);
+    long key = game.getZobristKey();
+    assertEquals(game.copyGame().evaluate(false), evaluation);
+
+    for (AtaxxMove m : game.getAvailableMoves()) {
+      game.makeMove(m);
+      assertEquals(game.copyGame().evaluate(false), game.evaluate(false));
+      game.undoLastMove();
+      assertEquals(evaluation, game.evaluate(false));
+      assertEquals(key, game.getZobristKey());
+    }
+  }
+
+  /**
+   * Test that a copy taken after a pass remembers it, so a second pass ends
+   * the game and both passes can be undone.
+   */
+  @Test
+  public final void testCopyAfterPassEndsOnSecondPass() throws Exception {
+    AtaxxGame game = new AtaxxGame();
+    long key = game.getZobristKey();
+    game.makeMove(new AtaxxMove());
+
+    AtaxxGame copy = game.copyGame();
+    assertFalse(copy.isOver());
+    copy.makeMove(new AtaxxMove());
+    assertTrue(copy.isOver());
+
+    copy.undoLastMove();
+    copy.undoLastMove();
+    assertEquals(key, copy.getZobristKey());
+    assertFalse(game.isOver());
+  }
+
+  /**
+   * Test that only boards of the default size with # on the blocked squares
+   * are read.
+   */
+  @Test
+  public final void testParsePositionChecksBoard() throws Exception {
+    String start = "B.....W/.#...#./......./......./......./.#...#./W.....B B";
+    assertEquals(new AtaxxGame().getZobristKey(), AtaxxGame.parsePosition(start).getZobristKey());
+    String[] bad = { "B...W/.#.#./...../.#.#./W...B B", "B.......W/.#.....#./........./........./........./........./........./.#.....#./W.......B B",
+        "B.....W/.....#./......./......./......./.#...#./W.....B B", "B.....W/.#...#./...#.../......./......./.#...#./W.....B B" };
+    for (String text : bad) {
+      try {
+        AtaxxGame.parsePosition(text);
+        fail(text);
+      } catch (GameException e) {
+        assertNotNull(e.getMessage());
+      }
+    }
+  }
+
   // @Test
   // public final void testPickupPutPiece() {
   //
@@ -0,0 +1,167 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.MoveCodes;
+import com.spamalot.search.OpeningBook;
+import com.spamalot.search.OpeningBookBuilder;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchLimits;
+import com.spamalot.search.Symmetry;
+import com.spamalot.search.TranspositionTable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * JUnit Test for building and reading Ataxx opening books.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxOpeningBookTest {
+  /** Where the books go. */
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Build a small book from the start position.
+   * 
+   * @param margin
+   *          margin below the best score
+   * @return the book file
+   * @throws Exception
+   *           if the book can't be built
+   */
+  private Path build(final int margin) throws Exception {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(1);
+    OpeningBookBuilder<AtaxxMove> builder = new OpeningBookBuilder<>(new AtaxxBitboardGame(), new TranspositionTable(1), SearchAlgorithm.PVS);
+    builder.build(2, limits, margin);
+    Path file = this.folder.newFile("book.bin").toPath();
+    builder.write(file);
+    return file;
+  }
+
+  /**
+   * @param game
+   *          the game
+   * @return the book key of its position
+   */
+  private static long bookKey(final AtaxxBitboardGame game) {
+    return Symmetry.key(game, Symmetry.canonical(game));
+  }
+
+  @Test
+  public final void testBookIsSorted() throws Exception {
+    try (OpeningBook book = new OpeningBook(build(1000))) {
+      assertTrue(book.size() > 0);
+      for (int i = 1; i < book.size(); i++) {
+        assertTrue(book.getKey(i - 1) < book.getKey(i)
+            || book.getKey(i - 1) == book.getKey(i) && book.getWeight(i - 1) >= book.getWeight(i));
+      }
+    }
+  }
+
+  @Test
+  public final void testLookup() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    try (OpeningBook book = new OpeningBook(build(1000))) {
+      long key = bookKey(game);
+      int first = book.find(key);
+      assertTrue(first >= 0);
+      assertTrue(first == 0 || book.getKey(first - 1) != key);
+
+      int count = 0;
+      for (int i = first; i < book.size() && book.getKey(i) == key; i++) {
+        int code = Symmetry.moveCode(game, book.getMove(i), Symmetry.inverse(game.getCanonicalSymmetry()));
+        assertNotNull(MoveCodes.findMove(game, code));
+        count++;
+      }
+      assertEquals(game.getAvailableMoves().size(), count);
+
+      game.makeMove(book.chooseMove(game, new Random(1)));
+      assertTrue(book.find(bookKey(game)) >= 0);
+      game.makeMove(game.getAvailableMoves().get(0));
+      assertEquals(-1, book.find(bookKey(game)));
+      assertNull(book.chooseMove(game, new Random(1)));
+    }
+  }
+
+  @Test
+  public final void testMarginKeepsBestMoves() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    try (OpeningBook book = new OpeningBook(build(0))) {
+      long key = bookKey(game);
+      int first = book.find(key);
+      for (int i = first; i < book.size() && book.getKey(i) == key; i++) {
+        assertEquals(1, book.getWeight(i));
+        assertEquals(book.getScore(first), book.getScore(i));
+      }
+    }
+  }
+
+  @Test
+  public final void testSearchPlaysFromBook() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(2);
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(game, new TranspositionTable(1), SearchAlgorithm.PVS);
+    try (OpeningBook book = new OpeningBook(build(1000))) {
+      search.setOpeningBook(book, new Random(2));
+      AtaxxMove move = search.search(limits);
+      assertTrue(game.getAvailableMoves().contains(move));
+      assertEquals(0, search.getDepth());
+      assertEquals(0, search.getNodes());
+
+      game.makeMove(move);
+      game.makeMove(game.getAvailableMoves().get(0));
+      search.search(limits);
+      assertEquals(2, search.getDepth());
+    }
+  }
+
+  @Test
+  public final void testSymmetricPositionsShareRecords() throws Exception {
+    AtaxxBitboardGame game = new AtaxxBitboardGame();
+    Set<Long> keys = new HashSet<>();
+    for (AtaxxMove move : game.getAvailableMoves()) {
+      game.makeMove(move);
+      keys.add(bookKey(game));
+      game.undoLastMove();
+    }
+    assertTrue(keys.size() < game.getAvailableMoves().size());
+
+    try (OpeningBook book = new OpeningBook(build(1000))) {
+      int positions = 0;
+      for (int i = 0; i < book.size(); i++) {
+        if (i == 0 || book.getKey(i) != book.getKey(i - 1)) {
+          positions++;
+        }
+      }
+      assertEquals(1 + keys.size(), positions);
+      for (long key : keys) {
+        assertTrue(book.find(key) >= 0);
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public final void testRejectsOtherFiles() throws Exception {
+    Path file = this.folder.newFile("other.bin").toPath();
+    Files.write(file, new byte[64]);
+    new OpeningBook(file).close();
+  }
+}
@@ -0,0 +1,65 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.Perft;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test Ataxx move generation against known perft counts.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxPerftTest {
+  /** Counts from the start position, by depth. */
+  private static final long[] START_COUNTS = { 1, 14, 196, 4500, 97796 };
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testAtaxxGameCounts() throws Exception {
+    for (int depth = 1; depth < START_COUNTS.length; depth++) {
+      assertEquals(START_COUNTS[depth], new Perft<AtaxxMove>(new AtaxxGame()).count(depth));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testBitboardCounts() throws Exception {
+    for (int depth = 1; depth < START_COUNTS.length; depth++) {
+      AtaxxMoveGenerator generator = new AtaxxMoveGenerator(depth + 1);
+      assertEquals(START_COUNTS[depth], AtaxxPerft.count(new AtaxxBitboardGame(), generator, depth, 0));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testParsedPosition() throws Exception {
+    AtaxxGame start = new AtaxxGame();
+    String toMove = start.getColorToMove() == PieceColor.WHITE ? "W" : "B";
+    AtaxxGame game = AtaxxGame.parsePosition("B.....W/.#...#./......./......./......./.#...#./W.....B " + toMove);
+    assertEquals(start.getZobristKey(), game.getZobristKey());
+    assertEquals(START_COUNTS[3], new Perft<AtaxxMove>(game).count(3));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testDepthZeroCountsThePosition() throws Exception {
+    assertEquals(1, new Perft<AtaxxMove>(new AtaxxGame()).count(0));
+    assertEquals(1, AtaxxPerft.count(new AtaxxBitboardGame(), new AtaxxMoveGenerator(1), 0, 0));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test(expected = IllegalArgumentException.class)
+  public final void testRejectsNegativeDepth() throws Exception {
+    new Perft<AtaxxMove>(new AtaxxGame()).count(-1);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test(expected = IllegalArgumentException.class)
+  public final void testBitboardRejectsNegativeDepth() throws Exception {
+    AtaxxPerft.count(new AtaxxBitboardGame(), new AtaxxMoveGenerator(1), -1, 0);
+  }
+}
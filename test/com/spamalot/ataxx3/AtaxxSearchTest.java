@@ -0,0 +1,380 @@
+package com.spamalot.ataxx3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.AlphaBetaSearch;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.LazySmpSearch;
+import com.spamalot.search.MatchResult;
+import com.spamalot.search.Ponderer;
+import com.spamalot.search.PvsSearch;
+import com.spamalot.search.SearchAlgorithm;
+import com.spamalot.search.SearchCounters;
+import com.spamalot.search.SearchLimits;
+import com.spamalot.search.SearchMetrics;
+import com.spamalot.search.Tournament;
+import com.spamalot.search.TranspositionTable;
+import com.spamalot.search.YbwcSearch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JUnit Test for the searchers on Ataxx positions.
+ * 
+ * @author gej
+ *
+ */
+public class AtaxxSearchTest {
+  /** Depth of the test searches. */
+  private static final int DEPTH = 3;
+
+  /** A midgame position. */
+  private AtaxxBitboardGame game;
+
+  @Before
+  public final void setUp() throws Exception {
+    this.game = new AtaxxBitboardGame();
+    Random random = new Random(3);
+    for (int i = 0; i < 12; i++) {
+      List<AtaxxMove> moves = this.game.getAvailableMoves();
+      this.game.makeMove(moves.get(random.nextInt(moves.size())));
+    }
+  }
+
+  /**
+   * Plain NegaMax without pruning, to check the other searchers against.
+   * 
+   * @param g
+   *          the game
+   * @param depth
+   *          depth left
+   * @return the score for the side to move
+   */
+  static int negaMax(final AtaxxBitboardGame g, final int depth) {
+    boolean over = g.isOver();
+    if (over || depth == 0) {
+      int eval = g.evaluate(over);
+      return g.getColorToMove() == PieceColor.WHITE ? eval : -eval;
+    }
+    int best = -AlphaBetaSearch.INFINITY;
+    for (AtaxxMove m : g.getAvailableMoves()) {
+      g.makeMove(m);
+      best = Math.max(best, -negaMax(g, depth - 1));
+      g.undoLastMove();
+    }
+    return best;
+  }
+
+  @Test
+  public final void testAlphaBetaMatchesNegaMax() {
+    int expected = negaMax(this.game, DEPTH);
+
+    AlphaBetaSearch<AtaxxMove> search = new AlphaBetaSearch<>(this.game, new TranspositionTable(4));
+    AtaxxMove best = search.search(DEPTH);
+
+    assertEquals(expected, search.getScore());
+    this.game.makeMove(best);
+    assertEquals(expected, -negaMax(this.game, DEPTH - 1));
+  }
+
+  @Test
+  public final void testPvsMatchesNegaMax() {
+    PvsSearch<AtaxxMove> search = new PvsSearch<>(this.game, new TranspositionTable(4));
+    for (int depth = 1; depth <= DEPTH; depth++) {
+      int expected = negaMax(this.game, depth);
+      AtaxxMove best = search.search(depth);
+
+      assertEquals(expected, search.getScore());
+      this.game.makeMove(best);
+      assertEquals(expected, -negaMax(this.game, depth - 1));
+      this.game.undoLastMove();
+    }
+  }
+
+  @Test
+  public final void testPvsPrincipalVariation() {
+    PvsSearch<AtaxxMove> search = new PvsSearch<>(this.game, new TranspositionTable(4));
+    AtaxxMove best = search.search(DEPTH);
+    List<AtaxxMove> pv = search.getPrincipalVariation();
+    PieceColor rootColor = this.game.getColorToMove();
+
+    assertEquals(DEPTH, pv.size());
+    assertEquals(best, pv.get(0));
+    for (AtaxxMove move : pv) {
+      assertTrue(this.game.getAvailableMoves().contains(move));
+      this.game.makeMove(move);
+    }
+    int eval = this.game.evaluate(this.game.isOver());
+    assertEquals(search.getScore(), rootColor == PieceColor.WHITE ? eval : -eval);
+  }
+
+  @Test
+  public final void testSearchAlgorithmPerGame() {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+    int expected = negaMax(this.game, DEPTH);
+
+    for (SearchAlgorithm algorithm : SearchAlgorithm.values()) {
+      this.game.setSearchAlgorithm(algorithm);
+      IterativeDeepening<AtaxxMove> search = this.game.getSearch(new TranspositionTable(4));
+      assertNotNull(search.search(limits));
+      assertEquals(expected, search.getScore());
+      assertEquals(DEPTH, search.getPrincipalVariation().size());
+    }
+  }
+
+  @Test
+  public final void testCanonicalKeysMatchNegaMax() {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+    int expected = negaMax(this.game, DEPTH);
+
+    for (SearchAlgorithm algorithm : SearchAlgorithm.values()) {
+      IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4), algorithm);
+      search.setCanonicalKeys(true);
+      assertNotNull(search.search(limits));
+      assertEquals(expected, search.getScore());
+      assertEquals(DEPTH, search.getPrincipalVariation().size());
+    }
+  }
+
+  @Test
+  public final void testPonderHit() throws Exception {
+    List<AtaxxMove> moves = this.game.getAvailableMoves();
+    AtaxxMove reply = moves.get(moves.size() / 2);
+
+    try (Ponderer<AtaxxMove> ponderer = this.game.getPonderer(new TranspositionTable(4))) {
+      ponderer.start(reply, DEPTH);
+      assertTrue(ponderer.isPondering());
+      this.game.makeMove(reply);
+      AtaxxMove best = ponderer.finish(reply, 60000);
+
+      assertFalse(ponderer.isPondering());
+      assertTrue(this.game.getAvailableMoves().contains(best));
+      assertEquals(DEPTH, ponderer.getDepth());
+      assertEquals(negaMax(this.game, DEPTH), ponderer.getScore());
+    }
+  }
+
+  @Test
+  public final void testPonderMiss() throws Exception {
+    List<AtaxxMove> moves = this.game.getAvailableMoves();
+    long key = this.game.getZobristKey();
+
+    try (Ponderer<AtaxxMove> ponderer = this.game.getPonderer(new TranspositionTable(4))) {
+      ponderer.start(moves.get(0), 64);
+      assertEquals(key, this.game.getZobristKey());
+      this.game.makeMove(moves.get(1));
+      assertNull(ponderer.finish(moves.get(1), 60000));
+      assertFalse(ponderer.isPondering());
+    }
+  }
+
+  @Test
+  public final void testMetrics() throws Exception {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4), SearchAlgorithm.PVS);
+
+    try (SearchMetrics metrics = new SearchMetrics()) {
+      metrics.setTiming(true);
+      metrics.register("test");
+      search.setMetrics(metrics);
+      search.search(limits);
+
+      SearchCounters counters = search.getCounters();
+      assertEquals(DEPTH, metrics.getDepth());
+      assertEquals(search.getNodes(), metrics.getNodes());
+      assertEquals(DEPTH, metrics.getIterationMicros().length);
+      assertTrue(counters.getBetaCutoffs() > 0);
+      assertTrue(counters.getFirstMoveCutoffs() <= counters.getBetaCutoffs());
+      assertTrue(counters.getTableHits() > 0);
+      assertTrue(counters.getTableHits() <= counters.getTableProbes());
+      assertTrue(counters.getEvaluationNanos() > 0);
+      assertTrue(metrics.toLogLine().contains(" depth=" + DEPTH + " nodes=" + search.getNodes() + " "));
+
+      Object depth = ManagementFactory.getPlatformMBeanServer().getAttribute(
+          new ObjectName("com.spamalot.search:type=SearchMetrics,name=" + ObjectName.quote("test")), "Depth");
+      assertEquals(DEPTH, depth);
+    }
+  }
+
+  @Test
+  public final void testTournament() throws Exception {
+    Tournament<AtaxxMove> tournament = new Tournament<>(new AtaxxBitboardGame(), Tournament.Player.parse("PVS:2", 1), Tournament.Player.parse("ALPHA_BETA:1", 1));
+    tournament.setMaxPlies(40);
+    tournament.setSeed(7);
+
+    tournament.setThreads(1);
+    MatchResult serial = tournament.play(8);
+    tournament.setThreads(3);
+    MatchResult parallel = tournament.play(8);
+
+    assertEquals(8, serial.getGames());
+    assertEquals(serial.getWins(), parallel.getWins());
+    assertEquals(serial.getDraws(), parallel.getDraws());
+    assertEquals(serial.getLosses(), parallel.getLosses());
+    assertTrue(parallel.getGamesPerSecond() > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testTournamentNeedsGames() throws Exception {
+    new Tournament<>(this.game, Tournament.Player.parse("PVS:2", 1), Tournament.Player.parse("PVS:2", 1)).play(0);
+  }
+
+  @Test
+  public final void testLazySmpReachesDepth() throws Exception {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+
+    try (LazySmpSearch<AtaxxMove> search = new LazySmpSearch<>(this.game, new TranspositionTable(4), SearchAlgorithm.PVS, 4)) {
+      for (int i = 0; i < 3; i++) {
+        AtaxxMove best = search.search(limits);
+        assertTrue(this.game.getAvailableMoves().contains(best));
+        assertEquals(DEPTH, search.getDepth());
+        assertEquals(DEPTH, search.getPrincipalVariation().size());
+        this.game.makeMove(best);
+      }
+    }
+  }
+
+  @Test
+  public final void testYbwcIsDeterministic() {
+    int expected = negaMax(this.game, DEPTH);
+
+    AtaxxMove move = null;
+    long nodes = 0;
+    for (int threads = 1; threads <= 4; threads++) {
+      try (YbwcSearch<AtaxxMove> search = new YbwcSearch<>(this.game, threads)) {
+        AtaxxMove best = search.search(DEPTH);
+        assertEquals(expected, search.getScore());
+        if (move == null) {
+          move = best;
+          nodes = search.getNodes();
+        }
+        assertEquals(move, best);
+        assertEquals(nodes, search.getNodes());
+        assertTrue(search.getCounters().getBetaCutoffs() > 0);
+      }
+    }
+  }
+
+  @Test
+  public final void testYbwcAtDepthOne() {
+    try (YbwcSearch<AtaxxMove> search = new YbwcSearch<>(this.game, 2)) {
+      AtaxxMove best = search.search(1);
+      assertTrue(this.game.getAvailableMoves().contains(best));
+      assertEquals(negaMax(this.game, 1), search.getScore());
+    }
+  }
+
+  @Test
+  public final void testTableCutsNodes() {
+    AlphaBetaSearch<AtaxxMove> search = new AlphaBetaSearch<>(this.game, new TranspositionTable(4));
+    search.search(DEPTH);
+    long first = search.getNodes();
+    search.search(DEPTH);
+    assertTrue(search.getNodes() < first);
+  }
+
+  @Test
+  public final void testIterativeDeepeningToDepth() {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4));
+
+    assertNotNull(search.search(limits));
+    assertEquals(DEPTH, search.getDepth());
+    assertEquals(negaMax(this.game, DEPTH), search.getScore());
+  }
+
+  @Test
+  public final void testIterativeDeepeningNodeLimit() {
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxNodes(20000);
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4));
+
+    assertNotNull(search.search(limits));
+    assertTrue(search.getNodes() <= 20000);
+  }
+
+  @Test
+  public final void testIterativeDeepeningStopsInTime() {
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4));
+
+    long start = System.nanoTime();
+    assertNotNull(search.search(SearchLimits.moveTime(200)));
+    assertTrue(System.nanoTime() - start < 2000000000L);
+    assertTrue(search.getDepth() >= 1);
+  }
+
+  @Test
+  public final void testStopFromAnotherThread() throws Exception {
+    final IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4));
+    Thread stopper = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+        search.stop();
+      }
+    });
+
+    long start = System.nanoTime();
+    stopper.start();
+    assertNotNull(search.search(new SearchLimits()));
+    stopper.join();
+    assertTrue(System.nanoTime() - start < 2000000000L);
+  }
+
+  @Test
+  public final void testNewSearchForgetsEarlierStop() {
+    IterativeDeepening<AtaxxMove> search = new IterativeDeepening<>(this.game, new TranspositionTable(4));
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(DEPTH);
+
+    search.stop();
+    assertNotNull(search.search(limits));
+    assertEquals(DEPTH, search.getDepth());
+  }
+
+  @Test
+  public final void testFinishRightAfterStart() throws Exception {
+    AtaxxMove reply = this.game.getAvailableMoves().get(0);
+    try (Ponderer<AtaxxMove> ponderer = this.game.getPonderer(new TranspositionTable(4))) {
+      for (int i = 0; i < 20; i++) {
+        ponderer.start(reply, 64);
+        this.game.makeMove(reply);
+        AtaxxMove best = ponderer.finish(reply, 0);
+        assertTrue(best == null ? ponderer.getDepth() == 0 : ponderer.getDepth() > 0 && this.game.getAvailableMoves().contains(best));
+        this.game.undoLastMove();
+      }
+    }
+  }
+
+  @Test
+  public final void testCancelBeforePonderingStarts() throws Exception {
+    try (Ponderer<AtaxxMove> ponderer = this.game.getPonderer(new TranspositionTable(4))) {
+      for (int i = 0; i < 20; i++) {
+        ponderer.start(this.game.getAvailableMoves().get(0), 64);
+        ponderer.cancel();
+        assertFalse(ponderer.isPondering());
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.spamalot.reversi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.Piece;
+import com.spamalot.boardgame.PieceColor;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * JUnit Test for ReversiBitboardGame and its move generation.
+ * 
+ * @author gej
+ *
+ */
+public class ReversiBitboardGameTest {
+
+  /**
+   * Describe a list of moves so the two representations can be compared.
+   * 
+   * @param moves
+   *          the moves
+   * @return a sorted set of descriptions
+   */
+  private static Set<String> describe(final List<ReversiMove> moves) {
+    Set<String> ret = new TreeSet<>();
+    for (ReversiMove m : moves) {
+      ret.add(m.getType() == Move.Type.PASS ? "P" : m.getToCoordinate().toString());
+    }
+    return ret;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMovesMatchFlips() {
+    Random random = new Random(9);
+    for (int i = 0; i < 2000; i++) {
+      long own = random.nextLong() & random.nextLong();
+      long opp = random.nextLong() & ~own;
+      long expected = 0;
+      for (int sq = 0; sq < 64; sq++) {
+        if (((own | opp) & (1L << sq)) == 0 && ReversiBitboard.flips(own, opp, sq) != 0) {
+          expected |= 1L << sq;
+        }
+      }
+      assertEquals(expected, ReversiBitboard.moves(own, opp));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMatchesReversiGame() throws Exception {
+    Random random = new Random(21);
+    for (int g = 0; g < 20; g++) {
+      ReversiGame game = new ReversiGame();
+      ReversiBitboardGame bitboards = new ReversiBitboardGame(game);
+      while (!bitboards.isOver()) {
+        List<ReversiMove> moves = game.getAvailableMoves();
+        assertEquals(describe(moves), describe(bitboards.getAvailableMoves()));
+
+        ReversiMove move = moves.get(random.nextInt(moves.size()));
+        game.makeMove(move);
+        bitboards.makeMove(move);
+        assertEquals(game.getDiscs(PieceColor.WHITE), bitboards.getWhite());
+        assertEquals(game.getDiscs(PieceColor.BLACK), bitboards.getBlack());
+        assertEquals(game.getColorToMove(), bitboards.getColorToMove());
+        assertEquals(game.getZobristKey(), bitboards.getZobristKey());
+        assertEquals(game.evaluate(false), bitboards.evaluate(false));
+        assertEquals(bitboards.isOver(), game.isOver());
+        assertEquals(Long.bitCount(bitboards.getWhite()), game.getPieceCount().getWhiteCount());
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testBlockedPositionIsOver() throws Exception {
+    ReversiGame game = ReversiGame.parsePosition("W......./......../......../......../......../......../......../.......B W");
+
+    assertFalse(game.hasAnyMove(PieceColor.WHITE));
+    assertFalse(game.hasAnyMove(PieceColor.BLACK));
+    assertTrue(game.isOver());
+    assertEquals(62, game.getPieceCount().getEmptyCount());
+    assertEquals(1, game.getAvailableMoves().size());
+    assertEquals(Move.Type.PASS, game.getAvailableMoves().get(0).getType());
+
+    game = ReversiGame.parsePosition("WB....../......../......../......../......../......../......../.......B W");
+    assertTrue(game.hasAnyMove(PieceColor.WHITE));
+    assertFalse(game.hasAnyMove(PieceColor.BLACK));
+    assertFalse(game.isOver());
+  }
+
+  /**
+   * Read the discs of a color from the Squares of a ReversiGame.
+   * 
+   * @param game
+   *          the game
+   * @param color
+   *          the color
+   * @return the mask of square indexes
+   */
+  private static long boardDiscs(final ReversiGame game, final PieceColor color) {
+    long ret = 0;
+    for (int sq = 0; sq < 64; sq++) {
+      Piece p = game.getBoard().getSquareAt(sq % 8, sq / 8).getPiece();
+      if (p != null && p.getColor() == color) {
+        ret |= 1L << sq;
+      }
+    }
+    return ret;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testReversiGameKeepsBitboardsInStep() throws Exception {
+    Random random = new Random(8);
+    ReversiGame game = new ReversiGame();
+    for (int i = 0; i < 200; i++) {
+      if (game.isOver() || i % 5 == 4) {
+        game.undoLastMove();
+      } else {
+        List<ReversiMove> moves = game.getAvailableMoves();
+        game.makeMove(moves.get(random.nextInt(moves.size())));
+      }
+      assertEquals(boardDiscs(game, PieceColor.WHITE), game.getDiscs(PieceColor.WHITE));
+      assertEquals(boardDiscs(game, PieceColor.BLACK), game.getDiscs(PieceColor.BLACK));
+      assertEquals(game.computeZobristKey(), game.getZobristKey());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testReversiGameReusesPieces() throws Exception {
+    ReversiGame game = new ReversiGame();
+    ReversiMove move = game.getAvailableMoves().get(0);
+    game.makeMove(move);
+    Piece placed = game.getBoard().getSquareAt(move.getToCoordinate()).getPiece();
+    game.undoLastMove();
+    game.makeMove(move);
+    assertSame(placed, game.getBoard().getSquareAt(move.getToCoordinate()).getPiece());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testUndoRestoresPosition() throws Exception {
+    Random random = new Random(4);
+    ReversiBitboardGame game = new ReversiBitboardGame();
+    long[] white = new long[30];
+    long[] black = new long[30];
+    long[] keys = new long[30];
+    for (int i = 0; i < 30; i++) {
+      white[i] = game.getWhite();
+      black[i] = game.getBlack();
+      keys[i] = game.getZobristKey();
+      List<ReversiMove> moves = game.getAvailableMoves();
+      game.makeMove(moves.get(random.nextInt(moves.size())));
+    }
+    for (int i = 29; i >= 0; i--) {
+      game.undoLastMove();
+      assertEquals(white[i], game.getWhite());
+      assertEquals(black[i], game.getBlack());
+      assertEquals(keys[i], game.getZobristKey());
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.spamalot.reversi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.boardgame.Move;
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.IterativeDeepening;
+import com.spamalot.search.SearchLimits;
+import com.spamalot.search.SolvedScore;
+import com.spamalot.search.TranspositionTable;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JUnit Test for ReversiEndgameSolver and the bitboard functions it uses.
+ * 
+ * @author gej
+ *
+ */
+public class ReversiEndgameSolverTest {
+  /** An endgame position with 16 empty squares. */
+  private static final String ENDGAME = "BBBBW.W./BBBWBWW./BBWWWBWW/BWWWWBW./.WBBBBW./BWB.BBWW/.WB..BB./.WWW.... B";
+
+  /** A midgame position with 40 empty squares, far too many to solve. */
+  private static final String MIDGAME = "......W./.....W../..BBWWW./..WWBW../BBWBB.W./..WWBB../..W.B.../.W...... B";
+
+  /**
+   * Play random moves from the endgame position until few squares are empty.
+   * 
+   * @param empties
+   *          empty squares to leave
+   * @param seed
+   *          seed for choosing the moves
+   * @return the position
+   * @throws Exception
+   *           if the position can't be read.
+   */
+  private static ReversiGame endgame(final int empties, final long seed) throws Exception {
+    ReversiGame game = ReversiGame.parsePosition(ENDGAME);
+    game.setEndgameEmpties(0);
+    Random random = new Random(seed);
+    int passes = 0;
+    while (passes < 2 && 64 - Long.bitCount(game.getDiscs(PieceColor.WHITE) | game.getDiscs(PieceColor.BLACK)) > empties) {
+      List<ReversiMove> moves = game.getAvailableMoves();
+      ReversiMove move = moves.get(random.nextInt(moves.size()));
+      passes = move.getType() == Move.Type.PASS ? passes + 1 : 0;
+      game.makeMove(move);
+    }
+    return game;
+  }
+
+  /**
+   * Search every line to the end of the game without pruning.
+   * 
+   * @param own
+   *          discs of the side to move
+   * @param opp
+   *          discs of the opponent
+   * @return the margin for the side to move
+   */
+  private static int margin(final long own, final long opp) {
+    long moves = ReversiBitboard.moves(own, opp);
+    if (moves == 0) {
+      if (ReversiBitboard.moves(opp, own) == 0) {
+        return ReversiEndgameSolver.finalMargin(own, opp);
+      }
+      return -margin(opp, own);
+    }
+    int best = Integer.MIN_VALUE;
+    while (moves != 0) {
+      int sq = Long.numberOfTrailingZeros(moves);
+      moves &= moves - 1;
+      long f = ReversiBitboard.flips(own, opp, sq);
+      best = Math.max(best, -margin(opp & ~f, own | f | (1L << sq)));
+    }
+    return best;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testBitboardMatchesGame() throws Exception {
+    Random random = new Random(5);
+    for (int g = 0; g < 10; g++) {
+      ReversiGame game = new ReversiGame();
+      for (int ply = 0; ply < 60; ply++) {
+        PieceColor toMove = game.getColorToMove();
+        long own = game.getDiscs(toMove);
+        long opp = game.getDiscs(toMove.getOpposite());
+
+        List<ReversiMove> moves = game.getAvailableMoves();
+        long expected = 0;
+        for (ReversiMove m : moves) {
+          if (m.getType() != Move.Type.PASS) {
+            expected |= 1L << ReversiGame.squareIndex(m.getToCoordinate());
+          }
+        }
+        assertEquals(expected, ReversiBitboard.moves(own, opp));
+        assertEquals(expected != 0, ReversiBitboard.hasMove(own, opp));
+
+        ReversiMove move = moves.get(random.nextInt(moves.size()));
+        game.makeMove(move);
+        if (move.getType() != Move.Type.PASS) {
+          int sq = ReversiGame.squareIndex(move.getToCoordinate());
+          assertEquals(ReversiBitboard.flips(own, opp, sq), opp & ~game.getDiscs(toMove.getOpposite()));
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMatchesFullSearch() throws Exception {
+    ReversiEndgameSolver solver = new ReversiEndgameSolver();
+    for (long seed = 0; seed < 6; seed++) {
+      ReversiGame game = endgame(9, seed);
+      long own = game.getDiscs(game.getColorToMove());
+      long opp = game.getDiscs(game.getColorToMove().getOpposite());
+      int expected = margin(own, opp);
+
+      assertEquals(expected, solver.solve(own, opp, -65, 65));
+      assertTrue(solver.solve(own, opp, expected, expected + 1) <= expected);
+      assertTrue(solver.solve(own, opp, expected - 1, expected) >= expected);
+
+      ReversiMove best = game.solveBestMove();
+      game.makeMove(best);
+      PieceColor toMove = game.getColorToMove();
+      assertEquals(expected, -margin(game.getDiscs(toMove), game.getDiscs(toMove.getOpposite())));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testStableDiscsNeverFlip() throws Exception {
+    Random random = new Random(9);
+    for (long seed = 0; seed < 20; seed++) {
+      ReversiGame game = endgame(12, seed);
+      long white = ReversiEndgameSolver.stable(game.getDiscs(PieceColor.WHITE), game.getDiscs(PieceColor.WHITE) | game.getDiscs(PieceColor.BLACK));
+      long black = ReversiEndgameSolver.stable(game.getDiscs(PieceColor.BLACK), game.getDiscs(PieceColor.WHITE) | game.getDiscs(PieceColor.BLACK));
+
+      int passes = 0;
+      while (passes < 2) {
+        List<ReversiMove> moves = game.getAvailableMoves();
+        ReversiMove move = moves.get(random.nextInt(moves.size()));
+        passes = move.getType() == Move.Type.PASS ? passes + 1 : 0;
+        game.makeMove(move);
+        assertEquals(white, game.getDiscs(PieceColor.WHITE) & white);
+        assertEquals(black, game.getDiscs(PieceColor.BLACK) & black);
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testCopyKeepsSolverSettings() throws Exception {
+    ReversiGame game = endgame(10, 1);
+    assertFalse(game.isSolvable());
+    assertFalse(game.copyGame().isSolvable());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMoveTimeCutsSolveOff() throws Exception {
+    ReversiGame game = ReversiGame.parsePosition(MIDGAME);
+    game.setEndgameEmpties(64);
+    IterativeDeepening<ReversiMove> search = game.getSearch(new TranspositionTable(1));
+
+    long start = System.nanoTime();
+    ReversiMove move = search.search(SearchLimits.moveTime(100));
+    assertTrue(System.nanoTime() - start < 2000000000L);
+    assertTrue(game.getAvailableMoves().contains(move));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testNodeLimitCutsSolveOff() throws Exception {
+    ReversiGame game = ReversiGame.parsePosition(MIDGAME);
+    game.setEndgameEmpties(64);
+    IterativeDeepening<ReversiMove> search = game.getSearch(new TranspositionTable(1));
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxNodes(100000);
+
+    assertTrue(game.getAvailableMoves().contains(search.search(limits)));
+    assertTrue(search.getNodes() < 200000);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testFinishedGamesScoreAsSolved() throws Exception {
+    ReversiGame wipeOut = ReversiGame.parsePosition("WWW...../......../......../......../......../......../......../........ B");
+    assertTrue(wipeOut.isOver());
+    int score = SolvedScore.score(ReversiEndgameSolver.finalMargin(wipeOut.getDiscs(PieceColor.WHITE), 0));
+    assertEquals(score, wipeOut.evaluate(true));
+    assertEquals(score, new ReversiBitboardGame(wipeOut).evaluate(true));
+
+    ReversiGame corners = ReversiGame.parsePosition("W......W/......../......../...BW.../...WB.../......../......../W......W B");
+    assertTrue(wipeOut.evaluate(true) > corners.evaluate(false));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testSearchUsesSolver() throws Exception {
+    ReversiGame game = endgame(10, 1);
+    int expected = game.getSolver().solve(game.getDiscs(game.getColorToMove()), game.getDiscs(game.getColorToMove().getOpposite()), -65, 65);
+
+    game.setEndgameEmpties(ReversiEndgameSolver.DEFAULT_EMPTIES);
+    SearchLimits limits = new SearchLimits();
+    limits.setMaxDepth(2);
+    IterativeDeepening<ReversiMove> search = game.getSearch(new TranspositionTable(1));
+    search.search(limits);
+    assertEquals(SolvedScore.score(expected), search.getScore());
+  }
+}
@@ -0,0 +1,176 @@
+package com.spamalot.reversi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.spamalot.boardgame.PieceColor;
+import com.spamalot.search.Symmetry;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JUnit Test for the Reversi pattern evaluation.
+ * 
+ * @author gej
+ *
+ */
+public class ReversiPatternsTest {
+  /** White discs of the standard starting position. */
+  private static final long START_WHITE = 0x0000001008000000L;
+
+  /** Black discs of the standard starting position. */
+  private static final long START_BLACK = 0x0000000810000000L;
+
+  /**
+   * Play random moves from the start, to the end of the game or a number of
+   * plies.
+   * 
+   * @param random
+   *          source of the moves
+   * @param plies
+   *          most moves to play
+   * @return white and black discs
+   */
+  private static long[] randomPosition(final Random random, final int plies) {
+    long own = START_BLACK;
+    long opp = START_WHITE;
+    boolean blackToMove = true;
+    for (int i = 0; i < plies; i++) {
+      long moves = ReversiBitboard.moves(own, opp);
+      if (moves == 0 && ReversiBitboard.moves(opp, own) == 0) {
+        break;
+      }
+      if (moves != 0) {
+        int sq = pick(moves, random);
+        long flipped = ReversiBitboard.flips(own, opp, sq);
+        own |= flipped | 1L << sq;
+        opp &= ~flipped;
+      }
+      long t = own;
+      own = opp;
+      opp = t;
+      blackToMove = !blackToMove;
+    }
+    return blackToMove ? new long[] { opp, own } : new long[] { own, opp };
+  }
+
+  /**
+   * @param moves
+   *          mask of moves, not 0
+   * @param random
+   *          source of the choice
+   * @return one of the squares
+   */
+  private static int pick(final long moves, final Random random) {
+    long m = moves;
+    for (int n = random.nextInt(Long.bitCount(moves)); n > 0; n--) {
+      m &= m - 1;
+    }
+    return Long.numberOfTrailingZeros(m);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testIncrementalUpdatesMatchFullRead() {
+    Random random = new Random(23);
+    long white = START_WHITE;
+    long black = START_BLACK;
+    PieceColor color = PieceColor.BLACK;
+    ReversiPatterns patterns = new ReversiPatterns(white, black);
+    assertEquals(34, patterns.getIndexes().length);
+
+    for (int i = 0; i < 60; i++) {
+      long own = color == PieceColor.WHITE ? white : black;
+      long opp = color == PieceColor.WHITE ? black : white;
+      long moves = ReversiBitboard.moves(own, opp);
+      if (moves != 0) {
+        int sq = pick(moves, random);
+        long flipped = ReversiBitboard.flips(own, opp, sq);
+        patterns.place(sq, color);
+        patterns.flip(flipped, color);
+        white ^= flipped;
+        black ^= flipped;
+        if (color == PieceColor.WHITE) {
+          white |= 1L << sq;
+        } else {
+          black |= 1L << sq;
+        }
+        assertArrayEquals(new ReversiPatterns(white, black).getIndexes(), patterns.getIndexes());
+
+        patterns.flip(flipped, color.getOpposite());
+        patterns.remove(sq, color);
+        long placed = 1L << sq;
+        assertArrayEquals(new ReversiPatterns((white ^ flipped) & ~placed, (black ^ flipped) & ~placed).getIndexes(), patterns.getIndexes());
+        patterns.place(sq, color);
+        patterns.flip(flipped, color);
+      }
+      color = color.getOpposite();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testSymmetricPositionsScoreAlike() {
+    Random random = new Random(5);
+    for (int i = 0; i < 50; i++) {
+      long[] p = randomPosition(random, random.nextInt(60));
+      int discs = Long.bitCount(p[0] | p[1]);
+      int score = new ReversiPatterns(p[0], p[1]).evaluate(discs);
+
+      assertEquals(-score, new ReversiPatterns(p[1], p[0]).evaluate(discs));
+      for (int sym = 1; sym < 8; sym++) {
+        long white = Symmetry.transform(p[0], sym, 8);
+        long black = Symmetry.transform(p[1], sym, 8);
+        assertEquals(score, new ReversiPatterns(white, black).evaluate(discs));
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testCornersOverXSquares() {
+    int discs = 5;
+    int corner = new ReversiPatterns(START_WHITE | 1L, START_BLACK).evaluate(discs);
+    int edge = new ReversiPatterns(START_WHITE | 1L << 3, START_BLACK).evaluate(discs);
+    int xSquare = new ReversiPatterns(START_WHITE | 1L << 9, START_BLACK).evaluate(discs);
+
+    assertTrue(corner > edge);
+    assertTrue(edge > xSquare);
+    assertTrue(xSquare < new ReversiPatterns(START_WHITE, START_BLACK).evaluate(discs - 1));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testUndoPastCopy() throws Exception {
+    ReversiGame game = new ReversiGame();
+    int start = game.evaluate(false);
+    Random random = new Random(6);
+    for (int i = 0; i < 6; i++) {
+      List<ReversiMove> moves = game.getAvailableMoves();
+      game.makeMove(moves.get(random.nextInt(moves.size())));
+    }
+
+    ReversiGame copy = game.copyGame();
+    for (int i = 0; i < 6; i++) {
+      game.undoLastMove();
+      copy.undoLastMove();
+    }
+    assertEquals(start, game.evaluate(false));
+    assertEquals(start, copy.evaluate(false));
+    assertEquals(new ReversiGame().getZobristKey(), copy.getZobristKey());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testPhases() {
+    assertEquals(0, ReversiPatterns.phase(4));
+    assertEquals(ReversiPatterns.NUM_PHASES - 1, ReversiPatterns.phase(64));
+    for (int discs = 5; discs <= 64; discs++) {
+      assertTrue(ReversiPatterns.phase(discs) >= ReversiPatterns.phase(discs - 1));
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.spamalot.reversi;
+
+import static org.junit.Assert.assertEquals;
+
+import com.spamalot.search.Perft;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test Reversi move generation against the published perft counts.
+ * 
+ * @author gej
+ *
+ */
+public class ReversiPerftTest {
+  /** Counts from the start position, by depth. */
+  private static final long[] START_COUNTS = { 1, 4, 12, 56, 244, 1396, 8200 };
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testStartCounts() throws Exception {
+    for (int depth = 1; depth < START_COUNTS.length; depth++) {
+      assertEquals(START_COUNTS[depth], new Perft<ReversiMove>(new ReversiGame()).count(depth));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testBitboardStartCounts() throws Exception {
+    ReversiBitboardGame game = new ReversiBitboardGame();
+    for (int depth = 1; depth < START_COUNTS.length; depth++) {
+      assertEquals(START_COUNTS[depth], new Perft<ReversiMove>(game).count(depth));
+      assertEquals(START_COUNTS[depth], ReversiPerft.count(game.getOwn(), game.getOpponent(), depth));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.spamalot.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test for MatchResult.
+ * 
+ * @author gej
+ *
+ */
+public class MatchResultTest {
+
+  /**
+   * Build a result.
+   * 
+   * @param wins
+   *          games won
+   * @param draws
+   *          games drawn
+   * @param losses
+   *          games lost
+   * @return the result
+   */
+  private static MatchResult result(final int wins, final int draws, final int losses) {
+    MatchResult ret = new MatchResult();
+    for (int i = 0; i < wins; i++) {
+      ret.record(1);
+    }
+    for (int i = 0; i < draws; i++) {
+      ret.record(0);
+    }
+    for (int i = 0; i < losses; i++) {
+      ret.record(-1);
+    }
+    return ret;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testCounts() {
+    MatchResult r = result(3, 2, 1);
+    assertEquals(6, r.getGames());
+    assertEquals(3, r.getWins());
+    assertEquals(2, r.getDraws());
+    assertEquals(1, r.getLosses());
+    assertEquals(4.0 / 6, r.getScore(), 1e-9);
+    assertTrue(r.toLogLine().startsWith("match games=6 wins=3 draws=2 losses=1 score=0.667 "));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testElo() {
+    assertEquals(0, result(50, 0, 50).getElo(), 1e-9);
+    assertEquals(0, result(0, 10, 0).getElo(), 1e-9);
+    assertEquals(100, result(64, 0, 36).getElo(), 0.5);
+    assertEquals(-100, result(36, 0, 64).getElo(), 0.5);
+    assertEquals(Double.POSITIVE_INFINITY, result(5, 0, 0).getElo(), 0);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testEmpty() {
+    MatchResult r = new MatchResult();
+    assertEquals(0.5, r.getScore(), 0);
+    assertEquals(0, r.getElo(), 1e-9);
+    assertEquals(Double.POSITIVE_INFINITY, r.getEloError(), 0);
+    assertTrue(r.toLogLine().startsWith("match games=0 wins=0 draws=0 losses=0 score=0.500 elo=0.0 "));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testEloError() {
+    assertEquals(0, result(0, 100, 0).getEloError(), 1e-9);
+    double error = result(50, 0, 50).getEloError();
+    assertEquals(69, error, 1);
+    assertTrue(result(500, 0, 500).getEloError() < error / 3);
+    assertTrue(result(30, 40, 30).getEloError() < error);
+    assertEquals(Double.POSITIVE_INFINITY, result(10, 0, 0).getEloError(), 0);
+    assertEquals(Double.POSITIVE_INFINITY, result(0, 0, 10).getEloError(), 0);
+    assertTrue(result(10, 0, 0).toLogLine().contains(" eloError=Infinity "));
+  }
+}
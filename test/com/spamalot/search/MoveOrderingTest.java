@@ -0,0 +1,64 @@
+package com.spamalot.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test for MoveOrdering.
+ * 
+ * @author gej
+ *
+ */
+public class MoveOrderingTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testKillersShift() {
+    MoveOrdering ordering = new MoveOrdering();
+    ordering.cutoff(10, 3, 2);
+    ordering.cutoff(20, 3, 2);
+    ordering.cutoff(20, 3, 2);
+
+    assertEquals(20, ordering.getKiller(3, 0));
+    assertEquals(10, ordering.getKiller(3, 1));
+    assertEquals(0, ordering.getKiller(4, 0));
+    assertEquals(8, ordering.getHistory(20));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testKeyOrder() {
+    MoveOrdering ordering = new MoveOrdering();
+    ordering.cutoff(10, 0, 1);
+    ordering.cutoff(20, 0, 1);
+    ordering.cutoff(30, 1, 5);
+
+    int hash = ordering.key(40, 0, 0, 40);
+    int killer = ordering.key(20, 0, 0, 40);
+    int olderKiller = ordering.key(10, 0, 0, 40);
+    int scored = ordering.key(50, MoveOrdering.MAX_SCORE, 0, 40);
+    int history = ordering.key(30, 1, 0, 40);
+    int plain = ordering.key(60, 1, 0, 40);
+
+    assertTrue(hash > killer);
+    assertTrue(killer > olderKiller);
+    assertTrue(olderKiller > scored);
+    assertTrue(scored > history);
+    assertTrue(history > plain);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testAgeAndClear() {
+    MoveOrdering ordering = new MoveOrdering();
+    ordering.cutoff(7, 0, 4);
+    ordering.age();
+    assertEquals(8, ordering.getHistory(7));
+
+    ordering.clear();
+    assertEquals(0, ordering.getHistory(7));
+    assertEquals(0, ordering.getKiller(0, 0));
+  }
+}
@@ -0,0 +1,30 @@
+package com.spamalot.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test for SolvedScore.
+ * 
+ * @author gej
+ *
+ */
+public class SolvedScoreTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testScores() {
+    assertEquals(0, SolvedScore.score(0));
+    assertTrue(SolvedScore.score(1) > 100000);
+    assertTrue(SolvedScore.score(-1) < -100000);
+    assertTrue(SolvedScore.score(5) > SolvedScore.score(4));
+    for (int m = -10; m <= 10; m++) {
+      assertEquals(m, SolvedScore.marginAtMost(SolvedScore.score(m)));
+      assertEquals(m - 1, SolvedScore.marginAtMost(SolvedScore.score(m) - 1));
+    }
+    assertEquals(-SolvedScore.MAX_MARGIN - 1, SolvedScore.marginAtMost(-AbstractSearch.INFINITY));
+    assertEquals(SolvedScore.MAX_MARGIN, SolvedScore.marginAtMost(AbstractSearch.INFINITY));
+  }
+}
@@ -0,0 +1,81 @@
+package com.spamalot.search;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * JUnit Test for the board symmetries.
+ * 
+ * @author gej
+ *
+ */
+public class SymmetryTest {
+  /**
+   * A random set of squares on a board.
+   * 
+   * @param random
+   *          source of randomness
+   * @param size
+   *          size of the board
+   * @return the squares
+   */
+  private static long randomSquares(final Random random, final int size) {
+    long ret = 0;
+    for (int rank = 0; rank < size; rank++) {
+      for (int file = 0; file < size; file++) {
+        if (random.nextBoolean()) {
+          ret |= 1L << (rank * 8 + file);
+        }
+      }
+    }
+    return ret;
+  }
+
+  @Test
+  public final void testTransformMatchesSquares() {
+    Random random = new Random(1);
+    for (int size = 5; size <= 8; size++) {
+      for (int i = 0; i < 100; i++) {
+        long b = randomSquares(random, size);
+        for (int s = 0; s < Symmetry.COUNT; s++) {
+          long expected = 0;
+          for (long x = b; x != 0; x &= x - 1) {
+            expected |= 1L << Symmetry.transformSquare(Long.numberOfTrailingZeros(x), s, size);
+          }
+          assertEquals(expected, Symmetry.transform(b, s, size));
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void testInverse() {
+    Random random = new Random(2);
+    long b = randomSquares(random, 7);
+    for (int s = 0; s < Symmetry.COUNT; s++) {
+      assertEquals(b, Symmetry.transform(Symmetry.transform(b, s, 7), Symmetry.inverse(s), 7));
+    }
+  }
+
+  @Test
+  public final void testCanonicalIsSharedByImages() {
+    Random random = new Random(3);
+    for (int size = 7; size <= 8; size++) {
+      long white = randomSquares(random, size);
+      long black = randomSquares(random, size) & ~white;
+      int c = Symmetry.canonical(white, black, size);
+      long canonicalWhite = Symmetry.transform(white, c, size);
+      long canonicalBlack = Symmetry.transform(black, c, size);
+      for (int s = 0; s < Symmetry.COUNT; s++) {
+        long w = Symmetry.transform(white, s, size);
+        long b = Symmetry.transform(black, s, size);
+        int t = Symmetry.canonical(w, b, size);
+        assertEquals(canonicalWhite, Symmetry.transform(w, t, size));
+        assertEquals(canonicalBlack, Symmetry.transform(b, t, size));
+      }
+    }
+  }
+}
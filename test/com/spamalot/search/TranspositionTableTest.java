@@ -0,0 +1,69 @@
+package com.spamalot.search;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit Test for TranspositionTable.
+ * 
+ * @author gej
+ *
+ */
+public class TranspositionTableTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testStoreAndProbe() {
+    TranspositionTable table = new TranspositionTable(1);
+    table.store(0x1234567890ABCDEFL, 4711, 7, TranspositionTable.LOWER, -123456);
+
+    long data = table.probe(0x1234567890ABCDEFL);
+    assertEquals(4711, TranspositionTable.move(data));
+    assertEquals(7, TranspositionTable.depth(data));
+    assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+    assertEquals(-123456, TranspositionTable.score(data));
+
+    assertEquals(0, table.probe(0x1234567890ABCDEEL));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testDeepEntryKeptInBucket() {
+    TranspositionTable table = new TranspositionTable(1);
+    long bucketStride = 1L << 40;
+    table.store(1, 1, 9, TranspositionTable.EXACT, 10);
+    table.store(1 + bucketStride, 2, 3, TranspositionTable.EXACT, 20);
+    table.store(1 + 2 * bucketStride, 3, 2, TranspositionTable.EXACT, 30);
+
+    assertEquals(1, TranspositionTable.move(table.probe(1)));
+    assertEquals(0, table.probe(1 + bucketStride));
+    assertEquals(3, TranspositionTable.move(table.probe(1 + 2 * bucketStride)));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testMoveKeptWhenStoredWithoutOne() {
+    TranspositionTable table = new TranspositionTable(1);
+    table.store(42, 1, 5, TranspositionTable.EXACT, 10);
+    table.store(42, 0, 6, TranspositionTable.UPPER, 11);
+
+    long data = table.probe(42);
+    assertEquals(1, TranspositionTable.move(data));
+    assertEquals(6, TranspositionTable.depth(data));
+  }
+
+  @SuppressWarnings({ "static-method", "unused" })
+  @Test(expected = IllegalArgumentException.class)
+  public final void testRejectsEmptyTable() {
+    new TranspositionTable(0);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public final void testLargestTableFitsInAnArray() {
+    assertEquals(1L << 28, TranspositionTable.buckets(Integer.MAX_VALUE));
+    assertEquals(1L << 28, TranspositionTable.buckets(16384));
+    assertEquals(1L << 15, TranspositionTable.buckets(1));
+  }
+}